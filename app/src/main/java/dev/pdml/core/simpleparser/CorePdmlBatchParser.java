@@ -0,0 +1,236 @@
+package dev.pdml.core.simpleparser;
+
+import dev.pdml.core.simpleparser.data.TaggedNode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Parses many PDML files concurrently.
+ * <p>
+ * At most {@code maxConcurrency} files are parsed at the same time. When all workers are busy, submitting the next
+ * file blocks, so that files aren't opened faster than they can be parsed. Each worker reuses its read buffer:
+ * small files are read into it, and larger files are memory-mapped (see {@link CorePdmlMappedReader#open(Path)}).
+ * All files share a tag table.
+ * <p>
+ * An invalid file doesn't stop the batch: its error is returned in its {@link CorePdmlBatchResult}. An
+ * {@link Error} thrown while parsing a file (e.g. an {@link OutOfMemoryError}), or an exception thrown by a result
+ * handler, is thrown by {@code parseAll} after the other files have been parsed.
+ * <p>
+ * By default, files are parsed on a fixed pool of platform threads. On Java 21 or later, an executor such as
+ * {@code Executors.newVirtualThreadPerTaskExecutor()} can be used instead.
+ */
+public class CorePdmlBatchParser implements AutoCloseable {
+
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final BlockingQueue<Worker> idleWorkers;
+    private final CorePdmlTagTable tagTable;
+
+
+    /**
+     * Creates a batch parser that uses its own thread pool, with one thread per available processor.
+     * The pool is shut down by {@link #close()}.
+     */
+    public CorePdmlBatchParser() {
+
+        this ( Runtime.getRuntime().availableProcessors() );
+    }
+
+    public CorePdmlBatchParser ( int maxConcurrency ) {
+
+        this ( Executors.newFixedThreadPool ( maxConcurrency ), maxConcurrency, true );
+    }
+
+    /**
+     * Creates a batch parser that runs its tasks with the given executor. The executor is not shut down by
+     * {@link #close()}.
+     */
+    public CorePdmlBatchParser ( ExecutorService executor, int maxConcurrency ) {
+
+        this ( executor, maxConcurrency, false );
+    }
+
+    private CorePdmlBatchParser ( ExecutorService executor, int maxConcurrency, boolean ownsExecutor ) {
+
+        if ( maxConcurrency <= 0 ) throw new IllegalArgumentException ( "Maximum concurrency must be greater than 0." );
+
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.tagTable = new CorePdmlTagTable();
+        this.idleWorkers = new ArrayBlockingQueue<> ( maxConcurrency );
+        for ( int i = 0; i < maxConcurrency; i++ ) {
+            idleWorkers.add ( new Worker ( new CorePdmlParser ( tagTable ) ) );
+        }
+    }
+
+
+    /**
+     * Parses files and returns their results, in the same order as the paths.
+     */
+    public List<CorePdmlBatchResult> parseAll ( Collection<Path> filePaths ) {
+
+        CorePdmlBatchResult[] results = new CorePdmlBatchResult[filePaths.size()];
+        int index = 0;
+        Batch batch = new Batch ( filePaths.size() );
+        for ( Path filePath : filePaths ) {
+            int resultIndex = index++;
+            submit ( filePath, result -> results[resultIndex] = result, batch );
+        }
+        batch.await();
+        return Arrays.asList ( results );
+    }
+
+    /**
+     * Parses files and passes each result to the handler as soon as it is available. The handler is called
+     * concurrently, from the worker threads. Use this method to avoid keeping all trees in memory.
+     */
+    public void parseAll ( Collection<Path> filePaths, Consumer<CorePdmlBatchResult> resultHandler ) {
+
+        Batch batch = new Batch ( filePaths.size() );
+        for ( Path filePath : filePaths ) {
+            submit ( filePath, resultHandler, batch );
+        }
+        batch.await();
+    }
+
+    /**
+     * Returns the files in a directory and its subdirectories whose path relative to the directory matches a
+     * glob pattern (e.g. {@code "**.pdml"}), sorted by path.
+     */
+    public static List<Path> findFiles ( Path directory, String glob ) throws IOException {
+
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher ( "glob:" + glob );
+        try ( Stream<Path> paths = Files.walk ( directory ) ) {
+            return paths
+                .filter ( path -> Files.isRegularFile ( path ) && matcher.matches ( directory.relativize ( path ) ) )
+                .sorted()
+                .toList();
+        }
+    }
+
+    @Override
+    public void close() {
+
+        if ( ownsExecutor ) executor.shutdown();
+    }
+
+
+    // Private Methods
+
+    private static class Worker {
+
+        private final CorePdmlParser parser;
+        private ByteBuffer buffer;
+
+        private Worker ( CorePdmlParser parser ) {
+
+            this.parser = parser;
+            this.buffer = ByteBuffer.allocate ( 16 * 1024 );
+        }
+
+        private TaggedNode parse ( Path filePath ) throws IOException, InvalidPdmlException {
+
+            ByteBuffer bytes = CorePdmlMappedReader.readOrMap ( filePath, buffer );
+            if ( ! bytes.isDirect() ) buffer = bytes;
+
+            try {
+                return parser.parse ( new CorePdmlMappedReader ( bytes ) );
+            } catch ( UncheckedIOException e ) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * The files of a call to {@code parseAll} that haven't been parsed yet, and the first failure of its tasks.
+     */
+    private static class Batch {
+
+        private final CountDownLatch done;
+        private final AtomicReference<Throwable> failure;
+
+        private Batch ( int fileCount ) {
+
+            this.done = new CountDownLatch ( fileCount );
+            this.failure = new AtomicReference<>();
+        }
+
+        private void failed ( Throwable e ) {
+
+            if ( ! failure.compareAndSet ( null, e ) ) failure.get().addSuppressed ( e );
+        }
+
+        private void await() {
+
+            try {
+                done.await();
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException ( "Batch parsing was interrupted." );
+            }
+
+            // the tasks only let errors and the result handler's runtime exceptions through
+            Throwable e = failure.get();
+            if ( e instanceof Error error ) throw error;
+            if ( e != null ) throw (RuntimeException) e;
+        }
+    }
+
+    private void submit ( Path filePath, Consumer<CorePdmlBatchResult> resultHandler, Batch batch ) {
+
+        Worker worker = takeIdleWorker();
+        try {
+            executor.execute ( () -> {
+                try {
+                    resultHandler.accept ( parse ( worker, filePath ) );
+                } catch ( Throwable e ) {
+                    batch.failed ( e );
+                } finally {
+                    idleWorkers.add ( worker );
+                    batch.done.countDown();
+                }
+            } );
+        } catch ( RuntimeException e ) {
+            // the task was rejected
+            idleWorkers.add ( worker );
+            throw e;
+        }
+    }
+
+    private static CorePdmlBatchResult parse ( Worker worker, Path filePath ) {
+
+        try {
+            return new CorePdmlBatchResult ( filePath, worker.parse ( filePath ), null );
+        } catch ( Exception e ) {
+            return new CorePdmlBatchResult ( filePath, null, e );
+        }
+    }
+
+    private Worker takeIdleWorker() {
+
+        try {
+            return idleWorkers.take();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException ( "Batch parsing was interrupted." );
+        }
+    }
+}
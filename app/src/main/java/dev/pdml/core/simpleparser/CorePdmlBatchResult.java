@@ -0,0 +1,20 @@
+package dev.pdml.core.simpleparser;
+
+import dev.pdml.core.simpleparser.data.TaggedNode;
+
+import java.nio.file.Path;
+
+/**
+ * The result of parsing a file with {@link CorePdmlBatchParser}: either the root node, or the error
+ * (an {@link InvalidPdmlException}, an {@link java.io.IOException}, or an unexpected {@link RuntimeException}).
+ */
+public record CorePdmlBatchResult (
+    Path path,
+    TaggedNode rootNode,
+    Exception error ) {
+
+    public boolean isValid() { return error == null; }
+
+    @Override
+    public String toString() { return path + ( error == null ? ": OK" : ": " + error ); }
+}
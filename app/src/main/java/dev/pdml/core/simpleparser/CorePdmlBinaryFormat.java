@@ -0,0 +1,294 @@
+package dev.pdml.core.simpleparser;
+
+import dev.pdml.core.simpleparser.data.Node;
+import dev.pdml.core.simpleparser.data.TaggedNode;
+import dev.pdml.core.simpleparser.data.TextLeaf;
+import dev.pdml.core.simpleparser.data.TextNode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary encoding of parsed PDML trees, that is much faster to load than PDML code is to parse.
+ * <p>
+ * Format (all integers are unsigned LEB128 varints):
+ * <pre>
+ * file      = magic ("PDMB") version (1 byte) tagCount tag* node
+ * tag       = byteLength UTF-8 bytes
+ * node      = taggedNode | textLeaf
+ * taggedNode = (tagIndex &lt;&lt; 1) childCount node*
+ * textLeaf  = (byteLength &lt;&lt; 1 | 1) UTF-8 bytes
+ * </pre>
+ * The nodes are stored in document order. Tags are stored once, and the tag IDs of the loaded nodes are their
+ * index in the tag dictionary.
+ */
+public class CorePdmlBinaryFormat {
+
+    private static final byte[] MAGIC = { 'P', 'D', 'M', 'B' };
+    private static final int VERSION = 1;
+
+
+    public static void write ( TaggedNode rootNode, Path filePath ) throws IOException {
+
+        try ( OutputStream out = Files.newOutputStream ( filePath ) ) {
+            write ( rootNode, out );
+        }
+    }
+
+    /**
+     * Writes a tree to a stream. The stream is not closed.
+     */
+    public static void write ( TaggedNode rootNode, OutputStream out ) throws IOException {
+
+        Map<String, Integer> tagIndexes = new HashMap<>();
+        List<String> tags = new ArrayList<>();
+        ByteSink nodes = new ByteSink();
+
+        // the tree is traversed without recursion
+        TaggedNode[] parents = new TaggedNode[16];
+        int[] nextChildIndexes = new int[16];
+        int depth = 0;
+        writeTaggedNode ( rootNode, nodes, tagIndexes, tags );
+        parents[depth] = rootNode;
+        nextChildIndexes[depth++] = 0;
+
+        while ( depth > 0 ) {
+            List<Node> childNodes = parents[depth - 1].childNodes();
+            int index = nextChildIndexes[depth - 1]++;
+            if ( index == childNodes.size() ) {
+                parents[--depth] = null;
+                continue;
+            }
+
+            Node childNode = childNodes.get ( index );
+            if ( childNode instanceof TaggedNode taggedChild ) {
+                writeTaggedNode ( taggedChild, nodes, tagIndexes, tags );
+                if ( depth == parents.length ) {
+                    parents = Arrays.copyOf ( parents, depth * 2 );
+                    nextChildIndexes = Arrays.copyOf ( nextChildIndexes, depth * 2 );
+                }
+                parents[depth] = taggedChild;
+                nextChildIndexes[depth++] = 0;
+            } else if ( childNode instanceof TextNode textChild ) {
+                byte[] bytes = textChild.text().getBytes ( StandardCharsets.UTF_8 );
+                nodes.writeVarint ( ( (long) bytes.length << 1 ) | 1 );
+                nodes.write ( bytes );
+            } else {
+                throw new IllegalArgumentException ( "Unsupported node type: " + childNode.getClass().getName() );
+            }
+        }
+
+        ByteSink header = new ByteSink();
+        header.write ( MAGIC );
+        header.writeByte ( VERSION );
+        header.writeVarint ( tags.size() );
+        for ( String tag : tags ) {
+            byte[] bytes = tag.getBytes ( StandardCharsets.UTF_8 );
+            header.writeVarint ( bytes.length );
+            header.write ( bytes );
+        }
+
+        header.writeTo ( out );
+        nodes.writeTo ( out );
+    }
+
+    /**
+     * Loads a tree from a file. The file is memory-mapped.
+     */
+    public static TaggedNode read ( Path filePath ) throws IOException {
+
+        return read ( CorePdmlMappedReader.map ( filePath ) );
+    }
+
+    /**
+     * Loads a tree from the bytes between the buffer's position and its limit. The buffer's position isn't changed.
+     */
+    public static TaggedNode read ( ByteBuffer bytes ) throws IOException {
+
+        try {
+            return new Loader ( bytes ).readRootNode();
+        } catch ( BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e ) {
+            throw new IOException ( "Invalid binary PDML data.", e );
+        }
+    }
+
+
+    // Private Methods
+
+    private static void writeTaggedNode (
+        TaggedNode taggedNode,
+        ByteSink out,
+        Map<String, Integer> tagIndexes,
+        List<String> tags ) {
+
+        Integer tagIndex = tagIndexes.get ( taggedNode.tag() );
+        if ( tagIndex == null ) {
+            tagIndex = tags.size();
+            tagIndexes.put ( taggedNode.tag(), tagIndex );
+            tags.add ( taggedNode.tag() );
+        }
+        out.writeVarint ( (long) tagIndex << 1 );
+        out.writeVarint ( taggedNode.childNodes().size() );
+    }
+
+    private static class ByteSink {
+
+        private byte[] bytes = new byte[8 * 1024];
+        private int length = 0;
+
+        private void writeByte ( int b ) {
+
+            if ( length == bytes.length ) bytes = Arrays.copyOf ( bytes, length * 2 );
+            bytes[length++] = (byte) b;
+        }
+
+        private void write ( byte[] source ) {
+
+            if ( length + source.length > bytes.length ) {
+                bytes = Arrays.copyOf ( bytes, Math.max ( length + source.length, length * 2 ) );
+            }
+            System.arraycopy ( source, 0, bytes, length, source.length );
+            length += source.length;
+        }
+
+        private void writeVarint ( long value ) {
+
+            while ( ( value & ~0x7FL ) != 0 ) {
+                writeByte ( (int) ( value & 0x7F ) | 0x80 );
+                value >>>= 7;
+            }
+            writeByte ( (int) value );
+        }
+
+        private void writeTo ( OutputStream out ) throws IOException {
+            out.write ( bytes, 0, length );
+        }
+    }
+
+    private static class Loader {
+
+        private final ByteBuffer bytes;
+        private int position;
+        private String[] tags;
+        private byte[] textBuffer = new byte[256];
+
+        private Loader ( ByteBuffer bytes ) {
+
+            this.bytes = bytes;
+            this.position = bytes.position();
+        }
+
+        private TaggedNode readRootNode() throws IOException {
+
+            for ( byte b : MAGIC ) {
+                if ( readByte() != b ) throw new IOException ( "Not a binary PDML file." );
+            }
+            int version = readByte();
+            if ( version != VERSION ) throw new IOException ( "Unsupported binary PDML version: " + version + "." );
+
+            // each tag takes at least one byte, so a larger count is corrupt data and must not be allocated
+            int tagCount = readLength();
+            if ( tagCount > bytes.limit() - position ) throw new BufferUnderflowException();
+            tags = new String[tagCount];
+            for ( int i = 0; i < tags.length; i++ ) {
+                tags[i] = readString ( readLength() );
+            }
+
+            // the nodes whose child nodes are being read, and the number of child nodes left to read
+            TaggedNode[] parents = new TaggedNode[16];
+            int[] remainingChildCounts = new int[16];
+            int depth = 0;
+
+            long header = readVarint();
+            if ( ( header & 1 ) != 0 ) throw new IOException ( "The root node must be a tagged node." );
+            int childCount = readLength();
+            TaggedNode rootNode = createTaggedNode ( header, childCount );
+            parents[depth] = rootNode;
+            remainingChildCounts[depth++] = childCount;
+
+            while ( depth > 0 ) {
+                if ( remainingChildCounts[depth - 1] == 0 ) {
+                    parents[--depth] = null;
+                    continue;
+                }
+                remainingChildCounts[depth - 1]--;
+
+                header = readVarint();
+                if ( ( header & 1 ) != 0 ) {
+                    parents[depth - 1].childNodes().add ( new TextLeaf ( readString ( toLength ( header >>> 1 ) ) ) );
+                } else {
+                    childCount = readLength();
+                    TaggedNode taggedNode = createTaggedNode ( header, childCount );
+                    parents[depth - 1].childNodes().add ( taggedNode );
+                    if ( depth == parents.length ) {
+                        parents = Arrays.copyOf ( parents, depth * 2 );
+                        remainingChildCounts = Arrays.copyOf ( remainingChildCounts, depth * 2 );
+                    }
+                    parents[depth] = taggedNode;
+                    remainingChildCounts[depth++] = childCount;
+                }
+            }
+
+            if ( position != bytes.limit() ) throw new IOException ( "Unexpected data after the root node." );
+            return rootNode;
+        }
+
+        private TaggedNode createTaggedNode ( long header, int childCount ) throws IOException {
+
+            int tagIndex = toLength ( header >>> 1 );
+            if ( tagIndex >= tags.length ) throw new IOException ( "Invalid tag index: " + tagIndex + "." );
+            // the capacity is bounded, in case the data is corrupt
+            return new TaggedNode ( tags[tagIndex], new ArrayList<> ( Math.min ( childCount, 1024 ) ), tagIndex );
+        }
+
+        private String readString ( int length ) {
+
+            if ( length > bytes.limit() - position ) throw new BufferUnderflowException();
+
+            if ( bytes.hasArray() ) {
+                String result = new String ( bytes.array(), bytes.arrayOffset() + position, length, StandardCharsets.UTF_8 );
+                position += length;
+                return result;
+            }
+            if ( textBuffer.length < length ) textBuffer = new byte[Math.max ( length, textBuffer.length * 2 )];
+            bytes.get ( position, textBuffer, 0, length );
+            position += length;
+            return new String ( textBuffer, 0, length, StandardCharsets.UTF_8 );
+        }
+
+        private int readByte() {
+            return bytes.get ( position++ );
+        }
+
+        private long readVarint() throws IOException {
+
+            long result = 0;
+            for ( int shift = 0; shift < 64; shift += 7 ) {
+                int b = readByte();
+                result |= (long) ( b & 0x7F ) << shift;
+                if ( ( b & 0x80 ) == 0 ) return result;
+            }
+            throw new IOException ( "Invalid varint." );
+        }
+
+        private int readLength() throws IOException {
+            return toLength ( readVarint() );
+        }
+
+        private static int toLength ( long value ) throws IOException {
+
+            if ( value < 0 || value > Integer.MAX_VALUE ) throw new IOException ( "Invalid length: " + value + "." );
+            return (int) value;
+        }
+    }
+}
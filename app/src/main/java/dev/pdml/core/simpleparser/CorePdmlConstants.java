@@ -1,7 +1,5 @@
 package dev.pdml.core.simpleparser;
 
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -12,46 +10,131 @@ public class CorePdmlConstants {
 
     public static final char ESCAPE_CHAR = '\\';
 
-    public static final Set<Character> TAG_END_CHARS =
-        Set.of (
-            ']',
-            ' ', '\t', '\n', '\r' );
+    // The chars of the sets and maps below. The primitive lookup tables are created from these strings, so that
+    // class initialization doesn't iterate boxed collections (this class is initialized by every CLI run).
+    private static final String TAG_END_CHARS_STRING = "] \t\n\r";
+    private static final String TEXT_END_CHARS_STRING = "[]";
+    private static final String INVALID_TAG_CHARS_STRING = "[] \t\n\r\f^()=\"~|:,`!$";
+    private static final String INVALID_TEXT_CHARS_STRING = "[]^";
+    private static final String WHITESPACE_CHARS_STRING = " \t\n\r\f";
+    // ESCAPE_SEQUENCE_CHARS_STRING.charAt ( i ) follows '\' in the escape sequence of ESCAPED_CHARS_STRING.charAt ( i )
+    private static final String ESCAPE_SEQUENCE_CHARS_STRING = "\\stnrf[]^()=\"~|:,`!$";
+    private static final String ESCAPED_CHARS_STRING = "\\ \t\n\r\f[]^()=\"~|:,`!$";
 
-    public static final Set<Character> TEXT_END_CHARS =
-        Set.of ( '[', ']' );
+    public static final Set<Character> TAG_END_CHARS = charSet ( TAG_END_CHARS_STRING );
 
-    public static final Set<Character> INVALID_TAG_CHARS =
-        Set.of (
-            '[', ']',
-            ' ', '\t', '\n', '\r', '\f',
-            '^', '(', ')', '=', '"', '~', '|', ':', ',', '`', '!', '$' );
+    public static final Set<Character> TEXT_END_CHARS = charSet ( TEXT_END_CHARS_STRING );
 
-    public static final Set<Character> INVALID_TEXT_CHARS =
-        Set.of ( '[', ']', '^' );
+    public static final Set<Character> INVALID_TAG_CHARS = charSet ( INVALID_TAG_CHARS_STRING );
 
-    public static final Map<Character, Character> TAG_AND_TEXT_ESCAPE_CHARS = createTagEscapeChars ();
+    public static final Set<Character> INVALID_TEXT_CHARS = charSet ( INVALID_TEXT_CHARS_STRING );
+
+    public static final Map<Character, Character> TAG_AND_TEXT_ESCAPE_CHARS = createTagEscapeChars();
+
+    private static Set<Character> charSet ( String chars ) {
+
+        Character[] array = new Character[chars.length()];
+        for ( int i = 0; i < array.length; i++ ) {
+            array[i] = chars.charAt ( i );
+        }
+        return Set.of ( array );
+    }
 
     private static Map<Character, Character> createTagEscapeChars() {
 
-        Map<Character, Character> map = new HashMap<>();
-        map.put ( '\\', '\\' );
-        map.put ( 's', ' ' );
-        map.put ( 't', '\t' );
-        map.put ( 'n', '\n' );
-        map.put ( 'r', '\r' );
-        map.put ( 'f', '\f' );
-
-        for ( Character c : INVALID_TAG_CHARS ) {
-            if ( c != ' '
-                && c != '\t'
-                && c != '\n'
-                && c != '\r'
-                && c != '\f') {
-
-                map.put ( c, c );
+        @SuppressWarnings ( "unchecked" )
+        Map.Entry<Character, Character>[] entries = new Map.Entry[ESCAPE_SEQUENCE_CHARS_STRING.length()];
+        for ( int i = 0; i < entries.length; i++ ) {
+            entries[i] = Map.entry ( ESCAPE_SEQUENCE_CHARS_STRING.charAt ( i ), ESCAPED_CHARS_STRING.charAt ( i ) );
+        }
+        return Map.ofEntries ( entries );
+    }
+
+
+    // Primitive lookup tables (the Sets and Maps above box every char they look up)
+
+    public static final int TAG_END_CHAR_FLAG = 1;
+    public static final int TEXT_END_CHAR_FLAG = 1 << 1;
+    public static final int INVALID_TAG_CHAR_FLAG = 1 << 2;
+    public static final int INVALID_TEXT_CHAR_FLAG = 1 << 3;
+    public static final int WHITESPACE_CHAR_FLAG = 1 << 4;
+    // U+0000 to U+001F (except tab, newline, form feed and carriage return), and U+0080 to U+009F
+    public static final int INVALID_CONTROL_CHAR_FLAG = 1 << 5;
+    public static final int ESCAPE_CHAR_FLAG = 1 << 6;
+
+    // All chars above U+009F have no flags
+    private static final byte[] CHAR_FLAGS = createCharFlags();
+
+    private static final char[] UNESCAPED_CHARS = createUnescapedChars();
+
+    private static final char[] ESCAPE_SEQUENCE_CHARS = createEscapeSequenceChars();
+
+    /**
+     * Returns the combination of the {@code *_FLAG} constants that apply to a char.
+     */
+    public static int charFlags ( char c ) {
+        return c < CHAR_FLAGS.length ? CHAR_FLAGS[c] : 0;
+    }
+
+    /**
+     * Returns the char represented by the escape sequence {@code '\'} + {@code c}, or -1 if the escape
+     * sequence is invalid.
+     */
+    public static int unescapedChar ( char c ) {
+        return c < UNESCAPED_CHARS.length && UNESCAPED_CHARS[c] != 0 ? UNESCAPED_CHARS[c] : -1;
+    }
+
+    /**
+     * Returns the char that follows {@code '\'} in the escape sequence that represents {@code c} (e.g. 's' for a
+     * space), or -1 if {@code c} can't be escaped. This is the reverse of {@link #unescapedChar(char)}.
+     */
+    public static int escapeSequenceChar ( char c ) {
+        return c < ESCAPE_SEQUENCE_CHARS.length && ESCAPE_SEQUENCE_CHARS[c] != 0 ? ESCAPE_SEQUENCE_CHARS[c] : -1;
+    }
+
+    private static byte[] createCharFlags() {
+
+        byte[] flags = new byte[0X00A0];
+
+        addCharFlag ( flags, TAG_END_CHARS_STRING, TAG_END_CHAR_FLAG );
+        addCharFlag ( flags, TEXT_END_CHARS_STRING, TEXT_END_CHAR_FLAG );
+        addCharFlag ( flags, INVALID_TAG_CHARS_STRING, INVALID_TAG_CHAR_FLAG );
+        addCharFlag ( flags, INVALID_TEXT_CHARS_STRING, INVALID_TEXT_CHAR_FLAG );
+        addCharFlag ( flags, WHITESPACE_CHARS_STRING, WHITESPACE_CHAR_FLAG );
+
+        for ( char c = 0; c < flags.length; c++ ) {
+            if ( ( c <= 0X001F && c != '\t' && c != '\n' && c != '\r' && c != '\f' ) || c >= 0X0080 ) {
+                flags[c] |= INVALID_CONTROL_CHAR_FLAG;
             }
         }
 
-        return Collections.unmodifiableMap ( map );
+        flags[ESCAPE_CHAR] |= ESCAPE_CHAR_FLAG;
+
+        return flags;
+    }
+
+    private static void addCharFlag ( byte[] flags, String chars, int flag ) {
+
+        for ( int i = 0; i < chars.length(); i++ ) {
+            flags[chars.charAt ( i )] |= flag;
+        }
+    }
+
+    private static char[] createUnescapedChars() {
+
+        char[] chars = new char[0X0080];
+        for ( int i = 0; i < ESCAPE_SEQUENCE_CHARS_STRING.length(); i++ ) {
+            chars[ESCAPE_SEQUENCE_CHARS_STRING.charAt ( i )] = ESCAPED_CHARS_STRING.charAt ( i );
+        }
+        return chars;
+    }
+
+    private static char[] createEscapeSequenceChars() {
+
+        char[] chars = new char[0X0080];
+        for ( int i = 0; i < ESCAPED_CHARS_STRING.length(); i++ ) {
+            chars[ESCAPED_CHARS_STRING.charAt ( i )] = ESCAPE_SEQUENCE_CHARS_STRING.charAt ( i );
+        }
+        return chars;
     }
 }
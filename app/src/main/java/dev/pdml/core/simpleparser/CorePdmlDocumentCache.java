@@ -0,0 +1,230 @@
+package dev.pdml.core.simpleparser;
+
+import dev.pdml.core.simpleparser.data.Node;
+import dev.pdml.core.simpleparser.data.TaggedNode;
+import dev.pdml.core.simpleparser.data.TextLeaf;
+import dev.pdml.core.simpleparser.data.TextNode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * A thread-safe cache of parsed PDML files.
+ * <p>
+ * {@link #get(Path)} returns the cached tree of a file as long as the file's last modified time and size are
+ * unchanged. If content hashes are enabled, a file whose modification time changed but whose content didn't (e.g.
+ * after a {@code touch}) isn't parsed again either.
+ * <p>
+ * Cached trees are shared by all callers, and are therefore immutable: their child lists can't be changed.
+ * When the maximum number of entries or the maximum number of retained bytes is exceeded, the least recently
+ * used entries are evicted. The retained bytes of a tree are an estimate of the memory it uses.
+ * <p>
+ * Files are parsed outside the cache's lock. If several threads request the same changed file at the same time,
+ * each of them may parse it.
+ */
+public class CorePdmlDocumentCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    // estimated memory use of the objects of a tree (with compressed object pointers)
+    private static final int TAGGED_NODE_BYTES = 24 + 16; // record + child list
+    private static final int CHILD_REFERENCE_BYTES = 4;
+    private static final int TEXT_LEAF_BYTES = 16 + 24 + 16; // record + String + its array
+
+    public record Stats (
+        long hits,
+        long misses,
+        long evictions,
+        int entryCount,
+        long retainedBytes ) {}
+
+    private record Entry (
+        FileTime lastModified,
+        long size,
+        int contentHash,
+        TaggedNode rootNode,
+        long retainedBytes ) {}
+
+    private final CorePdmlParser parser;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final boolean useContentHash;
+
+    // in access order: the first entry is the least recently used one
+    private final LinkedHashMap<Path, Entry> entries;
+    private long retainedBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+
+    public CorePdmlDocumentCache() {
+
+        this ( DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES );
+    }
+
+    public CorePdmlDocumentCache ( int maxEntries, long maxBytes ) {
+
+        this ( new CorePdmlParser(), maxEntries, maxBytes, false );
+    }
+
+    /**
+     * @param useContentHash if true, the CRC32C of each file's content is stored, and a file whose modification
+     *                       time changed is only parsed again if its content changed too
+     */
+    public CorePdmlDocumentCache ( CorePdmlParser parser, int maxEntries, long maxBytes, boolean useContentHash ) {
+
+        if ( maxEntries <= 0 ) throw new IllegalArgumentException ( "Maximum number of entries must be greater than 0." );
+        if ( maxBytes <= 0 ) throw new IllegalArgumentException ( "Maximum number of bytes must be greater than 0." );
+
+        this.parser = parser;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.useContentHash = useContentHash;
+        this.entries = new LinkedHashMap<> ( 16, 0.75f, true );
+    }
+
+
+    /**
+     * Returns the immutable tree of a UTF-8 encoded PDML file, and parses the file only if it isn't cached or has
+     * changed. Invalid files are not cached.
+     */
+    public TaggedNode get ( Path filePath ) throws IOException, InvalidPdmlException {
+
+        Path key = filePath.toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes ( key, BasicFileAttributes.class );
+        FileTime lastModified = attributes.lastModifiedTime();
+        long size = attributes.size();
+
+        Entry entry;
+        synchronized ( this ) {
+            entry = entries.get ( key );
+            if ( entry != null && entry.size == size && entry.lastModified.equals ( lastModified ) ) {
+                hits++;
+                return entry.rootNode;
+            }
+        }
+
+        int contentHash = useContentHash ? contentHash ( key ) : 0;
+        if ( entry != null && useContentHash && entry.size == size && entry.contentHash == contentHash ) {
+            put ( key, new Entry ( lastModified, size, contentHash, entry.rootNode, entry.retainedBytes ), true );
+            return entry.rootNode;
+        }
+
+        synchronized ( this ) {
+            misses++;
+        }
+        TaggedNode rootNode = parser.parse ( key );
+        long[] treeBytes = new long[1];
+        TaggedNode frozenRootNode = freeze ( rootNode, treeBytes );
+        put ( key, new Entry ( lastModified, size, contentHash, frozenRootNode, treeBytes[0] ), false );
+        return frozenRootNode;
+    }
+
+    public synchronized void invalidate ( Path filePath ) {
+
+        Entry entry = entries.remove ( filePath.toAbsolutePath().normalize() );
+        if ( entry != null ) retainedBytes -= entry.retainedBytes;
+    }
+
+    public synchronized void clear() {
+
+        entries.clear();
+        retainedBytes = 0;
+    }
+
+    public synchronized Stats stats() {
+
+        return new Stats ( hits, misses, evictions, entries.size(), retainedBytes );
+    }
+
+
+    // Private Methods
+
+    private synchronized void put ( Path key, Entry entry, boolean isHit ) {
+
+        if ( isHit ) hits++;
+
+        Entry replacedEntry = entries.remove ( key );
+        if ( replacedEntry != null ) retainedBytes -= replacedEntry.retainedBytes;
+
+        // a tree larger than the whole budget is returned, but not cached
+        if ( entry.retainedBytes > maxBytes ) return;
+
+        entries.put ( key, entry );
+        retainedBytes += entry.retainedBytes;
+
+        Iterator<Entry> iterator = entries.values().iterator();
+        while ( entries.size() > maxEntries || retainedBytes > maxBytes ) {
+            Entry eldestEntry = iterator.next();
+            iterator.remove();
+            retainedBytes -= eldestEntry.retainedBytes;
+            evictions++;
+        }
+    }
+
+    private static int contentHash ( Path filePath ) throws IOException {
+
+        CRC32C crc = new CRC32C();
+        crc.update ( CorePdmlMappedReader.map ( filePath ) );
+        return (int) crc.getValue();
+    }
+
+    private static final class FreezeFrame {
+
+        private final TaggedNode node;
+        private final Node[] frozenChildNodes;
+        private int nextChild;
+
+        private FreezeFrame ( TaggedNode node ) {
+
+            this.node = node;
+            this.frozenChildNodes = new Node[node.childNodes().size()];
+            this.nextChild = 0;
+        }
+    }
+
+    /**
+     * Returns an immutable copy of a tree, and adds its estimated memory use to {@code bytes[0]}.
+     * The tree is traversed iteratively, so that deep trees don't overflow the stack.
+     */
+    private static TaggedNode freeze ( TaggedNode rootNode, long[] bytes ) {
+
+        ArrayDeque<FreezeFrame> stack = new ArrayDeque<>();
+        stack.push ( new FreezeFrame ( rootNode ) );
+
+        while ( true ) {
+            FreezeFrame frame = stack.peek();
+            if ( frame.nextChild < frame.frozenChildNodes.length ) {
+                Node childNode = frame.node.childNodes().get ( frame.nextChild );
+                if ( childNode instanceof TaggedNode taggedChildNode ) {
+                    stack.push ( new FreezeFrame ( taggedChildNode ) );
+                } else {
+                    String text = ( (TextNode) childNode ).text();
+                    bytes[0] += TEXT_LEAF_BYTES + text.length();
+                    frame.frozenChildNodes[frame.nextChild++] =
+                        childNode instanceof TextLeaf ? childNode : new TextLeaf ( text );
+                }
+                continue;
+            }
+
+            stack.pop();
+            TaggedNode node = frame.node;
+            bytes[0] += TAGGED_NODE_BYTES + (long) CHILD_REFERENCE_BYTES * frame.frozenChildNodes.length;
+            TaggedNode frozenNode = new TaggedNode ( node.tag(), List.of ( frame.frozenChildNodes ), node.tagId() );
+
+            FreezeFrame parentFrame = stack.peek();
+            if ( parentFrame == null ) return frozenNode;
+            parentFrame.frozenChildNodes[parentFrame.nextChild++] = frozenNode;
+        }
+    }
+}
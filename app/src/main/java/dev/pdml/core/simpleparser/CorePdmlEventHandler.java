@@ -0,0 +1,14 @@
+package dev.pdml.core.simpleparser;
+
+/**
+ * Receives the events pushed by {@link CorePdmlEventReader#readAll(CorePdmlEventHandler)}.
+ * All methods do nothing by default, so that a handler only needs to override the events it is interested in.
+ */
+public interface CorePdmlEventHandler {
+
+    default void onNodeStart ( String tag ) throws InvalidPdmlException {}
+
+    default void onText ( String text ) throws InvalidPdmlException {}
+
+    default void onNodeEnd() throws InvalidPdmlException {}
+}
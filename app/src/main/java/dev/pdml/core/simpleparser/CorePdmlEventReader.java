@@ -0,0 +1,221 @@
+package dev.pdml.core.simpleparser;
+
+import java.io.Reader;
+
+/**
+ * A pull parser that reports a PDML document as a sequence of events, without building a tree.
+ * <p>
+ * Memory usage doesn't depend on the size of the document: only the current tag or text is held.
+ * The same rules as in {@link CorePdmlParser} are applied, and errors are reported at the same line and column.
+ */
+public class CorePdmlEventReader {
+
+    private enum State {
+        BEFORE_ROOT,
+        IN_NODE,
+        AFTER_ROOT,
+        END
+    }
+
+
+    private final CorePdmlTokenReader reader;
+    private final CorePdmlTagTable tagTable;
+    private State state;
+    private int depth;
+    private boolean childRequired;
+    private boolean pendingLeafEnd;
+    private String tag;
+    private int tagId;
+    private String text;
+
+
+    public CorePdmlEventReader ( String PdmlCode ) {
+        this ( new CorePdmlReader ( PdmlCode ) );
+    }
+
+    /**
+     * Reads events from a {@code Reader}. IO errors are thrown as {@link java.io.UncheckedIOException}.
+     */
+    public CorePdmlEventReader ( Reader input ) {
+        this ( new CorePdmlReader ( input ) );
+    }
+
+    public CorePdmlEventReader ( CorePdmlTokenReader reader ) {
+        this ( reader, null );
+    }
+
+    /**
+     * Creates an event reader that deduplicates tags with a tag table, and reports their IDs (see {@link #tagId()}).
+     */
+    public CorePdmlEventReader ( CorePdmlTokenReader reader, CorePdmlTagTable tagTable ) {
+
+        this.reader = reader;
+        this.tagTable = tagTable;
+        this.state = State.BEFORE_ROOT;
+        this.depth = 0;
+        this.childRequired = false;
+        this.pendingLeafEnd = false;
+    }
+
+
+    /**
+     * Returns the tag of the last {@link CorePdmlEventType#NODE_START} event, or {@code null}.
+     */
+    public String tag() { return tag; }
+
+    /**
+     * Returns the ID of the last {@link CorePdmlEventType#NODE_START} event's tag, or
+     * {@link CorePdmlTagTable#NO_TAG_ID} if no tag table is used.
+     */
+    public int tagId() { return tagId; }
+
+    /**
+     * Returns the text of the last {@link CorePdmlEventType#TEXT} event, or {@code null}.
+     */
+    public String text() { return text; }
+
+    /**
+     * Returns the number of nodes currently open. The root node is at depth 1.
+     */
+    public int depth() { return depth; }
+
+    public CorePdmlTokenReader reader() { return reader; }
+
+    /**
+     * Reads the next event.
+     * @return the type of the event read, or {@code null} if the end of the document has been reached
+     */
+    public CorePdmlEventType next() throws InvalidPdmlException {
+
+        tag = null;
+        tagId = CorePdmlTagTable.NO_TAG_ID;
+        text = null;
+
+        switch ( state ) {
+            case BEFORE_ROOT:
+                reader.skipWhitespace();
+                if ( ! reader.readNodeStart() ) {
+                    errorDetected ( "Root node expected (e.g. \"[root\")" );
+                }
+                return readNodeStartEvent();
+
+            case IN_NODE:
+                return readInNodeEvent();
+
+            case AFTER_ROOT:
+                reader.skipWhitespace();
+                if ( ! reader.isAtEnd() ) {
+                    errorDetected ( "No more text expected" );
+                }
+                state = State.END;
+                return null;
+
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Reads all remaining events and pushes them to the handler.
+     */
+    public void readAll ( CorePdmlEventHandler handler ) throws InvalidPdmlException {
+
+        CorePdmlEventType event;
+        while ( ( event = next() ) != null ) {
+            switch ( event ) {
+                case NODE_START -> handler.onNodeStart ( tag );
+                case TEXT -> handler.onText ( text );
+                case NODE_END -> handler.onNodeEnd();
+            }
+        }
+    }
+
+
+    // Private Methods
+
+    private CorePdmlEventType readInNodeEvent() throws InvalidPdmlException {
+
+        if ( pendingLeafEnd ) {
+            pendingLeafEnd = false;
+            return nodeEnded();
+        }
+
+        if ( reader.isAtEnd() ) {
+            // Like CorePdmlParser, close the nodes still open at the end of the input
+            requireChild();
+            return nodeEnded();
+        }
+
+        if ( reader.readNodeEnd() ) {
+            requireChild();
+            return nodeEnded();
+        }
+
+        String readText = reader.readText();
+        if ( readText != null ) {
+            childRequired = false;
+            text = readText;
+            return CorePdmlEventType.TEXT;
+        }
+
+        if ( reader.readNodeStart() ) {
+            childRequired = false;
+            return readNodeStartEvent();
+        }
+
+        errorDetected ( "Invalid character" );
+        return null;
+    }
+
+    private CorePdmlEventType readNodeStartEvent() throws InvalidPdmlException {
+
+        // now positioned after '['
+        String readTag;
+        if ( tagTable == null ) {
+            readTag = reader.readTag();
+        } else {
+            tagId = reader.readTagId ( tagTable );
+            readTag = tagId == CorePdmlTagTable.NO_TAG_ID ? null : tagTable.tag ( tagId );
+        }
+        if ( readTag == null ) {
+            errorDetected ( "Node tag required" );
+        }
+
+        depth++;
+        state = State.IN_NODE;
+        tag = readTag;
+
+        if ( reader.readNodeEnd() ) {
+            // it's a tagged leaf node
+            pendingLeafEnd = true;
+        } else {
+            if ( ! reader.readSeparator() ) {
+                errorDetected ( "Separator required" );
+            }
+            childRequired = true;
+        }
+
+        return CorePdmlEventType.NODE_START;
+    }
+
+    private void requireChild() throws InvalidPdmlException {
+
+        if ( childRequired ) {
+            errorDetected ( "Child nodes required" );
+        }
+    }
+
+    private CorePdmlEventType nodeEnded() {
+
+        depth--;
+        childRequired = false;
+        if ( depth == 0 ) {
+            state = State.AFTER_ROOT;
+        }
+        return CorePdmlEventType.NODE_END;
+    }
+
+    private void errorDetected ( String message ) throws InvalidPdmlException {
+        throw new InvalidPdmlException ( message, reader.currentLineNumber(), reader.currentColumnNumber() );
+    }
+}
@@ -0,0 +1,7 @@
+package dev.pdml.core.simpleparser;
+
+public enum CorePdmlEventType {
+    NODE_START,
+    TEXT,
+    NODE_END
+}
@@ -0,0 +1,84 @@
+package dev.pdml.core.simpleparser;
+
+/**
+ * Checks the {@link CorePdmlParserLimits} while a document is read from a token reader, so that all the parse
+ * methods of {@link CorePdmlParser} apply the same limits, and report them with the same messages.
+ * <p>
+ * The maximum tag and text lengths are checked by the token reader while it reads them (see
+ * {@link CorePdmlTokenReader#setMaxTokenLengths(int, int)}). A checker counts the nodes of a single document.
+ */
+final class CorePdmlLimitChecker {
+
+    private final CorePdmlParserLimits limits;
+    private final CorePdmlTokenReader reader;
+    private long nodeCount;
+
+
+    /**
+     * Creates a checker, and sets the maximum tag and text lengths of the reader.
+     */
+    CorePdmlLimitChecker ( CorePdmlParserLimits limits, CorePdmlTokenReader reader ) {
+
+        this.limits = limits;
+        this.reader = reader;
+        this.nodeCount = 0;
+        reader.setMaxTokenLengths ( limits.maxTagLength(), limits.maxTextLength() );
+    }
+
+
+    /**
+     * Checks the depth and the number of nodes when a tagged node is started.
+     * @param depth the depth of the node (the root node is at depth 1)
+     */
+    void nodeStarted ( int depth ) throws InvalidPdmlException {
+
+        if ( depth > limits.maxDepth() ) {
+            throw limitExceeded ( "Maximum depth (" + limits.maxDepth() + ")" );
+        }
+        countNode();
+    }
+
+    /**
+     * Checks the number of nodes and the size of the input read so far when a text leaf has been read.
+     */
+    void textRead() throws InvalidPdmlException {
+
+        countNode();
+        checkInputSize();
+    }
+
+    void checkInputSize() throws InvalidPdmlException { checkInputSize ( limits, reader ); }
+
+    long nodeCount() { return nodeCount; }
+
+    static void checkInputSize ( CorePdmlParserLimits limits, CorePdmlTokenReader reader )
+        throws InvalidPdmlException {
+
+        if ( reader.currentPosition() > limits.maxInputSize() ) {
+            throw inputSizeExceeded ( limits, reader.currentLineNumber(), reader.currentColumnNumber() );
+        }
+    }
+
+    static InvalidPdmlException inputSizeExceeded ( CorePdmlParserLimits limits, int lineNumber, int columnNumber ) {
+
+        return new CorePdmlLimitExceededException (
+            "Maximum input size (" + limits.maxInputSize() + ")", lineNumber, columnNumber );
+    }
+
+
+    // Private Methods
+
+    private void countNode() throws InvalidPdmlException {
+
+        if ( ++nodeCount > limits.maxNodes() ) {
+            throw limitExceeded ( "Maximum number of nodes (" + limits.maxNodes() + ")" );
+        }
+    }
+
+    private InvalidPdmlException limitExceeded ( String limit ) throws InvalidPdmlException {
+
+        // a limit exceeded because the input was cut at the maximum size (see CorePdmlParser) is reported as such
+        checkInputSize();
+        return new CorePdmlLimitExceededException ( limit, reader.currentLineNumber(), reader.currentColumnNumber() );
+    }
+}
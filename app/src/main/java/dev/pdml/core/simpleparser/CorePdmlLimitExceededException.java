@@ -0,0 +1,13 @@
+package dev.pdml.core.simpleparser;
+
+/**
+ * Thrown when one of the {@link CorePdmlParserLimits} is exceeded, so that
+ * {@link CorePdmlParser#parseRecovering(String, int)} can tell it from the errors it recovers from.
+ */
+final class CorePdmlLimitExceededException extends InvalidPdmlException {
+
+    CorePdmlLimitExceededException ( String limit, int lineNumber, int columnNumber ) {
+
+        super ( limit + " exceeded", lineNumber, columnNumber );
+    }
+}
@@ -0,0 +1,60 @@
+package dev.pdml.core.simpleparser;
+
+import java.util.Arrays;
+
+/**
+ * The offsets of the lines of PDML code, to convert offsets into line and column numbers with a binary search.
+ * <p>
+ * Lines are ended by '\n' (so "\r\n" ends a line too). Line and column numbers start at 1, and columns are counted
+ * in chars, like in {@link InvalidPdmlException}.
+ */
+public final class CorePdmlLineIndex {
+
+    private final int[] lineStarts;  // the offset of the first char of each line; lineStarts[0] is 0
+
+
+    CorePdmlLineIndex ( int[] lineStarts ) {
+
+        this.lineStarts = lineStarts;
+    }
+
+    public static CorePdmlLineIndex of ( CharSequence PdmlCode ) {
+
+        int[] lineStarts = new int[16];
+        int lineCount = 1;
+        for ( int i = 0; i < PdmlCode.length(); i++ ) {
+            if ( PdmlCode.charAt ( i ) == '\n' ) {
+                if ( lineCount == lineStarts.length ) lineStarts = Arrays.copyOf ( lineStarts, lineCount * 2 );
+                lineStarts[lineCount++] = i + 1;
+            }
+        }
+        return new CorePdmlLineIndex ( Arrays.copyOf ( lineStarts, lineCount ) );
+    }
+
+
+    public int lineCount() { return lineStarts.length; }
+
+    /**
+     * Returns the offset of the first char of a line.
+     */
+    public int lineStart ( int lineNumber ) {
+
+        if ( lineNumber < 1 || lineNumber > lineStarts.length ) {
+            throw new IndexOutOfBoundsException ( "Line " + lineNumber + " is out of bounds for " + lineStarts.length + " lines." );
+        }
+        return lineStarts[lineNumber - 1];
+    }
+
+    public int lineNumber ( int offset ) {
+
+        if ( offset < 0 ) throw new IndexOutOfBoundsException ( "Offset " + offset + " is negative." );
+        int index = Arrays.binarySearch ( lineStarts, offset );
+        // if the offset isn't a line start, binarySearch returns -(index of the next line start) - 1
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    public int columnNumber ( int offset ) {
+
+        return offset - lineStarts[lineNumber ( offset ) - 1] + 1;
+    }
+}
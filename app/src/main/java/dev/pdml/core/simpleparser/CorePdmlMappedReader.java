@@ -0,0 +1,455 @@
+package dev.pdml.core.simpleparser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the tokens of a UTF-8 encoded PDML document directly from bytes, typically a memory-mapped file.
+ * <p>
+ * All structural characters are ASCII, so the input is scanned without being decoded. Only the tags and texts
+ * returned by {@link #readTag()} and {@link #readText()} are decoded into strings.
+ * <p>
+ * {@link #currentPosition()} is a byte offset. Line and column numbers are counted in chars (like in
+ * {@link CorePdmlReader}), and they are only computed when requested.
+ * Malformed UTF-8 sequences in tags and texts are thrown as {@link UncheckedIOException}, wrapping a
+ * {@link MalformedInputException}.
+ */
+public class CorePdmlMappedReader implements CorePdmlTokenReader {
+
+    // Files up to this size are read by open() instead of being mapped. Mapping a small file costs more than reading
+    // it, and the first FileChannel.map() call of the JVM spins method handles that delay the startup of the CLI.
+    public static final int MAX_READ_FILE_SIZE = 64 * 1024;
+
+    private final ByteBuffer bytes;
+    private final int limit;
+    private int position;            // starts at 0 (not 1)
+    private int currentByte;         // 0 at the end of the input
+    private byte[] decodeBuffer;
+    private char[] tagChars;
+    private int maxTagLength;
+    private int maxTextLength;
+
+    // line numbers are computed lazily, up to 'countedPosition'
+    private int countedPosition;
+    private int countedLineNumber;   // starts at 1 (not 0)
+    private int countedLineStart;
+
+    private long escapeSequenceCount;
+
+
+    public CorePdmlMappedReader ( ByteBuffer bytes ) {
+
+        this ( bytes, 0, bytes.limit() );
+    }
+
+    /**
+     * Reads the bytes from {@code start} (inclusive) to {@code end} (exclusive).
+     * Positions, line numbers and column numbers are those in the whole buffer.
+     */
+    public CorePdmlMappedReader ( ByteBuffer bytes, int start, int end ) {
+
+        CorePdmlReader.checkRange ( bytes.limit(), start, end );
+
+        this.bytes = bytes;
+        this.limit = end;
+        this.position = start;
+        this.currentByte = byteAt ( start );
+        this.decodeBuffer = new byte[64];
+        this.tagChars = new char[64];
+        this.maxTagLength = Integer.MAX_VALUE;
+        this.maxTextLength = Integer.MAX_VALUE;
+        this.countedPosition = 0;
+        this.countedLineNumber = 1;
+        this.countedLineStart = 0;
+        this.escapeSequenceCount = 0;
+    }
+
+    /**
+     * Memory-maps a file, or reads it if it isn't larger than {@link #MAX_READ_FILE_SIZE}. The file is closed when
+     * this method returns, but the mapping stays valid until the buffer is garbage collected.
+     */
+    public static CorePdmlMappedReader open ( Path filePath ) throws IOException {
+
+        return new CorePdmlMappedReader ( readOrMap ( filePath, null ) );
+    }
+
+    /**
+     * Returns the bytes of a file, like {@link #open(Path)}. A file that is read is read into {@code buffer} if it
+     * is large enough, otherwise into a new heap buffer. A mapped buffer is a direct buffer.
+     */
+    static ByteBuffer readOrMap ( Path filePath, ByteBuffer buffer ) throws IOException {
+
+        try ( FileChannel channel = FileChannel.open ( filePath, StandardOpenOption.READ ) ) {
+            long size = channel.size();
+            if ( size > MAX_READ_FILE_SIZE ) return map ( channel, filePath );
+
+            if ( buffer == null || buffer.capacity() < size ) buffer = ByteBuffer.allocate ( (int) size );
+            buffer.clear();
+            buffer.limit ( (int) size );
+            while ( buffer.hasRemaining() && channel.read ( buffer ) >= 0 ) {
+                // read until the buffer is full or the file has been shortened
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    static MappedByteBuffer map ( Path filePath ) throws IOException {
+
+        try ( FileChannel channel = FileChannel.open ( filePath, StandardOpenOption.READ ) ) {
+            return map ( channel, filePath );
+        }
+    }
+
+    private static MappedByteBuffer map ( FileChannel channel, Path filePath ) throws IOException {
+
+        long size = channel.size();
+        if ( size > Integer.MAX_VALUE ) {
+            throw new IOException ( "File '" + filePath + "' is too large to be memory-mapped." );
+        }
+        return channel.map ( FileChannel.MapMode.READ_ONLY, 0, size );
+    }
+
+
+    public int size() { return limit; }
+
+    public long currentPosition() { return position; }
+
+    public int currentLineNumber() {
+
+        countLines();
+        return countedLineNumber;
+    }
+
+    public int currentColumnNumber() {
+
+        countLines();
+        int end = Math.min ( position, limit );
+        int column = 1 + position - end;
+        for ( int i = countedLineStart; i < end; i++ ) {
+            int b = byteAt ( i );
+            if ( ( b & 0xC0 ) != 0x80 ) {
+                // a lead byte; 4-byte sequences are two chars (a surrogate pair) in Java
+                column += b >= 0xF0 ? 2 : 1;
+            }
+        }
+        return column;
+    }
+
+    public boolean isAtEnd() { return position >= limit; }
+
+
+    public boolean readNodeStart() { return acceptByte ( CorePdmlConstants.NODE_START_CHAR ); }
+
+    public boolean readNodeEnd() { return acceptByte ( CorePdmlConstants.NODE_END_CHAR ); }
+
+    public String readTag() throws InvalidPdmlException {
+        return readTagOrText ( CorePdmlConstants.TAG_END_CHAR_FLAG, CorePdmlConstants.INVALID_TAG_CHAR_FLAG );
+    }
+
+    public String readText() throws InvalidPdmlException {
+        return readTagOrText ( CorePdmlConstants.TEXT_END_CHAR_FLAG, CorePdmlConstants.INVALID_TEXT_CHAR_FLAG );
+    }
+
+    /**
+     * Reads a tag and returns its ID in the tag table. ASCII tags without escapes are compared in place with the
+     * tags in the table, so that no {@code String} is created if the tag is already in the table.
+     */
+    public int readTagId ( CorePdmlTagTable tagTable ) throws InvalidPdmlException {
+
+        int start = position;
+        int flags = scanTagOrText (
+            CorePdmlConstants.TAG_END_CHAR_FLAG, CorePdmlConstants.INVALID_TAG_CHAR_FLAG, maxTagLength );
+        int length = position - start;
+        if ( length == 0 ) return CorePdmlTagTable.NO_TAG_ID;
+
+        if ( flags != 0 ) return tagTable.id ( materialize ( start, flags ) );
+
+        // ASCII chars are the same in UTF-8 and UTF-16
+        if ( tagChars.length < length ) {
+            tagChars = new char[Math.max ( length, tagChars.length * 2 )];
+        }
+        for ( int i = 0; i < length; i++ ) {
+            tagChars[i] = (char) bytes.get ( start + i );
+        }
+        return tagTable.id ( tagChars, 0, length );
+    }
+
+    public boolean skipTag() throws InvalidPdmlException {
+        return skipTagOrText ( CorePdmlConstants.TAG_END_CHAR_FLAG, CorePdmlConstants.INVALID_TAG_CHAR_FLAG );
+    }
+
+    public boolean skipText() throws InvalidPdmlException {
+        return skipTagOrText ( CorePdmlConstants.TEXT_END_CHAR_FLAG, CorePdmlConstants.INVALID_TEXT_CHAR_FLAG );
+    }
+
+    public boolean readSeparator() {
+
+        boolean isWindowsNewline = currentByte == '\r';
+        if ( isWhiteSpaceByte ( currentByte ) ) {
+            advance ( 1 );
+            if ( isWindowsNewline ) advance ( isAtEnd() ? 1 : sequenceLength ( currentByte ) ); // \r\n
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    public void skipWhitespace() {
+
+        while ( ! isAtEnd () && isWhiteSpaceByte ( currentByte ) ) {
+            advance ( 1 );
+        }
+        // the caller may report a PDML error at the next char, but malformed UTF-8 is reported first, like a
+        // Reader's decoder does
+        if ( currentByte >= 0x80 ) requireWellFormedSequence();
+    }
+
+    public void setMaxTokenLengths ( int maxTagLength, int maxTextLength ) {
+
+        this.maxTagLength = maxTagLength;
+        this.maxTextLength = maxTextLength;
+    }
+
+    public long escapeSequenceCount() { return escapeSequenceCount; }
+
+    public void skipToNodeStartOrEnd() {
+
+        while ( position < limit
+            && currentByte != CorePdmlConstants.NODE_START_CHAR
+            && currentByte != CorePdmlConstants.NODE_END_CHAR ) {
+
+            if ( currentByte == CorePdmlConstants.ESCAPE_CHAR && position + 1 < limit ) advance ( 1 );
+            advance ( currentByte >= 0x80 ? requireWellFormedSequence() : 1 );
+        }
+    }
+
+
+    // Private Methods
+
+    private static final int HAS_ESCAPES = 1;
+    private static final int HAS_NON_ASCII_CHARS = 2;
+
+    private String readTagOrText ( int endCharFlag, int invalidCharFlag ) throws InvalidPdmlException {
+
+        final int start = position;
+        final int maxLength = endCharFlag == CorePdmlConstants.TAG_END_CHAR_FLAG ? maxTagLength : maxTextLength;
+        final int flags = scanTagOrText ( endCharFlag, invalidCharFlag, maxLength );
+        return position == start ? null : materialize ( start, flags );
+    }
+
+    private boolean skipTagOrText ( int endCharFlag, int invalidCharFlag ) throws InvalidPdmlException {
+
+        final int start = position;
+        scanTagOrText ( endCharFlag, invalidCharFlag, Integer.MAX_VALUE );
+        return position != start;
+    }
+
+    private String materialize ( int start, int flags ) {
+
+        String result = decode ( start, position );
+        return ( flags & HAS_ESCAPES ) != 0 ? unescape ( result ) : result;
+    }
+
+    /**
+     * Checks the tag or text at the current position and moves to its end, or stops at the first char beyond
+     * {@code maxLength}.
+     * @param maxLength the maximum length in chars after unescaping (a 4-byte sequence is 2 chars in UTF-16)
+     * @return a combination of HAS_ESCAPES and HAS_NON_ASCII_CHARS
+     */
+    private int scanTagOrText ( int endCharFlag, int invalidCharFlag, int maxLength ) throws InvalidPdmlException {
+
+        int result = 0;
+        int length = 0;
+
+        while ( ! isAtEnd() ) {
+
+            int b = currentByte;
+            if ( b < 0x80 ) {
+                char c = (char) b;
+                int flags = CorePdmlConstants.charFlags ( c );
+                if ( flags == 0 ) {
+                    // ordinary ASCII char
+
+                } else if ( ( flags & endCharFlag ) != 0 ) {
+                    break;
+
+                } else if ( ( flags & invalidCharFlag ) != 0 ) {
+                    errorDetected ( "Character '" + c + "' is not allowed in this context." );
+
+                } else if ( ( flags & CorePdmlConstants.INVALID_CONTROL_CHAR_FLAG ) != 0 ) {
+                    errorDetected ( "Unicode code points below U+001F (control characters) are not allowed, except U+0009 (Character Tabulation), U+000A (End of Line), U+000C (Form Feed), and U+000D (Carriage Return)." );
+
+                } else if ( ( flags & CorePdmlConstants.ESCAPE_CHAR_FLAG ) != 0 ) {
+                    requireValidEscapeSequence();
+                    escapeSequenceCount++;
+                    result |= HAS_ESCAPES;
+                }
+                // an escape sequence is a single char
+                if ( ++length > maxLength ) maxLengthExceeded ( endCharFlag, maxLength );
+                advance ( 1 );
+
+            } else {
+                int sequenceLength = requireValidSequence();
+                length += sequenceLength == 4 ? 2 : 1;
+                if ( length > maxLength ) maxLengthExceeded ( endCharFlag, maxLength );
+                advance ( sequenceLength );
+                result |= HAS_NON_ASCII_CHARS;
+            }
+        }
+
+        return result;
+    }
+
+    private void requireValidEscapeSequence() throws InvalidPdmlException {
+
+        // now positioned at '\'
+        advance ( 1 ); // consume \
+
+        if ( isAtEnd () ) {
+            errorDetected (
+                "Expecting another character after the escape character '" + CorePdmlConstants.ESCAPE_CHAR + "'." );
+        }
+
+        int b = currentByte;
+        if ( CorePdmlConstants.unescapedChar ( (char) b ) < 0 ) {
+            int escapedLength = b >= 0x80 ? requireWellFormedSequence() : 1;
+            String escaped = decode ( position, position + escapedLength );
+            errorDetected ( "Invalid character escape sequence \"" + CorePdmlConstants.ESCAPE_CHAR + escaped + "\"" );
+        }
+    }
+
+    /**
+     * Checks the multi-byte UTF-8 sequence at the current position.
+     * @return the length of the sequence
+     */
+    private int requireValidSequence() throws InvalidPdmlException {
+
+        int length = requireWellFormedSequence();
+        if ( currentByte == 0xC2 && byteAt ( position + 1 ) <= 0x9F ) {
+            errorDetected ( "Unicode code points in the range U+0080 to U+009F (control characters) are not allowed." );
+        }
+        return length;
+    }
+
+    /**
+     * Checks that the multi-byte UTF-8 sequence at the current position is well-formed, and throws a
+     * {@link MalformedInputException} (wrapped in an {@link UncheckedIOException}) if it isn't.
+     * @return the length of the sequence
+     */
+    private int requireWellFormedSequence() {
+
+        int b = currentByte;
+        int length = sequenceLength ( b );
+        if ( length == 1 || position + length > limit ) malformed();
+
+        int second = byteAt ( position + 1 );
+        int minSecond = 0x80;
+        int maxSecond = 0xBF;
+        switch ( b ) {
+            case 0xE0 -> minSecond = 0xA0; // overlong encoding
+            case 0xED -> maxSecond = 0x9F; // surrogates
+            case 0xF0 -> minSecond = 0x90; // overlong encoding
+            case 0xF4 -> maxSecond = 0x8F; // above U+10FFFF
+        }
+        if ( second < minSecond || second > maxSecond ) malformed();
+        for ( int i = 2; i < length; i++ ) {
+            if ( ( byteAt ( position + i ) & 0xC0 ) != 0x80 ) malformed();
+        }
+        return length;
+    }
+
+    private static int sequenceLength ( int leadByte ) {
+
+        if ( leadByte < 0x80 ) return 1;
+        if ( leadByte >= 0xC2 && leadByte <= 0xDF ) return 2;
+        if ( leadByte >= 0xE0 && leadByte <= 0xEF ) return 3;
+        if ( leadByte >= 0xF0 && leadByte <= 0xF4 ) return 4;
+        return 1; // invalid lead byte
+    }
+
+    private void malformed() {
+        throw new UncheckedIOException ( new MalformedInputException ( 1 ) );
+    }
+
+    private String decode ( int start, int end ) {
+
+        int length = end - start;
+        if ( decodeBuffer.length < length ) {
+            decodeBuffer = new byte[Math.max ( length, decodeBuffer.length * 2 )];
+        }
+        bytes.get ( start, decodeBuffer, 0, length );
+        return new String ( decodeBuffer, 0, length, StandardCharsets.UTF_8 );
+    }
+
+    private static String unescape ( String escaped ) {
+
+        StringBuilder result = new StringBuilder ( escaped.length() );
+        for ( int i = 0; i < escaped.length(); i++ ) {
+            char c = escaped.charAt ( i );
+            if ( c == CorePdmlConstants.ESCAPE_CHAR ) {
+                i++;
+                c = (char) CorePdmlConstants.unescapedChar ( escaped.charAt ( i ) );
+            }
+            result.append ( c );
+        }
+        return result.toString();
+    }
+
+    private void countLines() {
+
+        if ( position < countedPosition ) {
+            countedPosition = 0;
+            countedLineNumber = 1;
+            countedLineStart = 0;
+        }
+
+        int end = Math.min ( position, limit );
+        for ( int i = countedPosition; i < end; i++ ) {
+            if ( byteAt ( i ) == '\n' ) {
+                countedLineNumber++;
+                countedLineStart = i + 1;
+            }
+        }
+        countedPosition = end;
+    }
+
+    private static boolean isWhiteSpaceByte ( int b ) {
+        return ( CorePdmlConstants.charFlags ( (char) b ) & CorePdmlConstants.WHITESPACE_CHAR_FLAG ) != 0;
+    }
+
+    private boolean acceptByte ( char c ) {
+
+        if ( currentByte == c ) {
+            advance ( 1 );
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    private void advance ( int length ) {
+
+        position += length;
+        currentByte = byteAt ( position );
+    }
+
+    private int byteAt ( int index ) {
+        return index < limit ? bytes.get ( index ) & 0xFF : 0;
+    }
+
+    private void maxLengthExceeded ( int endCharFlag, int maxLength ) throws InvalidPdmlException {
+        throw CorePdmlReader.maxLengthExceeded ( endCharFlag, maxLength, currentLineNumber(), currentColumnNumber() );
+    }
+
+    private void errorDetected ( String message ) throws InvalidPdmlException {
+        throw new InvalidPdmlException ( message, currentLineNumber(), currentColumnNumber() );
+    }
+}
@@ -0,0 +1,369 @@
+package dev.pdml.core.simpleparser;
+
+import dev.pdml.core.simpleparser.data.Node;
+import dev.pdml.core.simpleparser.data.TaggedNode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Parses a large PDML document on several threads.
+ * <p>
+ * A first pass finds the node start and end chars (skipping escaped chars), and splits the content of the root
+ * node into chunks of consecutive child nodes. The chunks are then parsed concurrently in a {@link ForkJoinPool},
+ * and their nodes are appended to the root node in document order.
+ * <p>
+ * The result and the errors are the same as those of {@link CorePdmlParser}. If several chunks are invalid, the
+ * error of the first one is reported. Small documents, and documents whose root node isn't closed, are parsed
+ * sequentially.
+ * <p>
+ * A file is memory-mapped. A file larger than 2 GB, which can't be mapped into a single buffer, is mapped in regions
+ * of 1 GB to split it, and each chunk is mapped separately. If a chunk would still be larger than 2 GB (e.g. because
+ * of a single huge child node), the file is parsed sequentially from a stream.
+ */
+public class CorePdmlParallelParser {
+
+    public static final int DEFAULT_MIN_CHUNK_SIZE = 256 * 1024;
+
+    // files are mapped in regions of 2^30 bytes if they can't be mapped into a single buffer
+    private static final int DEFAULT_REGION_SHIFT = 30;
+
+    private final ForkJoinPool pool;
+    private final int minChunkSize;
+    private final int regionShift;
+    private final long maxMappedSize;   // the maximum size of a single buffer (2 GB - 1 by default)
+
+
+    public CorePdmlParallelParser() {
+        this ( ForkJoinPool.commonPool() );
+    }
+
+    public CorePdmlParallelParser ( ForkJoinPool pool ) {
+        this ( pool, DEFAULT_MIN_CHUNK_SIZE );
+    }
+
+    /**
+     * @param minChunkSize the minimum number of chars (or bytes for a file) parsed by a task
+     */
+    public CorePdmlParallelParser ( ForkJoinPool pool, int minChunkSize ) {
+        this ( pool, minChunkSize, DEFAULT_REGION_SHIFT );
+    }
+
+    /**
+     * @param regionShift files of {@code 2 << regionShift} bytes or more are mapped in regions of
+     * {@code 1 << regionShift} bytes (used by tests to split small files)
+     */
+    CorePdmlParallelParser ( ForkJoinPool pool, int minChunkSize, int regionShift ) {
+
+        if ( minChunkSize <= 0 ) throw new IllegalArgumentException ( "Minimum chunk size must be greater than 0." );
+        this.pool = pool;
+        this.minChunkSize = minChunkSize;
+        this.regionShift = regionShift;
+        this.maxMappedSize = ( 2L << regionShift ) - 1;
+    }
+
+
+    public TaggedNode parse ( String PdmlCode ) throws InvalidPdmlException {
+
+        return parse ( new StringSource ( PdmlCode ) );
+    }
+
+    /**
+     * Parses a UTF-8 encoded PDML file. The file is memory-mapped (see {@link CorePdmlMappedReader}), in several
+     * regions if it is larger than 2 GB.
+     */
+    public TaggedNode parse ( Path filePath ) throws IOException, InvalidPdmlException {
+
+        try ( FileChannel channel = FileChannel.open ( filePath, StandardOpenOption.READ ) ) {
+            long size = channel.size();
+            Source source = size <= maxMappedSize
+                ? new BufferSource ( channel.map ( FileChannel.MapMode.READ_ONLY, 0, size ) )
+                : new RegionSource ( channel, size, regionShift );
+            return parse ( source );
+        } catch ( UncheckedIOException e ) {
+            throw e.getCause();
+        }
+    }
+
+
+    // Private Methods
+
+    private interface Source {
+
+        long length();
+
+        // returns a char, or a byte for UTF-8 input (node and escape chars are ASCII)
+        int charAt ( long index );
+
+        // the range must not be larger than the maximum mapped size
+        CorePdmlTokenReader reader ( long start, long end );
+
+        TaggedNode parseSequentially ( CorePdmlParser parser ) throws InvalidPdmlException;
+
+        // returns the error of a reader created with reader ( start, ... ), positioned in the whole source
+        InvalidPdmlException positioned ( InvalidPdmlException error, long start );
+    }
+
+    private record StringSource ( String code ) implements Source {
+
+        public long length() { return code.length(); }
+
+        public int charAt ( long index ) { return code.charAt ( (int) index ); }
+
+        public CorePdmlTokenReader reader ( long start, long end ) {
+            return new CorePdmlReader ( code, (int) start, (int) end );
+        }
+
+        public TaggedNode parseSequentially ( CorePdmlParser parser ) throws InvalidPdmlException {
+            return parser.parse ( reader ( 0, code.length() ) );
+        }
+
+        public InvalidPdmlException positioned ( InvalidPdmlException error, long start ) { return error; }
+    }
+
+    private record BufferSource ( ByteBuffer bytes ) implements Source {
+
+        public long length() { return bytes.limit(); }
+
+        public int charAt ( long index ) { return bytes.get ( (int) index ); }
+
+        public CorePdmlTokenReader reader ( long start, long end ) {
+            return new CorePdmlMappedReader ( bytes.duplicate(), (int) start, (int) end );
+        }
+
+        public TaggedNode parseSequentially ( CorePdmlParser parser ) throws InvalidPdmlException {
+            return parser.parse ( reader ( 0, bytes.limit() ) );
+        }
+
+        public InvalidPdmlException positioned ( InvalidPdmlException error, long start ) { return error; }
+    }
+
+    /**
+     * A file that is too large to be mapped into a single buffer. It is mapped in regions to be split, and each
+     * range read is mapped into its own buffer, whose positions, line numbers and column numbers start at the
+     * range's start.
+     */
+    private static final class RegionSource implements Source {
+
+        private final FileChannel channel;
+        private final long length;
+        private final int regionShift;
+        private final MappedByteBuffer[] regions;
+
+        private RegionSource ( FileChannel channel, long length, int regionShift ) throws IOException {
+
+            this.channel = channel;
+            this.length = length;
+            this.regionShift = regionShift;
+            long regionSize = 1L << regionShift;
+            this.regions = new MappedByteBuffer[(int) ( ( length + regionSize - 1 ) >>> regionShift )];
+            for ( int i = 0; i < regions.length; i++ ) {
+                long regionStart = (long) i << regionShift;
+                regions[i] = channel.map (
+                    FileChannel.MapMode.READ_ONLY, regionStart, Math.min ( regionSize, length - regionStart ) );
+            }
+        }
+
+        public long length() { return length; }
+
+        public int charAt ( long index ) {
+            return regions[(int) ( index >>> regionShift )].get ( (int) ( index & ( ( 1L << regionShift ) - 1 ) ) );
+        }
+
+        public CorePdmlTokenReader reader ( long start, long end ) {
+
+            try {
+                return new CorePdmlMappedReader ( channel.map ( FileChannel.MapMode.READ_ONLY, start, end - start ) );
+            } catch ( IOException e ) {
+                throw new UncheckedIOException ( e );
+            }
+        }
+
+        public TaggedNode parseSequentially ( CorePdmlParser parser ) throws InvalidPdmlException {
+
+            try {
+                return parser.parse ( channel.position ( 0 ) );
+            } catch ( IOException e ) {
+                throw new UncheckedIOException ( e );
+            }
+        }
+
+        public InvalidPdmlException positioned ( InvalidPdmlException error, long start ) {
+
+            // the line and column of 'start' are only computed for an error, by counting from the file's start
+            int lineNumber = 1;
+            long lineStart = 0;
+            for ( long i = 0; i < start; i++ ) {
+                if ( charAt ( i ) == '\n' ) {
+                    lineNumber++;
+                    lineStart = i + 1;
+                }
+            }
+            int columnNumber = 1;
+            for ( long i = lineStart; i < start; i++ ) {
+                int b = charAt ( i ) & 0xFF;
+                if ( ( b & 0xC0 ) != 0x80 ) {
+                    // a lead byte; 4-byte sequences are two chars (a surrogate pair), like in CorePdmlMappedReader
+                    columnNumber += b >= 0xF0 ? 2 : 1;
+                }
+            }
+
+            return new InvalidPdmlException (
+                error.getMessage(),
+                lineNumber + error.getLineNumber() - 1,
+                error.getLineNumber() == 1 ? columnNumber + error.getColumnNumber() - 1 : error.getColumnNumber() );
+        }
+    }
+
+    private TaggedNode parse ( Source source ) throws InvalidPdmlException {
+
+        final long length = source.length();
+        // the table is only used by this call, so its size isn't limited
+        final CorePdmlTagTable tagTable = new CorePdmlTagTable ( Integer.MAX_VALUE );
+        if ( length < 2L * minChunkSize ) return parseSequentially ( source, tagTable );
+
+        // the root node's tag is parsed like in CorePdmlParser; all errors are left to the sequential parser
+        CorePdmlTokenReader reader = source.reader ( 0, Math.min ( length, maxMappedSize ) );
+        reader.skipWhitespace();
+        if ( ! reader.readNodeStart() ) return parseSequentially ( source, tagTable );
+        int tagId = reader.readTagId ( tagTable );
+        if ( tagId == CorePdmlTagTable.NO_TAG_ID || ! reader.readSeparator() ) {
+            return parseSequentially ( source, tagTable );
+        }
+
+        // chunks are at most a region large (unless a child node is larger), so that they can be mapped
+        long chunkSize = Math.min (
+            Math.max ( minChunkSize, length / ( pool.getParallelism() * 4 ) ), 1L << regionShift );
+        long[] chunkStarts = splitRootContent ( source, reader.currentPosition(), chunkSize );
+        if ( chunkStarts == null || chunkStarts.length < 3 || ! areMappable ( chunkStarts, length ) ) {
+            return parseSequentially ( source, tagTable );
+        }
+
+        List<Node> childNodes = parseChunks ( source, chunkStarts, tagTable );
+
+        // the last element of 'chunkStarts' is the position of the root node's end char
+        long tailStart = chunkStarts[chunkStarts.length - 1] + 1;
+        CorePdmlTokenReader tailReader = source.reader ( tailStart, length );
+        tailReader.skipWhitespace();
+        if ( ! tailReader.isAtEnd() ) {
+            throw source.positioned ( new InvalidPdmlException (
+                "No more text expected", tailReader.currentLineNumber(), tailReader.currentColumnNumber() ), tailStart );
+        }
+
+        return new TaggedNode ( tagTable.tag ( tagId ), childNodes, tagId );
+    }
+
+    private static TaggedNode parseSequentially ( Source source, CorePdmlTagTable tagTable )
+        throws InvalidPdmlException {
+
+        return source.parseSequentially ( new CorePdmlParser ( tagTable ) );
+    }
+
+    /**
+     * Returns true if each chunk, and the text after the root node, can be read from a single buffer.
+     */
+    private boolean areMappable ( long[] chunkStarts, long length ) {
+
+        for ( int i = 0; i < chunkStarts.length - 1; i++ ) {
+            if ( chunkStarts[i + 1] - chunkStarts[i] > maxMappedSize ) return false;
+        }
+        return length - chunkStarts[chunkStarts.length - 1] - 1 <= maxMappedSize;
+    }
+
+    /**
+     * Splits the root node's content into chunks of at least 'chunkSize' chars that start with a child node.
+     * @return the start positions of the chunks, followed by the position of the root node's end char,
+     * or null if the root node isn't closed
+     */
+    private static long[] splitRootContent ( Source source, long contentStart, long chunkSize ) {
+
+        final long length = source.length();
+        long[] positions = new long[16];
+        int count = 0;
+        positions[count++] = contentStart;
+
+        long chunkStart = contentStart;
+        int depth = 1;
+        for ( long i = contentStart; i < length; i++ ) {
+            int c = source.charAt ( i );
+            if ( c == CorePdmlConstants.ESCAPE_CHAR ) {
+                i++; // skip the escaped char
+            } else if ( c == CorePdmlConstants.NODE_START_CHAR ) {
+                if ( depth == 1 && i - chunkStart >= chunkSize ) {
+                    if ( count == positions.length ) positions = Arrays.copyOf ( positions, count * 2 );
+                    positions[count++] = i;
+                    chunkStart = i;
+                }
+                depth++;
+            } else if ( c == CorePdmlConstants.NODE_END_CHAR ) {
+                depth--;
+                if ( depth == 0 ) {
+                    if ( count == positions.length ) positions = Arrays.copyOf ( positions, count + 1 );
+                    positions[count++] = i;
+                    return Arrays.copyOf ( positions, count );
+                }
+            }
+        }
+        return null;
+    }
+
+    // the nodes of a chunk, or its error
+    private record ChunkResult ( List<Node> childNodes, InvalidPdmlException error ) {}
+
+    private List<Node> parseChunks ( Source source, long[] chunkStarts, CorePdmlTagTable tagTable )
+        throws InvalidPdmlException {
+
+        List<Callable<ChunkResult>> tasks = new ArrayList<>();
+        for ( int i = 0; i < chunkStarts.length - 1; i++ ) {
+            long start = chunkStarts[i];
+            long end = chunkStarts[i + 1];
+            tasks.add ( () -> parseChunk ( source.reader ( start, end ), tagTable ) );
+        }
+
+        List<Node> childNodes = new ArrayList<>();
+        List<Future<ChunkResult>> futures = pool.invokeAll ( tasks );
+        for ( int i = 0; i < futures.size(); i++ ) {
+            ChunkResult result = chunkResult ( futures.get ( i ) );
+            if ( result.error != null ) throw source.positioned ( result.error, chunkStarts[i] );
+            childNodes.addAll ( result.childNodes );
+        }
+        return childNodes;
+    }
+
+    private static ChunkResult parseChunk ( CorePdmlTokenReader reader, CorePdmlTagTable tagTable ) {
+
+        try {
+            return new ChunkResult ( new CorePdmlParser ( tagTable ).parseChildNodes ( reader ), null );
+        } catch ( InvalidPdmlException e ) {
+            return new ChunkResult ( null, e );
+        }
+    }
+
+    private static ChunkResult chunkResult ( Future<ChunkResult> future ) {
+
+        try {
+            return future.get();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException ( "Parsing was interrupted." );
+        } catch ( ExecutionException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof RuntimeException runtimeException ) throw runtimeException;
+            if ( cause instanceof Error error ) throw error;
+            throw new IllegalStateException ( cause );
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package dev.pdml.core.simpleparser;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A JFR event committed for each document parsed by {@link CorePdmlParser}, with its {@link CorePdmlParseMetrics}.
+ * It is recorded while a flight recording is running (e.g. {@code java -XX:StartFlightRecording ...} or
+ * {@code jcmd <pid> JFR.start}). Otherwise, metrics are not collected for it.
+ */
+@Name ( "dev.pdml.Parse" )
+@Label ( "PDML Parse" )
+@Category ( "PDML" )
+@Description ( "A PDML document parsed by CorePdmlParser" )
+@StackTrace ( false )
+final class CorePdmlParseEvent extends jdk.jfr.Event {
+
+    @Label ( "Valid" )
+    boolean isValid;
+
+    @Label ( "Bytes Processed" )
+    @DataAmount
+    long bytesProcessed;
+
+    @Label ( "Chars Processed" )
+    long charsProcessed;
+
+    @Label ( "Tagged Nodes" )
+    long taggedNodeCount;
+
+    @Label ( "Text Leaves" )
+    long textLeafCount;
+
+    @Label ( "Maximum Depth" )
+    int maxDepth;
+
+    @Label ( "Escape Sequences" )
+    long escapeSequenceCount;
+
+    @Label ( "Read Time" )
+    @Timespan ( Timespan.NANOSECONDS )
+    long readNanos;
+
+    @Label ( "Estimated Allocation" )
+    @DataAmount
+    long estimatedAllocatedBytes;
+
+
+    void setMetrics ( CorePdmlParseMetrics metrics ) {
+
+        isValid = metrics.isValid();
+        bytesProcessed = metrics.bytesProcessed();
+        charsProcessed = metrics.charsProcessed();
+        taggedNodeCount = metrics.taggedNodeCount();
+        textLeafCount = metrics.textLeafCount();
+        maxDepth = metrics.maxDepth();
+        escapeSequenceCount = metrics.escapeSequenceCount();
+        readNanos = metrics.readNanos();
+        estimatedAllocatedBytes = metrics.estimatedAllocatedBytes();
+    }
+}
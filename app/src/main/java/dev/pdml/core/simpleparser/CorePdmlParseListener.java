@@ -0,0 +1,14 @@
+package dev.pdml.core.simpleparser;
+
+/**
+ * Receives the metrics of each document parsed by a {@link CorePdmlParser} (see
+ * {@link CorePdmlParser#withParseListener(CorePdmlParseListener)}).
+ * <p>
+ * The listener is called by the thread that parsed the document, after the document has been parsed, also if it is
+ * invalid. It must be thread-safe if the parser is used by several threads.
+ */
+@FunctionalInterface
+public interface CorePdmlParseListener {
+
+    void documentParsed ( CorePdmlParseMetrics metrics );
+}
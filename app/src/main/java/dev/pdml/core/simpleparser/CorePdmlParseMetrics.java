@@ -0,0 +1,46 @@
+package dev.pdml.core.simpleparser;
+
+/**
+ * The metrics of a document parsed by {@link CorePdmlParser}, reported to a {@link CorePdmlParseListener} and in
+ * {@code dev.pdml.Parse} JFR events.
+ *
+ * @param isValid false if the document is invalid; the other values are then those up to the error
+ * @param bytesProcessed the number of UTF-8 bytes read from a file, or -1 if chars were read
+ * @param charsProcessed the number of chars read from a string or a {@code Reader}, or -1 if bytes were read
+ * @param taggedNodeCount the number of tagged nodes
+ * @param textLeafCount the number of text leaves
+ * @param textLength the total length of the text leaves, in chars (in the code, for lazy text leaves)
+ * @param maxDepth the maximum nesting level of a node (the root node is at level 1)
+ * @param escapeSequenceCount the number of escape sequences in tags and texts
+ * @param readNanos the time spent reading and decoding tags and texts
+ * @param totalNanos the time spent parsing the document
+ */
+public record CorePdmlParseMetrics (
+    boolean isValid,
+    long bytesProcessed,
+    long charsProcessed,
+    long taggedNodeCount,
+    long textLeafCount,
+    long textLength,
+    int maxDepth,
+    long escapeSequenceCount,
+    long readNanos,
+    long totalNanos ) {
+
+    // estimated sizes of the objects of a tree (with compressed object pointers)
+    private static final int TAGGED_NODE_BYTES = 24 + 24 + 16 + 4 * 10; // record + ArrayList + its array
+    private static final int TEXT_LEAF_BYTES = 16 + 24 + 16;            // record + String + its array
+
+
+    /**
+     * Returns the time spent on everything else than reading tags and texts, mainly building the tree.
+     */
+    public long buildNanos() { return totalNanos - readNanos; }
+
+    /**
+     * Returns an estimate of the memory allocated for the tree, assuming texts with one byte per char.
+     */
+    public long estimatedAllocatedBytes() {
+        return taggedNodeCount * TAGGED_NODE_BYTES + textLeafCount * TEXT_LEAF_BYTES + textLength;
+    }
+}
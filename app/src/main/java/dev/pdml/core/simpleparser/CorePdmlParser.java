@@ -1,109 +1,801 @@
 package dev.pdml.core.simpleparser;
 
+import dev.pdml.core.simpleparser.data.CompactDocument;
+import dev.pdml.core.simpleparser.data.CompactDocumentBuilder;
+import dev.pdml.core.simpleparser.data.ImmutableTaggedNode;
+import dev.pdml.core.simpleparser.data.ImmutableTreeBuilder;
+import dev.pdml.core.simpleparser.data.LazyTextLeaf;
+import dev.pdml.core.simpleparser.data.Node;
 import dev.pdml.core.simpleparser.data.TaggedNode;
+import dev.pdml.core.simpleparser.data.TextNode;
 
+import jdk.jfr.FlightRecorder;
+
+import java.io.FilterReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
-
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parses PDML code into a tree of {@link TaggedNode}s.
+ * <p>
+ * A parser has no per-document state, and can be used by several threads at the same time. The readers used to
+ * parse strings and {@code Reader}s are taken from a {@link CorePdmlReaderPool}, so that their buffers are reused.
+ * The tag table and the node stack of each document are kept with the pooled readers too. To deduplicate tags
+ * across documents, use a shared {@link CorePdmlTagTable}. Its size is limited: once it is full, the new tags of
+ * a document are only deduplicated within the document (see {@link CorePdmlTagTable}).
+ * <p>
+ * Nodes are parsed without recursion, so the nesting depth is only limited by {@link CorePdmlParserLimits}.
+ * All the limits are checked by the methods that build a document, whatever its form. The {@code validate} methods
+ * only check the maximum input size.
+ */
 public class CorePdmlParser {
 
 
-    private CorePdmlReader reader;
+    private final CorePdmlTagTable sharedTagTable;
+    private final CorePdmlReaderPool readerPool;
+    private final CorePdmlParserLimits limits;
+    private final CorePdmlParseListener parseListener;
+
+
+    /**
+     * Creates a parser that uses a new tag table for each document parsed, and the shared reader pool.
+     * Tags are deduplicated within a document, and tag IDs are only meaningful within a document.
+     */
+    public CorePdmlParser() {
+        this ( null, CorePdmlReaderPool.shared() );
+    }
+
+    /**
+     * Creates a parser that uses the given tag table for all documents. Tags are deduplicated across documents,
+     * and tag IDs are stable, as long as the table isn't full.
+     */
+    public CorePdmlParser ( CorePdmlTagTable tagTable ) {
+        this ( tagTable, CorePdmlReaderPool.shared() );
+    }
+
+    /**
+     * Creates a parser that uses the given tag table (or a new one for each document if it is null), and takes
+     * the readers used to parse strings and {@code Reader}s from the given pool.
+     */
+    public CorePdmlParser ( CorePdmlTagTable tagTable, CorePdmlReaderPool readerPool ) {
+
+        this ( tagTable, readerPool, CorePdmlParserLimits.NONE );
+    }
 
+    /**
+     * Creates a parser that checks the given limits, e.g. to parse untrusted input.
+     */
+    public CorePdmlParser ( CorePdmlParserLimits limits ) {
 
-    public CorePdmlParser() {}
+        this ( null, CorePdmlReaderPool.shared(), limits );
+    }
+
+    public CorePdmlParser ( CorePdmlTagTable tagTable, CorePdmlReaderPool readerPool, CorePdmlParserLimits limits ) {
+
+        this ( tagTable, readerPool, limits, null );
+    }
 
+    private CorePdmlParser (
+        CorePdmlTagTable tagTable,
+        CorePdmlReaderPool readerPool,
+        CorePdmlParserLimits limits,
+        CorePdmlParseListener parseListener ) {
 
+        this.sharedTagTable = tagTable;
+        this.readerPool = readerPool;
+        this.limits = limits;
+        this.parseListener = parseListener;
+    }
+
+
+    /**
+     * Returns a parser with the same settings as this one, that reports the metrics of each document parsed by the
+     * methods that return a {@link TaggedNode} to the listener (or to no listener if it is null).
+     * <p>
+     * Metrics are only collected if there is a listener or if the {@code dev.pdml.Parse} JFR event is recorded.
+     * Otherwise, parsing isn't slowed down. Collecting them measures the time spent reading each tag and text,
+     * which has some overhead.
+     */
+    public CorePdmlParser withParseListener ( CorePdmlParseListener parseListener ) {
+
+        return new CorePdmlParser ( sharedTagTable, readerPool, limits, parseListener );
+    }
+
+
+    /**
+     * Parses a UTF-8 encoded PDML file. The file is memory-mapped (or read if it is small) and its bytes are
+     * scanned without decoding the whole content into a string (see {@link CorePdmlMappedReader#open(Path)}).
+     */
     public TaggedNode parse ( Path filePath ) throws IOException, InvalidPdmlException {
 
-        String code = Files.readString ( filePath, StandardCharsets.UTF_8 );
-        return parse ( code );
+        return parseFile ( filePath, this::parse );
     }
 
     public TaggedNode parse ( String PdmlCode ) throws InvalidPdmlException {
 
-        reader = new CorePdmlReader ( PdmlCode );
-        return parseRootNode();
+        return parseString ( PdmlCode, this::parse );
     }
 
+    public TaggedNode parse ( CorePdmlTokenReader tokenReader ) throws InvalidPdmlException {
 
-    // Private Methods
+        return parse ( tokenReader, false );
+    }
+
+    /**
+     * Like {@link #parse(String)}, but text leaves are {@link LazyTextLeaf}s
+     * that refer to the PDML code. Their {@code String} is created only if it is accessed, which makes parsing
+     * faster if only some of the texts are used. The tree keeps the PDML code in memory.
+     */
+    public TaggedNode parseLazy ( String PdmlCode ) throws InvalidPdmlException {
+
+        return parseString ( PdmlCode, reader -> parse ( reader, true ) );
+    }
+
+    /**
+     * Parses UTF-8 encoded PDML code read from a stream. The stream is not closed.
+     */
+    public TaggedNode parse ( InputStream inputStream ) throws IOException, InvalidPdmlException {
 
-    private TaggedNode parseRootNode() throws InvalidPdmlException {
+        return parse ( new InputStreamReader ( inputStream, StandardCharsets.UTF_8.newDecoder() ) );
+    }
+
+    /**
+     * Parses UTF-8 encoded PDML code read from a channel. The channel is not closed.
+     */
+    public TaggedNode parse ( ReadableByteChannel channel ) throws IOException, InvalidPdmlException {
+
+        return parse ( Channels.newReader ( channel, StandardCharsets.UTF_8.newDecoder(), -1 ) );
+    }
+
+    /**
+     * Parses PDML code read from a {@code Reader}. The {@code Reader} is not closed.
+     */
+    public TaggedNode parse ( Reader input ) throws IOException, InvalidPdmlException {
+
+        return parseReader ( input, this::parse );
+    }
 
-        reader.skipWhitespace();
+    /**
+     * Checks that PDML code is valid without building a tree: no nodes or strings are created. The same rules as in
+     * {@link #parse(String)} are checked, and errors are reported at the same line and column. Only the maximum
+     * input size limit applies, because memory usage doesn't depend on the document.
+     */
+    public void validate ( String PdmlCode ) throws InvalidPdmlException {
 
-        TaggedNode rootNode = parseTaggedNode();
-        if ( rootNode == null ) {
-            errorDetected ( "Root node expected (e.g. \"[root\")" );
+        parseString ( PdmlCode, this::validated );
+    }
+
+    /**
+     * Like {@link #validate(String)}, for a UTF-8 encoded PDML file, which is memory-mapped.
+     */
+    public void validate ( Path filePath ) throws IOException, InvalidPdmlException {
+
+        parseFile ( filePath, this::validated );
+    }
+
+    /**
+     * Like {@link #validate(String)}, for PDML code read from a {@code Reader}. The {@code Reader} is not closed.
+     */
+    public void validate ( Reader input ) throws IOException, InvalidPdmlException {
+
+        parseReader ( input, this::validated );
+    }
+
+    public void validate ( CorePdmlTokenReader tokenReader ) throws InvalidPdmlException {
+
+        tokenReader.skipWhitespace();
+        if ( ! tokenReader.readNodeStart() ) {
+            throw invalid ( "Root node expected (e.g. \"[root\")", tokenReader );
+        }
+        if ( ! tokenReader.skipTag() ) {
+            throw invalid ( "Node tag required", tokenReader );
+        }
+        if ( ! tokenReader.readNodeEnd() ) {
+            if ( ! tokenReader.readSeparator() ) {
+                throw invalid ( "Separator required", tokenReader );
+            }
+            tokenReader.skipRemainderOfNode();
+        }
+
+        tokenReader.skipWhitespace();
+        if ( ! tokenReader.isAtEnd() ) {
+            throw invalid ( "No more text expected", tokenReader );
         }
+        CorePdmlLimitChecker.checkInputSize ( limits, tokenReader );
+    }
+
+    /**
+     * Parses PDML code like {@link #parse(String)}, but doesn't stop at the first error: all errors are collected,
+     * up to {@code maxErrors}, and the valid parts of the document are returned as a tree.
+     * <p>
+     * After an error in a text or a tag, parsing resumes at the next '[' or ']'. A node with an invalid start (e.g.
+     * no tag) is dropped, and a ']' found when resuming ends it. A missing separator is reported, and the node is
+     * parsed as if it were there. Text after the root node is reported and ignored.
+     * <p>
+     * The parser limits still end parsing with an exception.
+     * @param maxErrors the number of errors after which parsing stops
+     */
+    public CorePdmlRecoveryResult parseRecovering ( String PdmlCode, int maxErrors ) throws InvalidPdmlException {
+
+        return parseString ( PdmlCode, reader -> parseRecovering ( reader, maxErrors ) );
+    }
+
+    /**
+     * Like {@link #parseRecovering(String, int)}, for a UTF-8 encoded PDML file, read like by {@link #parse(Path)}.
+     */
+    public CorePdmlRecoveryResult parseRecovering ( Path filePath, int maxErrors )
+        throws IOException, InvalidPdmlException {
+
+        return parseFile ( filePath, reader -> parseRecovering ( reader, maxErrors ) );
+    }
 
-        reader.skipWhitespace();
+    /**
+     * Like {@link #parseRecovering(String, int)}. The reader must support
+     * {@link CorePdmlTokenReader#skipToNodeStartOrEnd()}.
+     */
+    public CorePdmlRecoveryResult parseRecovering ( CorePdmlTokenReader tokenReader, int maxErrors )
+        throws InvalidPdmlException {
 
-        if ( ! reader.isAtEnd() ) {
-            errorDetected ( "No more text expected" );
+        if ( maxErrors < 1 ) throw new IllegalArgumentException ( "The maximum number of errors must be at least 1." );
+        return new CorePdmlRecoveringParser ( tokenReader, tagTable ( tokenReader ), limits, maxErrors ).parse();
+    }
+
+    /**
+     * Parses PDML code into a tree of {@link ImmutableTaggedNode}s, which can be shared by several threads without
+     * copying. Child nodes are stored in arrays of the exact size.
+     */
+    public ImmutableTaggedNode parseImmutable ( String PdmlCode ) throws InvalidPdmlException {
+
+        return parseString ( PdmlCode, this::parseImmutable );
+    }
+
+    public ImmutableTaggedNode parseImmutable ( CorePdmlTokenReader tokenReader ) throws InvalidPdmlException {
+
+        ImmutableTreeBuilder builder = new ImmutableTreeBuilder();
+        CorePdmlEventReader eventReader = new CorePdmlEventReader ( tokenReader, tagTable ( tokenReader ) );
+        CorePdmlLimitChecker limitChecker = new CorePdmlLimitChecker ( limits, tokenReader );
+
+        CorePdmlEventType event;
+        while ( ( event = eventReader.next() ) != null ) {
+            switch ( event ) {
+                case NODE_START -> {
+                    limitChecker.nodeStarted ( eventReader.depth() );
+                    builder.startNode ( eventReader.tag(), eventReader.tagId() );
+                }
+                case TEXT -> {
+                    limitChecker.textRead();
+                    builder.appendText ( eventReader.text() );
+                }
+                case NODE_END -> builder.endNode();
+            }
         }
+        limitChecker.checkInputSize();
+        return builder.build();
+    }
 
-        return rootNode;
+    /**
+     * Parses PDML code like {@link #parse(String)}, and records the source positions of the nodes and an index
+     * of the lines.
+     */
+    public CorePdmlSourcePositions parseWithPositions ( String PdmlCode ) throws InvalidPdmlException {
+
+        return parseString ( PdmlCode, this::parseWithPositions );
     }
 
-    private TaggedNode parseTaggedNode() throws InvalidPdmlException {
+    /**
+     * Parses PDML code read from a {@code Reader} like {@link #parse(Reader)}, and records the source positions of
+     * the nodes and an index of the lines. The {@code Reader} is not closed. Inputs with more than
+     * {@code Integer.MAX_VALUE} chars are rejected, because the positions are ints.
+     */
+    public CorePdmlSourcePositions parseWithPositions ( Reader input ) throws IOException, InvalidPdmlException {
+
+        return parseReader ( input, this::parseWithPositions );
+    }
 
-        if ( ! reader.readNodeStart() ) return null;
+    /**
+     * Parses PDML code into a {@link CompactDocument}, which needs much less memory than a tree of
+     * {@link TaggedNode} objects.
+     */
+    public CompactDocument parseCompact ( String PdmlCode ) throws InvalidPdmlException {
 
-        String tag = reader.readTag();
-        if ( tag == null ) {
-            errorDetected ( "Node tag required" );
+        return parseString ( PdmlCode, this::parseCompact );
+    }
+
+    public CompactDocument parseCompact ( CorePdmlTokenReader tokenReader ) throws InvalidPdmlException {
+
+        CompactDocumentBuilder builder = new CompactDocumentBuilder();
+        CorePdmlEventReader eventReader = new CorePdmlEventReader ( tokenReader, tagTable ( tokenReader ) );
+        CorePdmlLimitChecker limitChecker = new CorePdmlLimitChecker ( limits, tokenReader );
+
+        CorePdmlEventType event;
+        while ( ( event = eventReader.next() ) != null ) {
+            switch ( event ) {
+                case NODE_START -> {
+                    limitChecker.nodeStarted ( eventReader.depth() );
+                    builder.startNode ( eventReader.tag(), eventReader.tagId() );
+                }
+                case TEXT -> {
+                    limitChecker.textRead();
+                    builder.appendText ( eventReader.text() );
+                }
+                case NODE_END -> builder.endNode();
+            }
         }
+        limitChecker.checkInputSize();
+        return builder.build();
+    }
 
-        TaggedNode taggedNode = new TaggedNode ( tag );
+    /**
+     * Parses a sequence of child nodes that ends at the end of the reader's input, instead of at a node end char.
+     * Used by {@link CorePdmlParallelParser} to parse a range of the root node's child nodes.
+     */
+    List<Node> parseChildNodes ( CorePdmlTokenReader tokenReader ) throws InvalidPdmlException {
 
-        if ( reader.readNodeEnd() ) {
-            // it's a tagged leaf node
-            return taggedNode;
+        return documentParser ( tokenReader, tokenReader, false ).parseChildNodes();
+    }
+
+
+    // Private Methods
+
+    private TaggedNode parse ( CorePdmlTokenReader tokenReader, boolean lazyText ) throws InvalidPdmlException {
+
+        // The event class isn't loaded until a flight recording has been started, because loading it initializes
+        // a large part of JFR, which would dominate the startup time of the CLI
+        if ( parseListener == null && ( ! FlightRecorder.isInitialized() || ! new CorePdmlParseEvent().isEnabled() ) ) {
+            return documentParser ( tokenReader, tokenReader, lazyText ).parseRootNode();
         }
 
-        requireSeparator();
+        CorePdmlParseEvent event = new CorePdmlParseEvent();
+
+        long startTime = System.nanoTime();
+        event.begin();
+        long startPosition = tokenReader.currentPosition();
+        long startEscapeSequenceCount = tokenReader.escapeSequenceCount();
+        TimedTokenReader timedReader = new TimedTokenReader ( tokenReader );
+        DocumentParser documentParser = documentParser ( tokenReader, timedReader, lazyText );
+        boolean isValid = false;
+        try {
+            TaggedNode rootNode = documentParser.parseRootNode();
+            isValid = true;
+            return rootNode;
+
+        } finally {
+            event.end();
+            long inputSize = tokenReader.currentPosition() - startPosition;
+            boolean isByteInput = tokenReader instanceof CorePdmlMappedReader;
+            long nodeCount = documentParser.limitChecker.nodeCount();
+            CorePdmlParseMetrics metrics = new CorePdmlParseMetrics (
+                isValid,
+                isByteInput ? inputSize : -1,
+                isByteInput ? -1 : inputSize,
+                nodeCount - documentParser.textLeafCount,
+                documentParser.textLeafCount,
+                documentParser.textLength,
+                documentParser.maxDepth,
+                tokenReader.escapeSequenceCount() - startEscapeSequenceCount,
+                timedReader.readNanos,
+                System.nanoTime() - startTime );
+
+            if ( event.shouldCommit() ) {
+                event.setMetrics ( metrics );
+                event.commit();
+            }
+            if ( parseListener != null ) parseListener.documentParsed ( metrics );
+        }
+    }
 
-        requireChildren ( taggedNode );
+    private Void validated ( CorePdmlTokenReader tokenReader ) throws InvalidPdmlException {
 
-        return taggedNode;
+        validate ( tokenReader );
+        return null;
     }
 
-    private void requireSeparator() throws InvalidPdmlException {
+    private CorePdmlSourcePositions parseWithPositions ( CorePdmlReader reader ) throws InvalidPdmlException {
+
+        return new CorePdmlPositionsParser ( reader, tagTable ( reader ), limits ).parse();
+    }
 
-        if ( ! reader.readSeparator() ) {
-            errorDetected ( "Separator required" );
+    // The entry points for strings, Readers and files check the input size and apply a parse method to the
+    // reader created for the input
+
+    private <T> T parseString ( String PdmlCode, ReaderParser<CorePdmlReader, T> parser )
+        throws InvalidPdmlException {
+
+        checkInputSize ( PdmlCode.length() );
+        CorePdmlReader pooledReader = readerPool.acquire ( PdmlCode );
+        try {
+            return parser.parse ( pooledReader );
+        } finally {
+            readerPool.release ( pooledReader );
         }
     }
 
-    private void requireChildren ( TaggedNode parentNode ) throws InvalidPdmlException {
+    private <T> T parseReader ( Reader input, ReaderParser<CorePdmlReader, T> parser )
+        throws IOException, InvalidPdmlException {
 
-        while ( ! reader.isAtEnd() ) {
+        if ( limits.maxInputSize() != Long.MAX_VALUE ) {
+            input = new LimitedReader ( input, limits.maxInputSize() );
+        }
 
-            if ( reader.readNodeEnd() ) break;
+        CorePdmlReader pooledReader = null;
+        try {
+            pooledReader = readerPool.acquire ( input );
+            return parser.parse ( pooledReader );
+        } catch ( UncheckedIOException e ) {
+            throw e.getCause();
+        } catch ( InvalidPdmlException e ) {
+            // an error caused by input cut at the maximum size (see LimitedReader) is reported as such
+            CorePdmlLimitChecker.checkInputSize ( limits, pooledReader );
+            throw e;
+        } finally {
+            if ( pooledReader != null ) readerPool.release ( pooledReader );
+        }
+    }
 
-            String text = reader.readText();
-            if ( text != null ) {
-                parentNode.appendText ( text );
-            } else {
-                TaggedNode childNode = parseTaggedNode();
-                if ( childNode != null ) {
-                    parentNode.appendChild ( childNode );
-                } else {
-                    errorDetected ( "Invalid character" );
+    private <T> T parseFile ( Path filePath, ReaderParser<CorePdmlTokenReader, T> parser )
+        throws IOException, InvalidPdmlException {
+
+        CorePdmlMappedReader mappedReader = CorePdmlMappedReader.open ( filePath );
+        checkInputSize ( mappedReader.size() );
+        try {
+            return parser.parse ( mappedReader );
+        } catch ( UncheckedIOException e ) {
+            throw e.getCause();
+        }
+    }
+
+    private void checkInputSize ( long inputSize ) throws InvalidPdmlException {
+
+        if ( inputSize > limits.maxInputSize() ) throw CorePdmlLimitChecker.inputSizeExceeded ( limits, 1, 1 );
+    }
+
+    private static InvalidPdmlException invalid ( String message, CorePdmlTokenReader tokenReader ) {
+
+        return new InvalidPdmlException ( message, tokenReader.currentLineNumber(), tokenReader.currentColumnNumber() );
+    }
+
+    /**
+     * Returns the tag table of a document: a table layered on the shared table, which keeps the tags that don't
+     * fit into the shared table when it is full. The table of a {@link CorePdmlReader} is reused with the reader.
+     */
+    private CorePdmlTagTable tagTable ( CorePdmlTokenReader tokenReader ) {
+
+        return tokenReader instanceof CorePdmlReader reader
+            ? reader.documentTagTable ( sharedTagTable )
+            : CorePdmlTagTable.forDocument ( sharedTagTable );
+    }
+
+    /**
+     * Creates the parser of a document whose state is taken from {@code tokenReader}, and which reads from
+     * {@code readingReader} (the token reader itself, or a wrapper of it).
+     */
+    private DocumentParser documentParser (
+        CorePdmlTokenReader tokenReader,
+        CorePdmlTokenReader readingReader,
+        boolean lazyText ) {
+
+        TaggedNode[] openNodes = tokenReader instanceof CorePdmlReader reader
+            ? reader.openNodes()
+            : new TaggedNode[16];
+        return new DocumentParser ( readingReader, tagTable ( tokenReader ), openNodes, lazyText, limits );
+    }
+
+
+    /**
+     * A parse method, applied to the reader of a string, {@code Reader} or file.
+     */
+    @FunctionalInterface
+    private interface ReaderParser<R extends CorePdmlTokenReader, T> {
+
+        T parse ( R reader ) throws InvalidPdmlException;
+    }
+
+
+    /**
+     * The state of a single parse. Each call of a parse method uses its own instance, so that a parser can be
+     * used by several threads.
+     * <p>
+     * Nodes are parsed with an explicit stack of open nodes instead of recursive calls, so that deeply nested
+     * documents can't overflow the thread's stack.
+     */
+    private static final class DocumentParser {
+
+        private final CorePdmlTokenReader reader;
+        private final CorePdmlTagTable tagTable;
+        private final boolean lazyText;
+        private final CorePdmlLimitChecker limitChecker;  // also counts the nodes for the metrics
+        private TaggedNode[] openNodes;  // the nodes whose child nodes are being parsed
+        private int openNodeCount;
+
+        // metrics
+        private long textLeafCount;
+        private long textLength;
+        private int maxDepth;
+
+        private DocumentParser (
+            CorePdmlTokenReader reader,
+            CorePdmlTagTable tagTable,
+            TaggedNode[] openNodes,
+            boolean lazyText,
+            CorePdmlParserLimits limits ) {
+
+            this.reader = reader;
+            this.tagTable = tagTable;
+            this.lazyText = lazyText;
+            this.limitChecker = new CorePdmlLimitChecker ( limits, reader );
+            this.openNodes = openNodes;
+            this.openNodeCount = 0;
+            this.textLeafCount = 0;
+            this.textLength = 0;
+            this.maxDepth = 0;
+        }
+
+        private TaggedNode parseRootNode() throws InvalidPdmlException {
+
+            reader.skipWhitespace();
+
+            TaggedNode rootNode = parseTaggedNode();
+            if ( rootNode == null ) {
+                errorDetected ( "Root node expected (e.g. \"[root\")" );
+            }
+
+            reader.skipWhitespace();
+
+            if ( ! reader.isAtEnd() ) {
+                errorDetected ( "No more text expected" );
+            }
+            limitChecker.checkInputSize();
+
+            return rootNode;
+        }
+
+        private List<Node> parseChildNodes() throws InvalidPdmlException {
+
+            TaggedNode parentNode = new TaggedNode ( "" );
+            while ( ! reader.isAtEnd() ) {
+                if ( ! parseText ( parentNode ) ) {
+                    TaggedNode childNode = parseTaggedNode();
+                    if ( childNode != null ) {
+                        parentNode.appendChild ( childNode );
+                    } else {
+                        errorDetected ( "Invalid character" );
+                    }
                 }
             }
+            return parentNode.childNodes();
+        }
+
+        /**
+         * Parses a node and all its descendants.
+         */
+        private TaggedNode parseTaggedNode() throws InvalidPdmlException {
+
+            final int baseCount = openNodeCount;
+            final TaggedNode taggedNode = startTaggedNode();
+            if ( taggedNode == null ) return null;
+
+            while ( openNodeCount > baseCount ) {
+
+                final TaggedNode parentNode = openNodes[openNodeCount - 1];
+
+                if ( reader.isAtEnd() || reader.readNodeEnd() ) {
+                    if ( parentNode.isLeaf() ) {
+                        errorDetected ( "Child nodes required" );
+                    }
+                    openNodes[--openNodeCount] = null;
+
+                } else if ( ! parseText ( parentNode ) ) {
+                    TaggedNode childNode = startTaggedNode();
+                    if ( childNode != null ) {
+                        parentNode.appendChild ( childNode );
+                    } else {
+                        errorDetected ( "Invalid character" );
+                    }
+                }
+            }
+
+            return taggedNode;
+        }
+
+        /**
+         * Reads the start of a node, up to its separator. If the node isn't a leaf, it is pushed on the stack of
+         * open nodes.
+         */
+        private TaggedNode startTaggedNode() throws InvalidPdmlException {
+
+            if ( ! reader.readNodeStart() ) return null;
+
+            limitChecker.nodeStarted ( openNodeCount + 1 );
+            if ( openNodeCount >= maxDepth ) maxDepth = openNodeCount + 1;
+
+            int tagId = reader.readTagId ( tagTable );
+            if ( tagId == CorePdmlTagTable.NO_TAG_ID ) {
+                errorDetected ( "Node tag required" );
+            }
+
+            TaggedNode taggedNode = new TaggedNode ( tagTable.tag ( tagId ), tagId );
+
+            if ( reader.readNodeEnd() ) {
+                // it's a tagged leaf node
+                return taggedNode;
+            }
+
+            requireSeparator();
+
+            if ( openNodeCount == openNodes.length ) {
+                openNodes = Arrays.copyOf ( openNodes, openNodeCount * 2 );
+            }
+            openNodes[openNodeCount++] = taggedNode;
+
+            return taggedNode;
+        }
+
+        private void requireSeparator() throws InvalidPdmlException {
+
+            if ( ! reader.readSeparator() ) {
+                errorDetected ( "Separator required" );
+            }
+        }
+
+        private boolean parseText ( TaggedNode parentNode ) throws InvalidPdmlException {
+
+            if ( lazyText ) {
+                TextNode textNode = reader.readTextNode();
+                if ( textNode == null ) return false;
+                parentNode.appendChild ( textNode );
+                this.textLength += textNode instanceof LazyTextLeaf lazyTextLeaf
+                    ? lazyTextLeaf.length()
+                    : textNode.textView().length();
+            } else {
+                String text = reader.readText();
+                if ( text == null ) return false;
+                parentNode.appendText ( text );
+                this.textLength += text.length();
+            }
+            textLeafCount++;
+
+            limitChecker.textRead();
+            return true;
         }
 
-        if ( parentNode.isLeaf() ) {
-            errorDetected ( "Child nodes required" );
+        private void errorDetected ( String message ) throws InvalidPdmlException {
+
+            throw new InvalidPdmlException ( message, reader.currentLineNumber(), reader.currentColumnNumber() );
         }
     }
 
-    private void errorDetected ( String message ) throws InvalidPdmlException {
-        throw new InvalidPdmlException ( message, reader.currentLineNumber(), reader.currentColumnNumber() );
+
+    /**
+     * Delegates to a token reader, and measures the time spent reading tags and texts.
+     */
+    private static final class TimedTokenReader implements CorePdmlTokenReader {
+
+        private final CorePdmlTokenReader reader;
+        private long readNanos;
+
+        private TimedTokenReader ( CorePdmlTokenReader reader ) {
+
+            this.reader = reader;
+            this.readNanos = 0;
+        }
+
+        public long currentPosition() { return reader.currentPosition(); }
+
+        public int currentLineNumber() { return reader.currentLineNumber(); }
+
+        public int currentColumnNumber() { return reader.currentColumnNumber(); }
+
+        public boolean isAtEnd() { return reader.isAtEnd(); }
+
+        public boolean readNodeStart() { return reader.readNodeStart(); }
+
+        public boolean readNodeEnd() { return reader.readNodeEnd(); }
+
+        public String readTag() throws InvalidPdmlException {
+
+            long start = System.nanoTime();
+            try {
+                return reader.readTag();
+            } finally {
+                readNanos += System.nanoTime() - start;
+            }
+        }
+
+        public int readTagId ( CorePdmlTagTable tagTable ) throws InvalidPdmlException {
+
+            long start = System.nanoTime();
+            try {
+                return reader.readTagId ( tagTable );
+            } finally {
+                readNanos += System.nanoTime() - start;
+            }
+        }
+
+        public String readText() throws InvalidPdmlException {
+
+            long start = System.nanoTime();
+            try {
+                return reader.readText();
+            } finally {
+                readNanos += System.nanoTime() - start;
+            }
+        }
+
+        public TextNode readTextNode() throws InvalidPdmlException {
+
+            long start = System.nanoTime();
+            try {
+                return reader.readTextNode();
+            } finally {
+                readNanos += System.nanoTime() - start;
+            }
+        }
+
+        public void setMaxTokenLengths ( int maxTagLength, int maxTextLength ) {
+            reader.setMaxTokenLengths ( maxTagLength, maxTextLength );
+        }
+
+        public boolean readSeparator() { return reader.readSeparator(); }
+
+        public void skipWhitespace() { reader.skipWhitespace(); }
+
+        public void skipToNodeStartOrEnd() {
+
+            long start = System.nanoTime();
+            reader.skipToNodeStartOrEnd();
+            readNanos += System.nanoTime() - start;
+        }
+
+        public long escapeSequenceCount() { return reader.escapeSequenceCount(); }
+    }
+
+    /**
+     * A {@code Reader} that ends after one char more than the maximum input size, so that the parser detects that
+     * the limit is exceeded without reading the rest of the input.
+     */
+    private static final class LimitedReader extends FilterReader {
+
+        private long remaining;
+
+        private LimitedReader ( Reader in, long maxInputSize ) {
+
+            super ( in );
+            this.remaining = maxInputSize == Long.MAX_VALUE ? Long.MAX_VALUE : maxInputSize + 1;
+        }
+
+        @Override
+        public int read() throws IOException {
+
+            if ( remaining <= 0 ) return -1;
+            int c = in.read();
+            if ( c >= 0 ) remaining--;
+            return c;
+        }
+
+        @Override
+        public int read ( char[] buffer, int offset, int length ) throws IOException {
+
+            if ( remaining <= 0 ) return -1;
+            int count = in.read ( buffer, offset, (int) Math.min ( length, remaining ) );
+            if ( count > 0 ) remaining -= count;
+            return count;
+        }
+
+        @Override
+        public long skip ( long n ) throws IOException {
+
+            long count = in.skip ( Math.min ( n, remaining ) );
+            remaining -= count;
+            return count;
+        }
     }
 }
@@ -0,0 +1,51 @@
+package dev.pdml.core.simpleparser;
+
+/**
+ * Limits checked by {@link CorePdmlParser}, to protect a service from hostile or broken documents.
+ * An {@link InvalidPdmlException} is thrown as soon as a limit is exceeded.
+ *
+ * @param maxDepth the maximum nesting level of a node (the root node is at level 1)
+ * @param maxNodes the maximum number of nodes (tagged nodes and text leaves)
+ * @param maxTagLength the maximum length of a tag, in chars (after unescaping)
+ * @param maxTextLength the maximum length of a text leaf, in chars (after unescaping)
+ * @param maxInputSize the maximum size of the input, in chars (or in bytes for a file)
+ */
+public record CorePdmlParserLimits (
+    int maxDepth,
+    long maxNodes,
+    int maxTagLength,
+    int maxTextLength,
+    long maxInputSize ) {
+
+    public static final CorePdmlParserLimits NONE =
+        new CorePdmlParserLimits ( Integer.MAX_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE );
+
+
+    public CorePdmlParserLimits {
+
+        if ( maxDepth <= 0 || maxNodes <= 0 || maxTagLength <= 0 || maxTextLength <= 0 || maxInputSize <= 0 ) {
+            throw new IllegalArgumentException ( "Limits must be greater than 0." );
+        }
+    }
+
+
+    public CorePdmlParserLimits withMaxDepth ( int maxDepth ) {
+        return new CorePdmlParserLimits ( maxDepth, maxNodes, maxTagLength, maxTextLength, maxInputSize );
+    }
+
+    public CorePdmlParserLimits withMaxNodes ( long maxNodes ) {
+        return new CorePdmlParserLimits ( maxDepth, maxNodes, maxTagLength, maxTextLength, maxInputSize );
+    }
+
+    public CorePdmlParserLimits withMaxTagLength ( int maxTagLength ) {
+        return new CorePdmlParserLimits ( maxDepth, maxNodes, maxTagLength, maxTextLength, maxInputSize );
+    }
+
+    public CorePdmlParserLimits withMaxTextLength ( int maxTextLength ) {
+        return new CorePdmlParserLimits ( maxDepth, maxNodes, maxTagLength, maxTextLength, maxInputSize );
+    }
+
+    public CorePdmlParserLimits withMaxInputSize ( long maxInputSize ) {
+        return new CorePdmlParserLimits ( maxDepth, maxNodes, maxTagLength, maxTextLength, maxInputSize );
+    }
+}
@@ -0,0 +1,117 @@
+package dev.pdml.core.simpleparser;
+
+import dev.pdml.core.simpleparser.data.TaggedNode;
+
+import java.util.Arrays;
+
+/**
+ * Parses a document into a tree of {@link TaggedNode}s and records the source positions of the nodes (see
+ * {@link CorePdmlParser#parseWithPositions(String)}).
+ * <p>
+ * Each instance parses a single document. The positions are ints, like those of a {@code String}.
+ */
+final class CorePdmlPositionsParser {
+
+    private final CorePdmlReader reader;
+    private final CorePdmlEventReader eventReader;
+    private final CorePdmlLimitChecker limitChecker;
+
+    // the start and end offsets of the nodes, by index in document order
+    private int[] startOffsets;
+    private int[] endOffsets;
+    private int nodeCount;
+
+    // the open nodes and their indexes
+    private TaggedNode[] openNodes;
+    private int[] openNodeIndexes;
+    private int depth;
+
+
+    CorePdmlPositionsParser ( CorePdmlReader reader, CorePdmlTagTable tagTable, CorePdmlParserLimits limits ) {
+
+        this.reader = reader;
+        this.eventReader = new CorePdmlEventReader ( reader, tagTable );
+        this.limitChecker = new CorePdmlLimitChecker ( limits, reader );
+        this.startOffsets = new int[64];
+        this.endOffsets = new int[64];
+        this.nodeCount = 0;
+        this.openNodes = new TaggedNode[16];
+        this.openNodeIndexes = new int[16];
+        this.depth = 0;
+    }
+
+
+    CorePdmlSourcePositions parse() throws InvalidPdmlException {
+
+        reader.recordLineStarts();
+        reader.skipWhitespace();
+        TaggedNode rootNode = null;
+        int position = (int) reader.currentPosition();
+        CorePdmlEventType event;
+        while ( ( event = eventReader.next() ) != null ) {
+            int newPosition = currentPosition();
+
+            if ( event == CorePdmlEventType.NODE_END ) {
+                depth--;
+                endOffsets[openNodeIndexes[depth]] = newPosition;
+                openNodes[depth] = null;
+
+            } else {
+                int nodeIndex = addNode ( position );
+
+                if ( event == CorePdmlEventType.NODE_START ) {
+                    limitChecker.nodeStarted ( eventReader.depth() );
+                    TaggedNode node = new TaggedNode ( eventReader.tag(), eventReader.tagId() );
+                    if ( depth > 0 ) {
+                        openNodes[depth - 1].appendChild ( node );
+                    } else {
+                        rootNode = node;
+                    }
+                    if ( depth == openNodes.length ) {
+                        openNodes = Arrays.copyOf ( openNodes, depth * 2 );
+                        openNodeIndexes = Arrays.copyOf ( openNodeIndexes, depth * 2 );
+                    }
+                    openNodes[depth] = node;
+                    openNodeIndexes[depth] = nodeIndex;
+                    depth++;
+
+                } else {
+                    limitChecker.textRead();
+                    openNodes[depth - 1].appendText ( eventReader.text() );
+                    endOffsets[nodeIndex] = newPosition;
+                }
+            }
+            position = newPosition;
+        }
+
+        limitChecker.checkInputSize();
+        return new CorePdmlSourcePositions (
+            rootNode,
+            Arrays.copyOf ( startOffsets, nodeCount ),
+            Arrays.copyOf ( endOffsets, nodeCount ),
+            reader.lineIndex() );
+    }
+
+
+    // Private Methods
+
+    private int currentPosition() throws InvalidPdmlException {
+
+        if ( reader.currentPosition() > Integer.MAX_VALUE ) {
+            throw new CorePdmlLimitExceededException (
+                "Maximum input size with source positions (" + Integer.MAX_VALUE + ")",
+                reader.currentLineNumber(), reader.currentColumnNumber() );
+        }
+        return (int) reader.currentPosition();
+    }
+
+    private int addNode ( int startOffset ) {
+
+        if ( nodeCount == startOffsets.length ) {
+            startOffsets = Arrays.copyOf ( startOffsets, nodeCount * 2 );
+            endOffsets = Arrays.copyOf ( endOffsets, nodeCount * 2 );
+        }
+        startOffsets[nodeCount] = startOffset;
+        return nodeCount++;
+    }
+}
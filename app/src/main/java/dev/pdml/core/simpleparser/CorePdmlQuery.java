@@ -0,0 +1,489 @@
+package dev.pdml.core.simpleparser;
+
+import dev.pdml.core.simpleparser.data.Node;
+import dev.pdml.core.simpleparser.data.TaggedNode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Selects tagged nodes with a path, either in a tree or while reading PDML code.
+ * <p>
+ * A path is a sequence of steps. Each step starts with {@code /} (a child of the previous step's node) or
+ * {@code //} (a descendant of the previous step's node), followed by a tag or {@code *} (any tag), and optionally by
+ * a position among the siblings that match the step, starting at 1. Examples:
+ * <ul>
+ *     <li>{@code /config/server/port}: the {@code port} nodes of the {@code server} nodes of the root node</li>
+ *     <li>{@code //price}: all {@code price} nodes</li>
+ *     <li>{@code /root/item[2]/*[1]}: the first child node of the second {@code item} node</li>
+ * </ul>
+ * Tags in a path can't contain {@code /}, {@code [} or {@code ]}.
+ * <p>
+ * Nodes are selected in document order. If a selected node contains other selected nodes, all of them are selected.
+ * <p>
+ * The {@code evaluate} methods read PDML code in a single pass, and only build the selected nodes. The other subtrees
+ * are skipped: their texts are checked, but not unescaped, and no objects are created for them. The whole code is
+ * checked, unless the evaluation is stopped early.
+ * <p>
+ * A query is immutable and can be used by several threads.
+ */
+public class CorePdmlQuery {
+
+    private static final int ANY_TAG = -2;
+    // a step per bit of a long mask; the last bit is Matcher.IS_SELECTED
+    private static final int MAX_STEP_COUNT = 63;
+
+    private record Step (
+        boolean isDescendant,
+        String tag,       // null for any tag
+        int position ) {} // 0 if there is no position
+
+    private final String path;
+    private final Step[] steps;
+    private final boolean hasPositions;
+
+
+    private CorePdmlQuery ( String path, Step[] steps ) {
+
+        this.path = path;
+        this.steps = steps;
+        this.hasPositions = Arrays.stream ( steps ).anyMatch ( step -> step.position > 0 );
+    }
+
+    /**
+     * @throws IllegalArgumentException if the path is invalid
+     */
+    public static CorePdmlQuery compile ( String path ) {
+
+        List<Step> steps = new ArrayList<>();
+        int index = 0;
+        int length = path.length();
+        if ( length == 0 ) throw invalidPath ( path, "it is empty" );
+
+        while ( index < length ) {
+            if ( path.charAt ( index ) != '/' ) throw invalidPath ( path, "'/' expected at position " + index );
+            index++;
+            boolean isDescendant = index < length && path.charAt ( index ) == '/';
+            if ( isDescendant ) index++;
+
+            int tagStart = index;
+            while ( index < length && "/[]".indexOf ( path.charAt ( index ) ) < 0 ) {
+                index++;
+            }
+            if ( index == tagStart ) throw invalidPath ( path, "tag expected at position " + index );
+            String tag = path.substring ( tagStart, index );
+
+            int position = 0;
+            if ( index < length && path.charAt ( index ) == '[' ) {
+                int positionStart = ++index;
+                while ( index < length && Character.isDigit ( path.charAt ( index ) ) ) {
+                    index++;
+                }
+                if ( index == length || path.charAt ( index ) != ']' || index == positionStart ) {
+                    throw invalidPath ( path, "position expected at position " + positionStart );
+                }
+                position = parsePosition ( path, positionStart, index );
+                index++;
+            }
+
+            steps.add ( new Step ( isDescendant, tag.equals ( "*" ) ? null : tag, position ) );
+        }
+
+        if ( steps.size() > MAX_STEP_COUNT ) throw invalidPath ( path, "it has more than " + MAX_STEP_COUNT + " steps" );
+        return new CorePdmlQuery ( path, steps.toArray ( new Step[0] ) );
+    }
+
+
+    public String path() { return path; }
+
+    /**
+     * Returns the nodes selected in a tree, in document order.
+     */
+    public List<TaggedNode> select ( TaggedNode rootNode ) {
+
+        List<TaggedNode> result = new ArrayList<>();
+        select ( rootNode, node -> {
+            result.add ( node );
+            return true;
+        } );
+        return result;
+    }
+
+    /**
+     * Returns the first node selected in a tree, or null if no node is selected.
+     */
+    public TaggedNode selectFirst ( TaggedNode rootNode ) {
+
+        TaggedNode[] result = new TaggedNode[1];
+        select ( rootNode, node -> {
+            result[0] = node;
+            return false;
+        } );
+        return result[0];
+    }
+
+    /**
+     * Returns the nodes selected in PDML code, in document order.
+     */
+    public List<TaggedNode> evaluate ( String PdmlCode ) throws InvalidPdmlException {
+
+        List<TaggedNode> result = new ArrayList<>();
+        evaluate ( new CorePdmlReader ( PdmlCode ), result::add );
+        return result;
+    }
+
+    /**
+     * Returns the nodes selected in a UTF-8 encoded PDML file, in document order. The file is memory-mapped.
+     */
+    public List<TaggedNode> evaluate ( Path filePath ) throws IOException, InvalidPdmlException {
+
+        List<TaggedNode> result = new ArrayList<>();
+        try {
+            evaluate ( CorePdmlMappedReader.open ( filePath ), result::add );
+        } catch ( UncheckedIOException e ) {
+            throw e.getCause();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the first node selected in a UTF-8 encoded PDML file, or null if no node is selected.
+     * Reading stops after the first selected node, so the rest of the file isn't read or checked.
+     */
+    public TaggedNode evaluateFirst ( Path filePath ) throws IOException, InvalidPdmlException {
+
+        TaggedNode[] result = new TaggedNode[1];
+        try {
+            new StreamingEvaluator ( this, CorePdmlMappedReader.open ( filePath ), node -> {
+                result[0] = node;
+                return false;
+            } ).run();
+        } catch ( UncheckedIOException e ) {
+            throw e.getCause();
+        }
+        return result[0];
+    }
+
+    /**
+     * Reads PDML code and passes each selected node to the consumer, as soon as the node (and the nodes selected
+     * within it) have been read.
+     */
+    public void evaluate ( CorePdmlTokenReader reader, Consumer<TaggedNode> consumer ) throws InvalidPdmlException {
+
+        new StreamingEvaluator ( this, reader, node -> {
+            consumer.accept ( node );
+            return true;
+        } ).run();
+    }
+
+    @Override
+    public String toString() { return path; }
+
+
+    // Private Methods
+
+    private static int parsePosition ( String path, int start, int end ) {
+
+        try {
+            int position = Integer.parseInt ( path, start, end, 10 );
+            if ( position > 0 ) return position;
+        } catch ( NumberFormatException e ) {
+            // handled below
+        }
+        throw invalidPath ( path, "invalid position at position " + start );
+    }
+
+    private static IllegalArgumentException invalidPath ( String path, String reason ) {
+        return new IllegalArgumentException ( "Invalid path \"" + path + "\": " + reason + "." );
+    }
+
+    /**
+     * Selects the nodes of a tree, and passes them to the handler until it returns false.
+     * The tree is traversed iteratively, so that deep trees don't overflow the stack.
+     */
+    private void select ( TaggedNode rootNode, Predicate<TaggedNode> handler ) {
+
+        // the tables of a selection and an evaluation are only used by them, so their size isn't limited
+        CorePdmlTagTable tagTable = new CorePdmlTagTable ( Integer.MAX_VALUE );
+        Matcher matcher = new Matcher ( this, tagTable );
+
+        matcher.startChildren ( 0 );
+        long rootMask = matcher.childMask ( 0, Matcher.ROOT_PARENT_MASK, tagTable.id ( rootNode.tag() ) );
+        if ( ( rootMask & Matcher.IS_SELECTED ) != 0 && ! handler.test ( rootNode ) ) return;
+        if ( ( rootMask & ~Matcher.IS_SELECTED ) == 0 ) return;
+
+        // the open nodes (the root node is at depth 1), their masks, and the index of their next child
+        ArrayDeque<TreeFrame> frames = new ArrayDeque<>();
+        frames.push ( new TreeFrame ( rootNode, rootMask ) );
+        matcher.startChildren ( 1 );
+
+        while ( ! frames.isEmpty() ) {
+            TreeFrame frame = frames.peek();
+            List<Node> childNodes = frame.node.childNodes();
+            if ( frame.nextChild == childNodes.size() ) {
+                frames.pop();
+                continue;
+            }
+
+            if ( childNodes.get ( frame.nextChild++ ) instanceof TaggedNode childNode ) {
+                int depth = frames.size();
+                long childMask = matcher.childMask ( depth, frame.mask, tagTable.id ( childNode.tag() ) );
+                if ( ( childMask & Matcher.IS_SELECTED ) != 0 && ! handler.test ( childNode ) ) return;
+                if ( ( childMask & ~Matcher.IS_SELECTED ) != 0 && ! childNode.isLeaf() ) {
+                    frames.push ( new TreeFrame ( childNode, childMask ) );
+                    matcher.startChildren ( depth + 1 );
+                }
+            }
+        }
+    }
+
+    private static final class TreeFrame {
+
+        private final TaggedNode node;
+        private final long mask;
+        private int nextChild;
+
+        private TreeFrame ( TaggedNode node, long mask ) {
+
+            this.node = node;
+            this.mask = mask;
+            this.nextChild = 0;
+        }
+    }
+
+
+    /**
+     * Computes which steps a node matches.
+     * <p>
+     * A mask has a bit for each step: bit {@code k} is set if the children of the node can match step {@code k},
+     * i.e. if the node matches step {@code k - 1}, or if it is a descendant of a node that matches step
+     * {@code k - 1} and step {@code k} is a descendant step. The {@code IS_SELECTED} bit is set if the node
+     * matches the last step.
+     */
+    private static final class Matcher {
+
+        static final long IS_SELECTED = Long.MIN_VALUE;
+        static final long ROOT_PARENT_MASK = 1L;
+
+        private final Step[] steps;
+        private final int[] stepTagIds;
+        private final boolean hasPositions;
+        private int[][] matchCounts; // per depth: the number of children that matched each step
+
+        private Matcher ( CorePdmlQuery query, CorePdmlTagTable tagTable ) {
+
+            this.steps = query.steps;
+            this.stepTagIds = new int[steps.length];
+            for ( int i = 0; i < steps.length; i++ ) {
+                stepTagIds[i] = steps[i].tag == null ? ANY_TAG : tagTable.id ( steps[i].tag );
+            }
+            this.hasPositions = query.hasPositions;
+            this.matchCounts = new int[hasPositions ? 16 : 0][];
+        }
+
+        /**
+         * Must be called before the child nodes of a node at the given depth (0 for the root node's parent) are
+         * matched.
+         */
+        void startChildren ( int depth ) {
+
+            if ( ! hasPositions ) return;
+            if ( depth >= matchCounts.length ) {
+                matchCounts = Arrays.copyOf ( matchCounts, Math.max ( depth + 1, matchCounts.length * 2 ) );
+            }
+            int[] counts = matchCounts[depth];
+            if ( counts == null ) {
+                matchCounts[depth] = new int[steps.length];
+            } else {
+                Arrays.fill ( counts, 0 );
+            }
+        }
+
+        /**
+         * Returns the mask of a child node, or 0 if neither the node nor its descendants can be selected.
+         */
+        long childMask ( int parentDepth, long parentMask, int tagId ) {
+
+            long childMask = 0;
+            long remainingSteps = parentMask & ~IS_SELECTED;
+            while ( remainingSteps != 0 ) {
+                int k = Long.numberOfTrailingZeros ( remainingSteps );
+                remainingSteps &= remainingSteps - 1;
+
+                Step step = steps[k];
+                if ( step.isDescendant ) childMask |= 1L << k;
+                if ( stepTagIds[k] != ANY_TAG && stepTagIds[k] != tagId ) continue;
+                if ( step.position > 0 && ++matchCounts[parentDepth][k] != step.position ) continue;
+
+                childMask |= k + 1 == steps.length ? IS_SELECTED : 1L << ( k + 1 );
+            }
+            return childMask;
+        }
+    }
+
+
+    /**
+     * Evaluates a query while reading PDML code, with the same rules and error messages as {@link CorePdmlParser}.
+     */
+    private static final class StreamingEvaluator {
+
+        private final CorePdmlTokenReader reader;
+        private final CorePdmlTagTable tagTable;
+        private final Matcher matcher;
+        private final Predicate<TaggedNode> handler;
+
+        // the open nodes (the root node is at depth 1): their masks, whether they have a child node yet, and the
+        // node being built if they are part of a selected node
+        private long[] masks;
+        private boolean[] hasChildNodes;
+        private TaggedNode[] builtNodes;
+        private int depth;
+
+        // the selected nodes within the outermost selected node being built, in document order
+        private final List<TaggedNode> pendingNodes;
+
+        private StreamingEvaluator ( CorePdmlQuery query, CorePdmlTokenReader reader, Predicate<TaggedNode> handler ) {
+
+            this.reader = reader;
+            this.tagTable = new CorePdmlTagTable ( Integer.MAX_VALUE );
+            this.matcher = new Matcher ( query, tagTable );
+            this.handler = handler;
+            this.masks = new long[16];
+            this.hasChildNodes = new boolean[16];
+            this.builtNodes = new TaggedNode[16];
+            this.depth = 0;
+            this.pendingNodes = new ArrayList<>();
+        }
+
+        private void run() throws InvalidPdmlException {
+
+            reader.skipWhitespace();
+            if ( ! reader.readNodeStart() ) {
+                errorDetected ( "Root node expected (e.g. \"[root\")" );
+            }
+
+            masks[0] = Matcher.ROOT_PARENT_MASK;
+            matcher.startChildren ( 0 );
+            if ( ! readNodeAfterStart() ) return;
+
+            while ( depth > 0 ) {
+                if ( reader.isAtEnd() || reader.readNodeEnd() ) {
+                    if ( ! endNode() ) return;
+
+                } else if ( readText() ) {
+                    hasChildNodes[depth] = true;
+
+                } else if ( reader.readNodeStart() ) {
+                    hasChildNodes[depth] = true;
+                    if ( ! readNodeAfterStart() ) return;
+
+                } else {
+                    errorDetected ( "Invalid character" );
+                }
+            }
+
+            reader.skipWhitespace();
+            if ( ! reader.isAtEnd() ) {
+                errorDetected ( "No more text expected" );
+            }
+        }
+
+        /**
+         * Reads a tagged node after its start char, up to its separator. The node is skipped if it can't contain a
+         * selected node.
+         * @return false if the evaluation must stop
+         */
+        private boolean readNodeAfterStart() throws InvalidPdmlException {
+
+            int tagId = reader.readTagId ( tagTable );
+            if ( tagId == CorePdmlTagTable.NO_TAG_ID ) {
+                errorDetected ( "Node tag required" );
+            }
+
+            long mask = matcher.childMask ( depth, masks[depth], tagId );
+            boolean isSelected = ( mask & Matcher.IS_SELECTED ) != 0;
+            TaggedNode parentNode = builtNodes[depth];
+            TaggedNode node = null;
+            if ( parentNode != null || isSelected ) {
+                node = new TaggedNode ( tagTable.tag ( tagId ), tagId );
+                if ( parentNode != null ) parentNode.appendChild ( node );
+                if ( isSelected ) pendingNodes.add ( node );
+            }
+
+            if ( reader.readNodeEnd() ) {
+                // it's a tagged leaf node
+                return parentNode != null || ! isSelected || emitPendingNodes();
+            }
+
+            if ( ! reader.readSeparator() ) {
+                errorDetected ( "Separator required" );
+            }
+
+            if ( node == null && mask == 0 ) {
+                reader.skipRemainderOfNode();
+                return true;
+            }
+
+            depth++;
+            if ( depth == masks.length ) {
+                masks = Arrays.copyOf ( masks, depth * 2 );
+                hasChildNodes = Arrays.copyOf ( hasChildNodes, depth * 2 );
+                builtNodes = Arrays.copyOf ( builtNodes, depth * 2 );
+            }
+            masks[depth] = mask;
+            hasChildNodes[depth] = false;
+            builtNodes[depth] = node;
+            matcher.startChildren ( depth );
+            return true;
+        }
+
+        /**
+         * @return false if the evaluation must stop
+         */
+        private boolean endNode() throws InvalidPdmlException {
+
+            if ( ! hasChildNodes[depth] ) {
+                errorDetected ( "Child nodes required" );
+            }
+            TaggedNode node = builtNodes[depth];
+            builtNodes[depth] = null;
+            depth--;
+            return node == null || builtNodes[depth] != null || emitPendingNodes();
+        }
+
+        private boolean readText() throws InvalidPdmlException {
+
+            TaggedNode parentNode = builtNodes[depth];
+            if ( parentNode == null ) return reader.skipText();
+
+            String text = reader.readText();
+            if ( text == null ) return false;
+            parentNode.appendText ( text );
+            return true;
+        }
+
+        /**
+         * Passes the selected nodes to the handler, after the outermost selected node has been read.
+         * @return false if the evaluation must stop
+         */
+        private boolean emitPendingNodes() {
+
+            for ( TaggedNode pendingNode : pendingNodes ) {
+                if ( ! handler.test ( pendingNode ) ) return false;
+            }
+            pendingNodes.clear();
+            return true;
+        }
+
+        private void errorDetected ( String message ) throws InvalidPdmlException {
+            throw new InvalidPdmlException ( message, reader.currentLineNumber(), reader.currentColumnNumber() );
+        }
+    }
+}
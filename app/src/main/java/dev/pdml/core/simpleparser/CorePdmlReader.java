@@ -1,36 +1,206 @@
 package dev.pdml.core.simpleparser;
 
-import java.util.Map;
-import java.util.Set;
+import dev.pdml.core.simpleparser.data.LazyTextLeaf;
+import dev.pdml.core.simpleparser.data.TaggedNode;
+import dev.pdml.core.simpleparser.data.TextLeaf;
+import dev.pdml.core.simpleparser.data.TextNode;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * Reads the tokens of a PDML document.
+ * <p>
+ * The input is read through a fixed-size char window, so that documents of any size can be read from a
+ * {@link Reader} with bounded memory. IO errors of the underlying {@code Reader} are thrown as
+ * {@link UncheckedIOException}.
+ */
+public class CorePdmlReader implements CorePdmlTokenReader {
+
+    public static final int DEFAULT_WINDOW_SIZE = 8 * 1024;
+
+    // The chars that end a run of text chars that can be taken as is
+    static final int TEXT_STOP_CHAR_FLAGS =
+        CorePdmlConstants.TEXT_END_CHAR_FLAG | CorePdmlConstants.INVALID_TEXT_CHAR_FLAG |
+        CorePdmlConstants.INVALID_CONTROL_CHAR_FLAG | CorePdmlConstants.ESCAPE_CHAR_FLAG;
+
+    // Text runs are searched with SIMD instructions if the Vector API is available (see CorePdmlVectorScanner)
+    private static final boolean VECTOR_SCANNER_ENABLED =
+        isBootModule ( "jdk.incubator.vector" ) && CorePdmlVectorScanner.isEfficient();
+
+    // token builders larger than this aren't kept by reset()
+    private static final int MAX_RETAINED_BUILDER_CAPACITY = 64 * 1024;
+
+    private String PdmlCode;         // null if the input is read from 'source'
+    private Reader source;
+    private char[] window;
+    private long windowStart;        // position of window[0], a long because a Reader can supply more than 2^31 chars
+    private int windowEnd;           // number of chars available in the window
+    private int windowIndex;         // index of currentChar in the window
+    private int codeIndex;           // position of the next chars to copy from PdmlCode into the window
+    private int codeEnd;             // position after the last char to read from PdmlCode
+    private char currentChar;
 
-public class CorePdmlReader {
+    // the result of scanTagOrText
+    private static final int NO_TOKEN = 0;
+    private static final int TOKEN_IN_WINDOW = 1;
+    private static final int TOKEN_IN_BUILDER = 2;
+    private final StringBuilder tokenBuilder;
+    private int tokenStart;
+    private int tokenLength;
+    private boolean tokenHasEscapes;
+    private int maxTagLength;
+    private int maxTextLength;
 
-    private final String PdmlCode;
-    private char currentChar;
-    private int currentPosition;     // starts at 0 (not 1)
-    private int currentLineNumber;   // starts at 1 (not 0)
-    private int currentColumnNumber; // starts at 1 (not 0)
+    // line numbers are computed lazily, by counting the newlines up to 'countedPosition'
+    private long countedPosition;
+    private long countedLineNumber;  // starts at 1 (not 0)
+    private long countedLineStart;   // position of the first char in line 'countedLineNumber'
+    private int[] lineStarts;        // the positions of the lines counted, or null if they aren't recorded
+
+    private long escapeSequenceCount;
+
+    // the per-document state of CorePdmlParser, kept here so that it is reused with a pooled reader
+    private CorePdmlTagTable documentTagTable;
+    private TaggedNode[] openNodes;
 
 
     public CorePdmlReader ( String PdmlCode ) {
 
-        this.PdmlCode = PdmlCode;
-        this.currentChar = 0;
-        this.currentPosition = -1;
-        this.currentLineNumber = 1;
-        this.currentColumnNumber = 0;
+        this ( PdmlCode, 0, PdmlCode.length() );
+    }
 
-        advanceChar();
+    /**
+     * Reads the chars of {@code PdmlCode} from {@code start} (inclusive) to {@code end} (exclusive).
+     * Positions, line numbers and column numbers are those in the whole code.
+     */
+    public CorePdmlReader ( String PdmlCode, int start, int end ) {
+
+        this ( PdmlCode, null, new char[Math.min ( end - start, DEFAULT_WINDOW_SIZE )], start, end );
+    }
+
+    public CorePdmlReader ( Reader source ) {
+
+        this ( source, DEFAULT_WINDOW_SIZE );
+    }
+
+    public CorePdmlReader ( Reader source, int windowSize ) {
+
+        this ( null, source, createWindow ( windowSize ), 0, 0 );
+    }
+
+    private CorePdmlReader ( String PdmlCode, Reader source, char[] window, int start, int end ) {
+
+        this.window = window;
+        this.tokenBuilder = new StringBuilder();
+        init ( PdmlCode, source, start, end );
+    }
+
+
+    /**
+     * Resets this reader to read another string. The buffers of this reader are reused.
+     */
+    public void reset ( String PdmlCode ) {
+
+        int windowSize = Math.min ( PdmlCode.length(), DEFAULT_WINDOW_SIZE );
+        if ( window.length < windowSize ) window = new char[windowSize];
+        init ( PdmlCode, null, 0, PdmlCode.length() );
+    }
+
+    /**
+     * Resets this reader to read from another {@code Reader}. The buffers of this reader are reused.
+     */
+    public void reset ( Reader source ) {
+
+        if ( window.length < DEFAULT_WINDOW_SIZE ) window = new char[DEFAULT_WINDOW_SIZE];
+        init ( null, source, 0, 0 );
+    }
+
+    /**
+     * Releases the input and the nodes and tags of the last document parsed, so that they can be garbage
+     * collected, and shrinks the token builder if it grew large.
+     */
+    void clear() {
+
+        init ( "", null, 0, 0 );
+        if ( tokenBuilder.capacity() > MAX_RETAINED_BUILDER_CAPACITY ) {
+            tokenBuilder.setLength ( 0 );
+            tokenBuilder.trimToSize();
+        }
+        if ( documentTagTable != null ) documentTagTable.reset ( null );
+        if ( openNodes != null ) Arrays.fill ( openNodes, null );
+    }
+
+    /**
+     * Returns an empty tag table for the document read by {@link CorePdmlParser}, layered on the parser's shared
+     * table (see {@link CorePdmlTagTable#forDocument(CorePdmlTagTable)}).
+     */
+    CorePdmlTagTable documentTagTable ( CorePdmlTagTable sharedTable ) {
+
+        if ( documentTagTable == null ) {
+            documentTagTable = CorePdmlTagTable.forDocument ( sharedTable );
+        } else {
+            documentTagTable.reset ( sharedTable );
+        }
+        return documentTagTable;
+    }
+
+    /**
+     * Returns an empty stack for the open nodes of the document read by {@link CorePdmlParser}.
+     */
+    TaggedNode[] openNodes() {
+
+        if ( openNodes == null ) {
+            openNodes = new TaggedNode[16];
+        } else {
+            Arrays.fill ( openNodes, null );
+        }
+        return openNodes;
     }
 
 
-    public int currentPosition() { return currentPosition; }
+    public long currentPosition() { return windowStart + windowIndex; }
 
-    public int currentLineNumber() { return currentLineNumber; }
+    // Line and column numbers are computed on demand, from the newlines found since the last call. They are
+    // counted as longs, and reported as Integer.MAX_VALUE if they are larger.
+    public int currentLineNumber() {
 
-    public int currentColumnNumber() { return currentColumnNumber; }
+        countLines();
+        return saturatedInt ( countedLineNumber );
+    }
+
+    public int currentColumnNumber() {
+
+        countLines();
+        return saturatedInt ( currentPosition() - countedLineStart + 1 );
+    }
+
+    /**
+     * Records the start positions of the lines while they are counted, for {@link #lineIndex()}. Must be called
+     * before the lines are counted, e.g. before anything is read. The positions are not recorded by default, so
+     * that reading a large input doesn't use memory for each line. The positions are ints, so the caller must not
+     * count lines beyond position {@code Integer.MAX_VALUE}.
+     */
+    public void recordLineStarts() {
+
+        if ( countedPosition > 0 ) throw new IllegalStateException ( "Lines have already been counted." );
+        lineStarts = new int[16];
+    }
+
+    /**
+     * Returns the index of the lines read so far. The newlines not counted yet are counted first.
+     */
+    public CorePdmlLineIndex lineIndex() {
+
+        if ( lineStarts == null ) throw new IllegalStateException ( "Line starts are not recorded." );
+        countLines();
+        int[] recordedLineStarts = Arrays.copyOf ( lineStarts, (int) countedLineNumber );
+        return new CorePdmlLineIndex ( recordedLineStarts );
+    }
 
-    public boolean isAtEnd() { return currentPosition >= PdmlCode.length(); }
+    public boolean isAtEnd() { return windowIndex >= windowEnd; }
 
 
     public boolean readNodeStart() { return acceptChar ( CorePdmlConstants.NODE_START_CHAR ); }
@@ -38,13 +208,54 @@ public class CorePdmlReader {
     public boolean readNodeEnd() { return acceptChar ( CorePdmlConstants.NODE_END_CHAR ); }
 
     public String readTag() throws InvalidPdmlException {
-        return readTagOrText (
-            CorePdmlConstants.TAG_END_CHARS, CorePdmlConstants.INVALID_TAG_CHARS, CorePdmlConstants.TAG_AND_TEXT_ESCAPE_CHARS );
+        return readTagOrText ( CorePdmlConstants.TAG_END_CHAR_FLAG, CorePdmlConstants.INVALID_TAG_CHAR_FLAG );
     }
 
     public String readText() throws InvalidPdmlException {
-        return readTagOrText (
-            CorePdmlConstants.TEXT_END_CHARS, CorePdmlConstants.INVALID_TEXT_CHARS, CorePdmlConstants.TAG_AND_TEXT_ESCAPE_CHARS );
+        return readTagOrText ( CorePdmlConstants.TEXT_END_CHAR_FLAG, CorePdmlConstants.INVALID_TEXT_CHAR_FLAG );
+    }
+
+    /**
+     * Reads a tag and returns its ID in the tag table. The tag is compared in place with the tags in the table,
+     * so that no {@code String} is created if the tag is already in the table.
+     */
+    public int readTagId ( CorePdmlTagTable tagTable ) throws InvalidPdmlException {
+
+        return switch ( scanTagOrText ( CorePdmlConstants.TAG_END_CHAR_FLAG, CorePdmlConstants.INVALID_TAG_CHAR_FLAG ) ) {
+            case TOKEN_IN_WINDOW -> tagTable.id ( window, tokenStart, tokenLength );
+            case TOKEN_IN_BUILDER -> tagTable.id ( tokenBuilder );
+            default -> CorePdmlTagTable.NO_TAG_ID;
+        };
+    }
+
+    /**
+     * If the input is a {@code String}, returns a {@link LazyTextLeaf} that refers to the text in the string,
+     * so that no {@code String} is created for the text while parsing.
+     */
+    public TextNode readTextNode() throws InvalidPdmlException {
+
+        // a String has less than 2^31 chars, so its positions are ints
+        int startPosition = (int) currentPosition();
+        int token = scanTagOrText ( CorePdmlConstants.TEXT_END_CHAR_FLAG, CorePdmlConstants.INVALID_TEXT_CHAR_FLAG );
+        if ( token == NO_TOKEN ) return null;
+
+        if ( PdmlCode == null ) {
+            return new TextLeaf ( token == TOKEN_IN_WINDOW
+                ? new String ( window, tokenStart, tokenLength )
+                : tokenBuilder.toString() );
+        } else if ( token == TOKEN_IN_WINDOW ) {
+            return new LazyTextLeaf ( PdmlCode, (int) windowStart + tokenStart, tokenLength, false );
+        } else {
+            return new LazyTextLeaf ( PdmlCode, startPosition, (int) currentPosition() - startPosition, tokenHasEscapes );
+        }
+    }
+
+    public boolean skipTag() throws InvalidPdmlException {
+        return skipTagOrText ( CorePdmlConstants.TAG_END_CHAR_FLAG, CorePdmlConstants.INVALID_TAG_CHAR_FLAG );
+    }
+
+    public boolean skipText() throws InvalidPdmlException {
+        return skipTagOrText ( CorePdmlConstants.TEXT_END_CHAR_FLAG, CorePdmlConstants.INVALID_TEXT_CHAR_FLAG );
     }
 
     public boolean readSeparator() {
@@ -66,33 +277,122 @@ public class CorePdmlReader {
         }
     }
 
+    public void setMaxTokenLengths ( int maxTagLength, int maxTextLength ) {
+
+        this.maxTagLength = maxTagLength;
+        this.maxTextLength = maxTextLength;
+    }
+
+    public long escapeSequenceCount() { return escapeSequenceCount; }
+
+    public void skipToNodeStartOrEnd() {
+
+        while ( ! isAtEnd()
+            && currentChar != CorePdmlConstants.NODE_START_CHAR
+            && currentChar != CorePdmlConstants.NODE_END_CHAR ) {
+
+            if ( currentChar == CorePdmlConstants.ESCAPE_CHAR ) {
+                advanceChar();
+                if ( isAtEnd() ) break;
+            }
+            advanceChar();
+        }
+    }
+
 
     // Private Methods
 
-    private String readTagOrText (
-        Set<Character> endChars,
-        Set<Character> invalidChars,
-        Map<Character, Character> escapeChars ) throws InvalidPdmlException {
+    private void init ( String PdmlCode, Reader source, int start, int end ) {
 
-        final StringBuilder result = new StringBuilder();
+        if ( PdmlCode != null ) checkRange ( PdmlCode.length(), start, end );
 
-        while ( true ) {
+        this.PdmlCode = PdmlCode;
+        this.source = source;
+        this.windowStart = start;
+        this.windowEnd = 0;
+        this.windowIndex = -1;
+        this.codeIndex = start;
+        this.codeEnd = end;
+        this.currentChar = 0;
+        this.countedPosition = 0;
+        this.countedLineNumber = 1;
+        this.countedLineStart = 0;
+        this.lineStarts = null;
+        this.maxTagLength = Integer.MAX_VALUE;
+        this.maxTextLength = Integer.MAX_VALUE;
+        this.escapeSequenceCount = 0;
 
-            if ( isAtEnd() ) {
-                break;
+        advanceChar();
+    }
 
-            } else if ( endChars.contains ( currentChar ) ) {
-                break;
+    private String readTagOrText ( int endCharFlag, int invalidCharFlag ) throws InvalidPdmlException {
+
+        return switch ( scanTagOrText ( endCharFlag, invalidCharFlag ) ) {
+            case TOKEN_IN_WINDOW -> PdmlCode != null
+                ? PdmlCode.substring ( (int) windowStart + tokenStart, (int) windowStart + tokenStart + tokenLength )
+                : new String ( window, tokenStart, tokenLength );
+            case TOKEN_IN_BUILDER -> tokenBuilder.toString();
+            default -> null;
+        };
+    }
 
-            } else if ( invalidChars.contains ( currentChar ) ) {
-                errorDetected ( "Character '" + currentChar + "' is not allowed in this context." );
+    /**
+     * Reads a tag or a text, and tells where its chars are: either in the window (at 'tokenStart'), if they are a
+     * single run of chars that don't need to be unescaped, or in 'tokenBuilder'. Stops at the first char beyond
+     * the maximum length of the token.
+     */
+    private int scanTagOrText ( int endCharFlag, int invalidCharFlag ) throws InvalidPdmlException {
+
+        final int stopCharFlags = endCharFlag | invalidCharFlag |
+            CorePdmlConstants.INVALID_CONTROL_CHAR_FLAG | CorePdmlConstants.ESCAPE_CHAR_FLAG;
+        final int maxLength = endCharFlag == CorePdmlConstants.TAG_END_CHAR_FLAG ? maxTagLength : maxTextLength;
+        final StringBuilder result = tokenBuilder;
+        result.setLength ( 0 );
+        tokenHasEscapes = false;
+
+        while ( ! isAtEnd() ) {
+
+            // Fast path: take a run of chars that don't need to be checked or unescaped in one go
+            final int runStart = windowIndex;
+            final int runEnd = findStopChar ( runStart, stopCharFlags );
+            if ( runEnd > runStart ) {
+                final int runLength = runEnd - runStart;
+                if ( runLength > maxLength - result.length() ) {
+                    // the error is reported at the start of the code point that exceeds the limit
+                    int end = runStart + maxLength - result.length();
+                    if ( end > runStart && Character.isLowSurrogate ( window[end] )
+                        && Character.isHighSurrogate ( window[end - 1] ) ) end--;
+                    moveTo ( end );
+                    maxLengthExceeded ( endCharFlag, maxLength );
+                }
+                if ( runEnd < windowEnd
+                    && result.isEmpty()
+                    && ( CorePdmlConstants.charFlags ( window[runEnd] ) & endCharFlag ) != 0 ) {
+
+                    // the whole token is a single run
+                    tokenStart = runStart;
+                    tokenLength = runLength;
+                    moveTo ( runEnd );
+                    return TOKEN_IN_WINDOW;
+                }
+
+                result.append ( window, runStart, runLength );
+                moveTo ( runEnd );
+                continue;
+            }
+
+            // Slow path
+            final char c = currentChar;
+            final int flags = CorePdmlConstants.charFlags ( c );
 
-            } else if ( currentChar <= 0X001F &&
-                currentChar != '\n' && currentChar != '\r' && currentChar != '\t' && currentChar != '\f' ) {
-                errorDetected ( "Unicode code points below U+001F (control characters) are not allowed, except U+0009 (Character Tabulation), U+000A (End of Line), U+000C (Form Feed), and U+000D (Carriage Return)." );
+            if ( ( flags & endCharFlag ) != 0 ) {
+                break;
 
-            } else if ( currentChar >= 0X0080 && currentChar <= 0X009F ) {
-                errorDetected ( "Unicode code points in the range U+0080 to U+009F (control characters) are not allowed." );
+            } else if ( ( flags & invalidCharFlag ) != 0 ) {
+                errorDetected ( "Character '" + c + "' is not allowed in this context." );
+
+            } else if ( ( flags & CorePdmlConstants.INVALID_CONTROL_CHAR_FLAG ) != 0 ) {
+                invalidControlCharacter ( c );
 
             /*
                 This doesn't work because Java uses UTF-16 to store strings in memory
@@ -101,22 +401,84 @@ public class CorePdmlReader {
                     errorDetected ( "Unicode code points in the range U+D800 to U+DFFF are not allowed (they are surrogates reserved to encode code points beyond U+FFFF in UTF-16)." );
              */
 
-            } else if ( currentChar == CorePdmlConstants.ESCAPE_CHAR ) {
-                appendEscapedCharacter ( result, escapeChars );
+            } else {
+                // the escape char
+                appendEscapedCharacter ( result );
+                tokenHasEscapes = true;
+                if ( result.length() > maxLength ) maxLengthExceeded ( endCharFlag, maxLength );
+            }
+
+            advanceChar();
+        }
+
+        return result.isEmpty() ? NO_TOKEN : TOKEN_IN_BUILDER;
+    }
+
+    /**
+     * Like {@link #scanTagOrText(int, int)}, but the chars are only checked, not copied or unescaped.
+     */
+    private boolean skipTagOrText ( int endCharFlag, int invalidCharFlag ) throws InvalidPdmlException {
+
+        final int stopCharFlags = endCharFlag | invalidCharFlag |
+            CorePdmlConstants.INVALID_CONTROL_CHAR_FLAG | CorePdmlConstants.ESCAPE_CHAR_FLAG;
+        boolean skipped = false;
+
+        while ( ! isAtEnd() ) {
+
+            final int runEnd = findStopChar ( windowIndex, stopCharFlags );
+            if ( runEnd > windowIndex ) {
+                moveTo ( runEnd );
+                skipped = true;
+                continue;
+            }
+
+            final char c = currentChar;
+            final int flags = CorePdmlConstants.charFlags ( c );
+
+            if ( ( flags & endCharFlag ) != 0 ) {
+                break;
+
+            } else if ( ( flags & invalidCharFlag ) != 0 ) {
+                errorDetected ( "Character '" + c + "' is not allowed in this context." );
+
+            } else if ( ( flags & CorePdmlConstants.INVALID_CONTROL_CHAR_FLAG ) != 0 ) {
+                invalidControlCharacter ( c );
 
             } else {
-                result.append ( currentChar );
+                // the escape char
+                appendEscapedCharacter ( null );
+                skipped = true;
             }
 
             advanceChar();
         }
 
-        return result.isEmpty() ? null : result.toString();
+        return skipped;
+    }
+
+    /**
+     * Returns the index of the first char in the window, starting at 'fromIndex', that has one of the flags,
+     * or 'windowEnd' if there is none.
+     */
+    private int findStopChar ( int fromIndex, int stopCharFlags ) {
+
+        if ( VECTOR_SCANNER_ENABLED && stopCharFlags == TEXT_STOP_CHAR_FLAGS ) {
+            return CorePdmlVectorScanner.findTextStopChar ( window, fromIndex, windowEnd );
+        }
+
+        final char[] chars = window;
+        final int end = windowEnd;
+        int index = fromIndex;
+        while ( index < end && ( CorePdmlConstants.charFlags ( chars[index] ) & stopCharFlags ) == 0 ) {
+            index++;
+        }
+        return index;
     }
 
-    private void appendEscapedCharacter (
-        StringBuilder result,
-        Map<Character, Character> escapeChars ) throws InvalidPdmlException {
+    /**
+     * Checks the escape sequence at the current position, and appends the escaped char to 'result' unless it is null.
+     */
+    private void appendEscapedCharacter ( StringBuilder result ) throws InvalidPdmlException {
 
         // now positioned at '\'
         advanceChar(); // consume \
@@ -126,22 +488,27 @@ public class CorePdmlReader {
                 "Expecting another character after the escape character '" + CorePdmlConstants.ESCAPE_CHAR + "'." );
         }
 
-        Character escapedChar = escapeChars.get ( currentChar );
-        if ( escapedChar != null ) {
-            result.append ( escapedChar );
+        int escapedChar = CorePdmlConstants.unescapedChar ( currentChar );
+        if ( escapedChar >= 0 ) {
+            if ( result != null ) result.append ( (char) escapedChar );
+            escapeSequenceCount++;
         } else {
             errorDetected ( "Invalid character escape sequence \"" +
                 CorePdmlConstants.ESCAPE_CHAR + currentChar + "\"" );
         }
     }
 
-    private static boolean isWhiteSpaceChar ( char c ) {
+    private void invalidControlCharacter ( char c ) throws InvalidPdmlException {
 
-        return c == ' ' ||
-            c == '\n' ||
-            c == '\r' ||
-            c == '\t' ||
-            c == '\f';
+        if ( c <= 0X001F ) {
+            errorDetected ( "Unicode code points below U+001F (control characters) are not allowed, except U+0009 (Character Tabulation), U+000A (End of Line), U+000C (Form Feed), and U+000D (Carriage Return)." );
+        } else {
+            errorDetected ( "Unicode code points in the range U+0080 to U+009F (control characters) are not allowed." );
+        }
+    }
+
+    private static boolean isWhiteSpaceChar ( char c ) {
+        return ( CorePdmlConstants.charFlags ( c ) & CorePdmlConstants.WHITESPACE_CHAR_FLAG ) != 0;
     }
 
     private boolean acceptChar ( char c ) {
@@ -156,23 +523,120 @@ public class CorePdmlReader {
 
     private void advanceChar() {
 
-        currentPosition++;
+        moveTo ( windowIndex + 1 );
+    }
 
-        if ( currentChar == '\n' ) {
-            currentLineNumber += 1;
-            currentColumnNumber = 1;
-        } else {
-            currentColumnNumber += 1;
-        }
+    private void moveTo ( int newWindowIndex ) {
 
-        if ( currentPosition < PdmlCode.length() ) {
-            currentChar = PdmlCode.charAt ( currentPosition );
+        windowIndex = newWindowIndex;
+        if ( windowIndex < windowEnd || fillWindow() ) {
+            currentChar = window[windowIndex];
         } else {
             currentChar = 0;
         }
     }
 
+    private void countLines() {
+        countLines ( Math.min ( currentPosition(), windowStart + windowEnd ) );
+    }
+
+    private void countLines ( long endPosition ) {
+
+        for ( long position = countedPosition; position < endPosition; position++ ) {
+            char c = PdmlCode != null ? PdmlCode.charAt ( (int) position ) : window[(int) ( position - windowStart )];
+            if ( c == '\n' ) {
+                if ( lineStarts != null ) recordLineStart ( (int) countedLineNumber, (int) ( position + 1 ) );
+                countedLineNumber++;
+                countedLineStart = position + 1;
+            }
+        }
+        countedPosition = Math.max ( countedPosition, endPosition );
+    }
+
+    private void recordLineStart ( int lineIndex, int position ) {
+
+        if ( lineIndex == lineStarts.length ) lineStarts = Arrays.copyOf ( lineStarts, lineIndex * 2 );
+        lineStarts[lineIndex] = position;
+    }
+
+    private static int saturatedInt ( long value ) {
+        return (int) Math.min ( value, Integer.MAX_VALUE );
+    }
+
+    static void checkRange ( int length, int start, int end ) {
+
+        if ( start < 0 || end > length || start > end ) {
+            throw new IndexOutOfBoundsException ( "Range [" + start + ", " + end + ") is out of bounds for length " + length + "." );
+        }
+    }
+
+    // ModuleLayer.findModule() isn't used because it creates lambdas, which delays the startup of the CLI
+    private static boolean isBootModule ( String moduleName ) {
+
+        for ( Module module : ModuleLayer.boot().modules() ) {
+            if ( module.getName().equals ( moduleName ) ) return true;
+        }
+        return false;
+    }
+
+    private static char[] createWindow ( int windowSize ) {
+
+        if ( windowSize <= 0 ) throw new IllegalArgumentException ( "Window size must be greater than 0." );
+        return new char[windowSize];
+    }
+
+    private boolean fillWindow() {
+
+        if ( PdmlCode == null ) {
+            // count the newlines before the chars in the window are overwritten
+            countLines ( windowStart + windowEnd );
+        }
+
+        int count = PdmlCode != null ? readFromCode() : readFromSource();
+        if ( count <= 0 ) return false; // the end of the input has been reached
+
+        windowStart += windowEnd;
+        windowIndex -= windowEnd;
+        windowEnd = count;
+        return windowIndex < windowEnd;
+    }
+
+    private int readFromCode() {
+
+        int count = Math.min ( window.length, codeEnd - codeIndex );
+        if ( count > 0 ) {
+            PdmlCode.getChars ( codeIndex, codeIndex + count, window, 0 );
+            codeIndex += count;
+        }
+        return count;
+    }
+
+    private int readFromSource() {
+
+        try {
+            int count;
+            do {
+                count = source.read ( window, 0, window.length );
+            } while ( count == 0 );
+            return count;
+        } catch ( IOException e ) {
+            throw new UncheckedIOException ( e );
+        }
+    }
+
+    private void maxLengthExceeded ( int endCharFlag, int maxLength ) throws InvalidPdmlException {
+        throw maxLengthExceeded ( endCharFlag, maxLength, currentLineNumber(), currentColumnNumber() );
+    }
+
+    // also used by CorePdmlMappedReader
+    static InvalidPdmlException maxLengthExceeded ( int endCharFlag, int maxLength, int lineNumber, int columnNumber ) {
+
+        String token = endCharFlag == CorePdmlConstants.TAG_END_CHAR_FLAG ? "tag" : "text";
+        return new CorePdmlLimitExceededException (
+            "Maximum " + token + " length (" + maxLength + ")", lineNumber, columnNumber );
+    }
+
     private void errorDetected ( String message ) throws InvalidPdmlException {
-        throw new InvalidPdmlException ( message, currentLineNumber, currentColumnNumber );
+        throw new InvalidPdmlException ( message, currentLineNumber(), currentColumnNumber() );
     }
 }
@@ -0,0 +1,79 @@
+package dev.pdml.core.simpleparser;
+
+import java.io.Reader;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A thread-safe pool of {@link CorePdmlReader}s, so that their char windows and token buffers are reused instead of
+ * being allocated for each document.
+ * <p>
+ * A reader taken with {@code acquire} must be given back with {@link #release(CorePdmlReader)} when it isn't used
+ * anymore, and must not be used after that. If the pool is empty, a new reader is created; if the pool is full, a
+ * released reader is dropped. Acquiring and releasing a pooled reader doesn't allocate memory.
+ * <p>
+ * Example:
+ * <pre>{@code
+ * CorePdmlReader reader = pool.acquire ( code );
+ * try {
+ *     return parser.parse ( reader );
+ * } finally {
+ *     pool.release ( reader );
+ * }
+ * }</pre>
+ */
+public class CorePdmlReaderPool {
+
+    private static final CorePdmlReaderPool SHARED =
+        new CorePdmlReaderPool ( 2 * Runtime.getRuntime().availableProcessors() );
+
+    private final ArrayBlockingQueue<CorePdmlReader> idleReaders;
+
+
+    /**
+     * @param maxIdleReaders the maximum number of readers kept in the pool
+     */
+    public CorePdmlReaderPool ( int maxIdleReaders ) {
+
+        if ( maxIdleReaders <= 0 ) throw new IllegalArgumentException ( "Maximum number of idle readers must be greater than 0." );
+        this.idleReaders = new ArrayBlockingQueue<> ( maxIdleReaders );
+    }
+
+    /**
+     * Returns the pool used by {@link CorePdmlParser} unless another pool is specified.
+     */
+    public static CorePdmlReaderPool shared() { return SHARED; }
+
+
+    public CorePdmlReader acquire ( String PdmlCode ) {
+
+        CorePdmlReader reader = idleReaders.poll();
+        if ( reader == null ) return new CorePdmlReader ( PdmlCode );
+        reader.reset ( PdmlCode );
+        return reader;
+    }
+
+    /**
+     * Returns a reader for a {@code Reader}. IO errors are thrown as {@link java.io.UncheckedIOException}
+     * (see {@link CorePdmlReader}).
+     */
+    public CorePdmlReader acquire ( Reader source ) {
+
+        CorePdmlReader reader = idleReaders.poll();
+        if ( reader == null ) return new CorePdmlReader ( source );
+        try {
+            reader.reset ( source );
+        } catch ( RuntimeException e ) {
+            release ( reader );
+            throw e;
+        }
+        return reader;
+    }
+
+    public void release ( CorePdmlReader reader ) {
+
+        reader.clear();
+        idleReaders.offer ( reader );
+    }
+
+    public int idleReaderCount() { return idleReaders.size(); }
+}
@@ -0,0 +1,205 @@
+package dev.pdml.core.simpleparser;
+
+import dev.pdml.core.simpleparser.data.TaggedNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parses a document like {@link CorePdmlParser}, but collects the errors and resumes parsing after them (see
+ * {@link CorePdmlParser#parseRecovering(String, int)}). The parser limits still end parsing with an exception.
+ * <p>
+ * Each instance parses a single document.
+ */
+final class CorePdmlRecoveringParser {
+
+    private final CorePdmlTokenReader reader;
+    private final CorePdmlTagTable tagTable;
+    private final CorePdmlLimitChecker limitChecker;
+    private final int maxErrors;
+    private final List<InvalidPdmlException> errors;
+    private boolean isComplete;      // false if errors have been dropped, or parsing stopped before the end
+    private TaggedNode[] openNodes;
+    private int[] openNodeErrorCounts; // the number of errors when each open node was started
+    private int openNodeCount;
+
+
+    CorePdmlRecoveringParser (
+        CorePdmlTokenReader reader,
+        CorePdmlTagTable tagTable,
+        CorePdmlParserLimits limits,
+        int maxErrors ) {
+
+        this.reader = reader;
+        this.tagTable = tagTable;
+        this.limitChecker = new CorePdmlLimitChecker ( limits, reader );
+        this.maxErrors = maxErrors;
+        this.errors = new ArrayList<>();
+        this.isComplete = true;
+        this.openNodes = new TaggedNode[16];
+        this.openNodeErrorCounts = new int[16];
+        this.openNodeCount = 0;
+    }
+
+
+    CorePdmlRecoveryResult parse() throws InvalidPdmlException {
+
+        TaggedNode rootNode = parseRootNodeStart();
+
+        while ( openNodeCount > 0 && ! isStopped() ) {
+            TaggedNode parentNode = openNodes[openNodeCount - 1];
+
+            if ( reader.isAtEnd() || reader.readNodeEnd() ) {
+                // the child nodes may be missing because of an error already reported
+                if ( parentNode.isLeaf() && errors.size() == openNodeErrorCounts[openNodeCount - 1] ) {
+                    errorDetected ( "Child nodes required" );
+                }
+                openNodes[--openNodeCount] = null;
+
+            } else if ( reader.readNodeStart() ) {
+                TaggedNode childNode = startTaggedNode();
+                if ( childNode != null ) parentNode.appendChild ( childNode );
+
+            } else {
+                parseText ( parentNode );
+            }
+        }
+
+        if ( openNodeCount > 0 ) {
+            isComplete = false;
+        } else if ( rootNode != null ) {
+            reader.skipWhitespace();
+            if ( ! reader.isAtEnd() ) {
+                errorDetected ( "No more text expected" );
+            }
+        }
+        limitChecker.checkInputSize();
+
+        return new CorePdmlRecoveryResult ( rootNode, List.copyOf ( errors ), isComplete );
+    }
+
+
+    // Private Methods
+
+    /**
+     * Reads the start of the root node. If it is missing or invalid, the next node start is used.
+     */
+    private TaggedNode parseRootNodeStart() throws InvalidPdmlException {
+
+        reader.skipWhitespace();
+        if ( ! reader.readNodeStart() ) {
+            errorDetected ( "Root node expected (e.g. \"[root\")" );
+            if ( ! skipToNodeStart() ) return null;
+        }
+
+        TaggedNode rootNode;
+        while ( ( rootNode = startTaggedNode() ) == null ) {
+            if ( isStopped() ) {
+                isComplete = false;
+                return null;
+            }
+            if ( ! skipToNodeStart() ) return null;
+        }
+        return rootNode;
+    }
+
+    /**
+     * Reads the start of a node, after its '['. If the node isn't a leaf, it is pushed on the stack of open
+     * nodes. If the tag is invalid, the node is skipped, up to the next '[' or after the next ']'.
+     * @return the node, or null if it is invalid
+     */
+    private TaggedNode startTaggedNode() throws InvalidPdmlException {
+
+        limitChecker.nodeStarted ( openNodeCount + 1 );
+
+        int tagId;
+        try {
+            tagId = reader.readTagId ( tagTable );
+            if ( tagId == CorePdmlTagTable.NO_TAG_ID ) {
+                errorDetected ( "Node tag required" );
+            }
+        } catch ( CorePdmlLimitExceededException e ) {
+            // unlike the other errors, an exceeded limit ends parsing
+            throw e;
+        } catch ( InvalidPdmlException e ) {
+            errorDetected ( e );
+            tagId = CorePdmlTagTable.NO_TAG_ID;
+        }
+        if ( tagId == CorePdmlTagTable.NO_TAG_ID ) {
+            reader.skipToNodeStartOrEnd();
+            reader.readNodeEnd();
+            return null;
+        }
+
+        TaggedNode taggedNode = new TaggedNode ( tagTable.tag ( tagId ), tagId );
+        if ( reader.readNodeEnd() ) {
+            // it's a tagged leaf node
+            return taggedNode;
+        }
+
+        if ( ! reader.readSeparator() ) {
+            errorDetected ( "Separator required" );
+        }
+        if ( openNodeCount == openNodes.length ) {
+            openNodes = Arrays.copyOf ( openNodes, openNodeCount * 2 );
+            openNodeErrorCounts = Arrays.copyOf ( openNodeErrorCounts, openNodeCount * 2 );
+        }
+        openNodes[openNodeCount] = taggedNode;
+        openNodeErrorCounts[openNodeCount] = errors.size();
+        openNodeCount++;
+        return taggedNode;
+    }
+
+    /**
+     * Reads a text leaf. After an invalid text or char, parsing resumes at the next '[' or ']'.
+     */
+    private void parseText ( TaggedNode parentNode ) throws InvalidPdmlException {
+
+        String text = null;
+        try {
+            text = reader.readText();
+            if ( text == null ) errorDetected ( "Invalid character" );
+        } catch ( CorePdmlLimitExceededException e ) {
+            throw e;
+        } catch ( InvalidPdmlException e ) {
+            errorDetected ( e );
+        }
+        if ( text == null ) {
+            reader.skipToNodeStartOrEnd();
+            return;
+        }
+
+        limitChecker.textRead();
+        parentNode.appendText ( text );
+    }
+
+    /**
+     * Moves after the next '[', and returns false if there is none.
+     */
+    private boolean skipToNodeStart() {
+
+        while ( ! reader.isAtEnd() ) {
+            reader.skipToNodeStartOrEnd();
+            if ( reader.readNodeStart() ) return true;
+            reader.readNodeEnd();
+        }
+        return false;
+    }
+
+    private boolean isStopped() { return errors.size() >= maxErrors; }
+
+    private void errorDetected ( String message ) {
+
+        errorDetected ( new InvalidPdmlException ( message, reader.currentLineNumber(), reader.currentColumnNumber() ) );
+    }
+
+    private void errorDetected ( InvalidPdmlException error ) {
+
+        if ( errors.size() < maxErrors ) {
+            errors.add ( error );
+        } else {
+            isComplete = false;
+        }
+    }
+}
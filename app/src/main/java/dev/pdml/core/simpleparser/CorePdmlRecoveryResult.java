@@ -0,0 +1,27 @@
+package dev.pdml.core.simpleparser;
+
+import dev.pdml.core.simpleparser.data.TaggedNode;
+
+import java.util.List;
+
+/**
+ * The result of {@link CorePdmlParser#parseRecovering(String, int)}: the errors found, in document order, and the
+ * tree of the valid parts of the document.
+ *
+ * @param rootNode the root node, or null if no root node could be read
+ * @param errors the errors found; empty if the document is valid
+ * @param isComplete false if parsing stopped, or errors were dropped, because the maximum number of errors was
+ *     reached
+ */
+public record CorePdmlRecoveryResult (
+    TaggedNode rootNode,
+    List<InvalidPdmlException> errors,
+    boolean isComplete ) {
+
+    public boolean isValid() { return errors.isEmpty(); }
+
+    @Override
+    public String toString() {
+        return errors.isEmpty() ? "OK" : errors.size() + ( isComplete ? "" : "+" ) + " error(s), first: " + errors.get ( 0 );
+    }
+}
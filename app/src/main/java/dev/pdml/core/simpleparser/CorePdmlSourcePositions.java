@@ -0,0 +1,145 @@
+package dev.pdml.core.simpleparser;
+
+import dev.pdml.core.simpleparser.data.Node;
+import dev.pdml.core.simpleparser.data.TaggedNode;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * A tree parsed by {@link CorePdmlParser#parseWithPositions(String)}, and the source positions of its nodes, e.g. to
+ * report where a semantic error is.
+ * <p>
+ * The start and end offsets of the nodes are stored in two {@code int} arrays, indexed by the position of the node
+ * in document order (the root node is node 0). A tagged node starts at its '[' and ends after its ']' (or at the
+ * end of the code if it isn't closed), a text leaf starts at its first char and ends after its last char. Offsets
+ * are converted into line and column numbers with the {@link #lineIndex()}.
+ * <p>
+ * The methods that take a {@link Node} look it up in an identity hash table, also stored in arrays, which is
+ * created on first use. They expect that the tree hasn't been modified.
+ */
+public final class CorePdmlSourcePositions {
+
+    public static final int NO_NODE = -1;
+
+    private final TaggedNode rootNode;
+    private final int[] startOffsets;
+    private final int[] endOffsets;
+    private final CorePdmlLineIndex lineIndex;
+    private volatile NodeTable nodeTable;
+
+
+    CorePdmlSourcePositions (
+        TaggedNode rootNode,
+        int[] startOffsets,
+        int[] endOffsets,
+        CorePdmlLineIndex lineIndex ) {
+
+        this.rootNode = rootNode;
+        this.startOffsets = startOffsets;
+        this.endOffsets = endOffsets;
+        this.lineIndex = lineIndex;
+        this.nodeTable = null;
+    }
+
+
+    public TaggedNode rootNode() { return rootNode; }
+
+    public CorePdmlLineIndex lineIndex() { return lineIndex; }
+
+    public int nodeCount() { return startOffsets.length; }
+
+    /**
+     * Returns the position of a node of the tree in document order, or {@link #NO_NODE} if the node isn't in the
+     * tree. Nodes are compared by identity.
+     */
+    public int nodeIndex ( Node node ) {
+
+        NodeTable table = nodeTable;
+        if ( table == null ) {
+            table = new NodeTable ( rootNode, startOffsets.length );
+            nodeTable = table;
+        }
+        return table.get ( node );
+    }
+
+    public int startOffset ( int nodeIndex ) { return startOffsets[nodeIndex]; }
+
+    public int endOffset ( int nodeIndex ) { return endOffsets[nodeIndex]; }
+
+    public int startOffset ( Node node ) { return startOffsets[requireNodeIndex ( node )]; }
+
+    public int endOffset ( Node node ) { return endOffsets[requireNodeIndex ( node )]; }
+
+    public int startLineNumber ( Node node ) { return lineIndex.lineNumber ( startOffset ( node ) ); }
+
+    public int startColumnNumber ( Node node ) { return lineIndex.columnNumber ( startOffset ( node ) ); }
+
+
+    // Private Methods
+
+    private int requireNodeIndex ( Node node ) {
+
+        int index = nodeIndex ( node );
+        if ( index == NO_NODE ) throw new IllegalArgumentException ( "The node is not in the tree." );
+        return index;
+    }
+
+
+    /**
+     * An open-addressing hash table from nodes (by identity) to their index in document order.
+     */
+    private static final class NodeTable {
+
+        private final Node[] nodes;
+        private final int[] indexes;
+        private final int mask;
+
+        private NodeTable ( TaggedNode rootNode, int nodeCount ) {
+
+            int capacity = Integer.highestOneBit ( Math.max ( 1, nodeCount ) ) * 4; // load factor < 0.5
+            this.nodes = new Node[capacity];
+            this.indexes = new int[capacity];
+            this.mask = capacity - 1;
+
+            // the nodes in document order, without recursion
+            int index = 0;
+            ArrayDeque<Node> pendingNodes = new ArrayDeque<>();
+            pendingNodes.push ( rootNode );
+            while ( ! pendingNodes.isEmpty() ) {
+                Node node = pendingNodes.pop();
+                put ( node, index++ );
+                if ( node instanceof TaggedNode taggedNode ) {
+                    List<Node> childNodes = taggedNode.childNodes();
+                    for ( int i = childNodes.size() - 1; i >= 0; i-- ) {
+                        pendingNodes.push ( childNodes.get ( i ) );
+                    }
+                }
+            }
+        }
+
+        private int get ( Node node ) {
+
+            for ( int slot = slot ( node ); nodes[slot] != null; slot = ( slot + 1 ) & mask ) {
+                if ( nodes[slot] == node ) return indexes[slot];
+            }
+            return NO_NODE;
+        }
+
+        private void put ( Node node, int index ) {
+
+            int slot = slot ( node );
+            while ( nodes[slot] != null ) {
+                slot = ( slot + 1 ) & mask;
+            }
+            nodes[slot] = node;
+            indexes[slot] = index;
+        }
+
+        private int slot ( Node node ) {
+
+            int hash = System.identityHashCode ( node );
+            return ( hash ^ ( hash >>> 16 ) ) & mask;
+        }
+    }
+}
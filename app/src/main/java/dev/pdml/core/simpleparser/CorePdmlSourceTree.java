@@ -0,0 +1,542 @@
+package dev.pdml.core.simpleparser;
+
+import dev.pdml.core.simpleparser.data.Node;
+import dev.pdml.core.simpleparser.data.TaggedNode;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A parsed PDML document together with the source range of each node, that can be reparsed incrementally after an
+ * edit (e.g. in an editor, on each keystroke).
+ * <p>
+ * {@link #withEdit(int, int, String)} only reparses the smallest tagged node that encloses the edit, and reuses all
+ * other subtrees: the reparse time depends on the size of that node, not on the size of the document. Like
+ * {@link dev.pdml.core.simpleparser.data.ImmutableTaggedNode}, the tree isn't modified: the nodes on the path to
+ * the reparsed node are copied, so both trees can be used afterwards. The trees must therefore not be modified.
+ * <p>
+ * The source ranges are stored relative to the parent node, so that the ranges of the reused subtrees stay valid
+ * when the code before them changes. Nodes are identified by the child indexes on their path from the root
+ * node, e.g. {@code 2, 0} for the first child of the third child of the root node.
+ * <p>
+ * The child nodes of a node are stored in a tree of chunks (see {@link ChildChunk}), so that an edit only copies
+ * a few chunks of each node on the path, even in a node with many children. The child node lists of the copied
+ * nodes are read-only views of these chunks.
+ * <p>
+ * The code is parsed with the rules of {@link CorePdmlParser} and produces the same tree, but the parser limits
+ * aren't applied.
+ */
+public final class CorePdmlSourceTree {
+
+    private static final int[] NO_OFFSETS = new int[0];
+    private static final SourceNode[] NO_SOURCE_NODES = new SourceNode[0];
+
+    // the maximum number of children, or of subchunks, in a chunk
+    private static final int CHUNK_SIZE = 32;
+    private static final ChildChunk NO_CHILDREN = new LeafChunk ( NO_OFFSETS, NO_OFFSETS, NO_SOURCE_NODES, new Node[0] );
+
+    private final String code;
+    private final int rootStart;
+    private final SourceNode rootSource;
+    private final int reparsedLength;
+
+
+    private CorePdmlSourceTree ( String code, int rootStart, SourceNode rootSource, int reparsedLength ) {
+
+        this.code = code;
+        this.rootStart = rootStart;
+        this.rootSource = rootSource;
+        this.reparsedLength = reparsedLength;
+    }
+
+    public static CorePdmlSourceTree parse ( String PdmlCode ) throws InvalidPdmlException {
+
+        CorePdmlReader reader = new CorePdmlReader ( PdmlCode );
+        reader.skipWhitespace();
+        int rootStart = (int) reader.currentPosition();
+        SourceNode rootSource = readNode ( reader, false );
+        return new CorePdmlSourceTree ( PdmlCode, rootStart, rootSource, PdmlCode.length() );
+    }
+
+
+    public String code() { return code; }
+
+    public TaggedNode rootNode() { return rootSource.node; }
+
+    /**
+     * Returns the number of chars reparsed to create this tree: the length of the code if the whole code was
+     * parsed, or the length of the reparsed node.
+     */
+    public int reparsedLength() { return reparsedLength; }
+
+    /**
+     * Returns the offset of the first char of a node in the code (its '[' for a tagged node).
+     * @param childIndexes the path of the node; no indexes for the root node
+     */
+    public int nodeStart ( int... childIndexes ) {
+
+        if ( childIndexes.length == 0 ) return rootStart;
+        SourceNode parentSource = parentSource ( childIndexes );
+        return parentStart ( childIndexes ) + parentSource.childStart ( childIndexes[childIndexes.length - 1] );
+    }
+
+    /**
+     * Returns the offset after the last char of a node in the code (after its ']' for a tagged node, unless the
+     * node is ended by the end of the code).
+     * @param childIndexes the path of the node; no indexes for the root node
+     */
+    public int nodeEnd ( int... childIndexes ) {
+
+        if ( childIndexes.length == 0 ) return rootStart + rootSource.length;
+        SourceNode parentSource = parentSource ( childIndexes );
+        return parentStart ( childIndexes ) + parentSource.childEnd ( childIndexes[childIndexes.length - 1] );
+    }
+
+    /**
+     * Returns the path of the innermost node (tagged node or text leaf) that contains the char at an offset, or
+     * null if the offset is outside of the root node.
+     */
+    public int[] pathAt ( int offset ) {
+
+        if ( offset < rootStart || offset >= rootStart + rootSource.length ) return null;
+
+        int[] path = new int[8];
+        int depth = 0;
+        SourceNode source = rootSource;
+        int start = rootStart;
+        while ( source != null ) {
+            int childIndex = source.lastChildStartingBefore ( offset - start + 1 );
+            if ( childIndex < 0 || offset >= start + source.childEnd ( childIndex ) ) break;
+
+            if ( depth == path.length ) path = Arrays.copyOf ( path, depth * 2 );
+            path[depth++] = childIndex;
+            start += source.childStart ( childIndex );
+            source = source.childSource ( childIndex );
+        }
+        return Arrays.copyOf ( path, depth );
+    }
+
+    /**
+     * Returns the tree of the edited code.
+     * <p>
+     * If the edit is inside a tagged node (after its '[' and before its ']'), only this node is reparsed, and the
+     * other nodes are reused. If the edit changes the structure of the tree outside of the reparsed node (e.g.
+     * it removes a ']'), or if the edited code is invalid, the whole code is reparsed, and the error is thrown.
+     * This tree is not changed and can still be used.
+     * @param offset the offset of the edit in the current code
+     * @param deletedLength the number of chars deleted at the offset
+     * @param insertedText the text inserted at the offset, after the deleted chars have been removed
+     */
+    public CorePdmlSourceTree withEdit ( int offset, int deletedLength, String insertedText )
+        throws InvalidPdmlException {
+
+        Objects.checkFromIndexSize ( offset, deletedLength, code.length() );
+        int delta = insertedText.length() - deletedLength;
+        int editEnd = offset + deletedLength;
+        // the builder has the exact size, so that the code is only copied once more by toString()
+        String newCode = new StringBuilder ( code.length() + delta )
+            .append ( code, 0, offset )
+            .append ( insertedText )
+            .append ( code, editEnd, code.length() )
+            .toString();
+
+        // find the innermost tagged node (other than the root node) whose '[' and ']' are not touched by the edit
+        SourceNode[] pathSources = new SourceNode[8];
+        int[] pathIndexes = new int[8];
+        int depth = 0;
+        SourceNode source = rootSource;
+        int start = rootStart;
+        while ( true ) {
+            int childIndex = source.lastChildStartingBefore ( offset - start );
+            if ( childIndex < 0 ) break;
+            SourceNode childSource = source.childSource ( childIndex );
+            if ( childSource == null || editEnd >= start + source.childEnd ( childIndex ) ) break;
+
+            if ( depth == pathSources.length ) {
+                pathSources = Arrays.copyOf ( pathSources, depth * 2 );
+                pathIndexes = Arrays.copyOf ( pathIndexes, depth * 2 );
+            }
+            pathSources[depth] = source;
+            pathIndexes[depth] = childIndex;
+            depth++;
+            start += source.childStart ( childIndex );
+            source = childSource;
+        }
+        if ( depth == 0 ) return parse ( newCode );
+
+        // reparse the node; it must still be a single node that ends with its ']'
+        int end = start + source.length + delta;
+        SourceNode newSource;
+        try {
+            newSource = readNode ( new CorePdmlReader ( newCode, start, end ), true );
+        } catch ( InvalidPdmlException e ) {
+            newSource = null;
+        }
+        if ( newSource == null || newSource.length != end - start ) return parse ( newCode );
+
+        // copy the nodes on the path, and shift the ranges of the nodes after the edit
+        for ( int i = depth - 1; i >= 0; i-- ) {
+            newSource = pathSources[i].withChildReplaced ( pathIndexes[i], newSource, delta );
+        }
+        return new CorePdmlSourceTree ( newCode, rootStart, newSource, end - start );
+    }
+
+    @Override
+    public String toString() { return code; }
+
+
+    // Private Methods
+
+    /**
+     * Reads a tagged node and its descendants, and records their source ranges.
+     * @param requireEndChar true if the node must be ended by a ']', and not by the end of the input
+     * @return the node, or null if {@code requireEndChar} is true and it isn't ended by a ']'
+     */
+    private static SourceNode readNode ( CorePdmlReader reader, boolean requireEndChar )
+        throws InvalidPdmlException {
+
+        CorePdmlEventReader eventReader = new CorePdmlEventReader ( reader );
+        List<SourceNodeBuilder> openNodes = new ArrayList<>();
+        SourceNode rootSource = null;
+        boolean isRootEndedByEndChar = false;
+
+        int position = (int) reader.currentPosition();
+        CorePdmlEventType previousEvent = null;
+        CorePdmlEventType event;
+        while ( ( event = eventReader.next() ) != null ) {
+            int newPosition = (int) reader.currentPosition();
+            switch ( event ) {
+                case NODE_START -> {
+                    TaggedNode node = new TaggedNode ( eventReader.tag() );
+                    if ( ! openNodes.isEmpty() ) openNodes.get ( openNodes.size() - 1 ).node.appendChild ( node );
+                    openNodes.add ( new SourceNodeBuilder ( node, position ) );
+                }
+                case TEXT -> {
+                    SourceNodeBuilder parent = openNodes.get ( openNodes.size() - 1 );
+                    parent.node.appendText ( eventReader.text() );
+                    parent.addChild ( position, newPosition, null );
+                }
+                case NODE_END -> {
+                    // the ']' of a leaf node is read with its tag; other nodes are ended by the end of the input
+                    // if no char is read
+                    boolean isEndedByEndChar = previousEvent == CorePdmlEventType.NODE_START || newPosition > position;
+                    SourceNodeBuilder builder = openNodes.remove ( openNodes.size() - 1 );
+                    SourceNode source = builder.build ( newPosition );
+                    if ( openNodes.isEmpty() ) {
+                        rootSource = source;
+                        isRootEndedByEndChar = isEndedByEndChar;
+                    } else {
+                        openNodes.get ( openNodes.size() - 1 ).addChild ( builder.start, newPosition, source );
+                    }
+                }
+            }
+            previousEvent = event;
+            position = newPosition;
+        }
+
+        return requireEndChar && ! isRootEndedByEndChar ? null : rootSource;
+    }
+
+    /**
+     * Returns the index of the last offset that is before {@code offset}, or -1.
+     */
+    private static int lastBefore ( int[] offsets, int offset ) {
+
+        int low = 0;
+        int high = offsets.length - 1;
+        while ( low <= high ) {
+            int middle = ( low + high ) >>> 1;
+            if ( offsets[middle] < offset ) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+
+    private SourceNode parentSource ( int[] childIndexes ) {
+
+        SourceNode source = rootSource;
+        for ( int i = 0; i < childIndexes.length - 1; i++ ) {
+            SourceNode childSource = source.childSource ( childIndexes[i] );
+            if ( childSource == null ) {
+                throw new IllegalArgumentException ( "Child " + childIndexes[i] + " at depth " + i + " is a text leaf." );
+            }
+            source = childSource;
+        }
+        Objects.checkIndex ( childIndexes[childIndexes.length - 1], source.children.size() );
+        return source;
+    }
+
+    private int parentStart ( int[] childIndexes ) {
+
+        int start = rootStart;
+        SourceNode source = rootSource;
+        for ( int i = 0; i < childIndexes.length - 1; i++ ) {
+            start += source.childStart ( childIndexes[i] );
+            source = source.childSource ( childIndexes[i] );
+        }
+        return start;
+    }
+
+
+    /**
+     * A tagged node and the source ranges of its child nodes, relative to the node's start.
+     *
+     * @param childrenStart the start of the first child node, to which the offsets of 'children' are relative
+     */
+    private record SourceNode (
+        TaggedNode node,
+        int length,
+        int childrenStart,
+        ChildChunk children ) {
+
+        private int childStart ( int index ) { return childrenStart + children.start ( index ); }
+
+        private int childEnd ( int index ) { return childrenStart + children.end ( index ); }
+
+        // null for a text leaf
+        private SourceNode childSource ( int index ) { return children.source ( index ); }
+
+        /**
+         * Returns the index of the last child whose start (relative to the node) is before the offset, or -1.
+         */
+        private int lastChildStartingBefore ( int relativeOffset ) {
+            return children.lastStartingBefore ( relativeOffset - childrenStart );
+        }
+
+        /**
+         * Returns a copy of this node where a child node has been replaced by a node that is longer by 'delta'.
+         */
+        private SourceNode withChildReplaced ( int index, SourceNode newChildSource, int delta ) {
+
+            // the start of the first child doesn't change, because the edit is inside a child
+            ChildChunk newChildren = children.withChildReplaced ( index, newChildSource, delta );
+            TaggedNode newNode = new TaggedNode ( node.tag(), new ChildNodeList ( newChildren ), node.tagId() );
+            return new SourceNode ( newNode, length + delta, childrenStart, newChildren );
+        }
+    }
+
+    /**
+     * A persistent sequence of child nodes and their source ranges: a leaf chunk holds up to {@link #CHUNK_SIZE}
+     * children, and an inner chunk up to {@link #CHUNK_SIZE} subchunks. Replacing a child copies the chunks on its
+     * path, so an edit takes O(log n) time in a node with n children.
+     * <p>
+     * The offsets of a chunk are relative to the start of its first child, so the children after an edited child
+     * are shifted by changing the offsets in the copied chunks only.
+     */
+    private sealed interface ChildChunk permits LeafChunk, InnerChunk {
+
+        int size();
+
+        int start ( int index );
+
+        int end ( int index );
+
+        SourceNode source ( int index );
+
+        Node node ( int index );
+
+        int lastStartingBefore ( int relativeOffset );
+
+        ChildChunk withChildReplaced ( int index, SourceNode newChildSource, int delta );
+    }
+
+    private record LeafChunk ( int[] starts, int[] ends, SourceNode[] sources, Node[] nodes ) implements ChildChunk {
+
+        public int size() { return starts.length; }
+
+        public int start ( int index ) { return starts[index]; }
+
+        public int end ( int index ) { return ends[index]; }
+
+        public SourceNode source ( int index ) { return sources[index]; }
+
+        public Node node ( int index ) { return nodes[index]; }
+
+        public int lastStartingBefore ( int relativeOffset ) { return lastBefore ( starts, relativeOffset ); }
+
+        public ChildChunk withChildReplaced ( int index, SourceNode newChildSource, int delta ) {
+
+            int[] newStarts = starts.clone();
+            int[] newEnds = ends.clone();
+            newEnds[index] += delta;
+            for ( int i = index + 1; i < newStarts.length; i++ ) {
+                newStarts[i] += delta;
+                newEnds[i] += delta;
+            }
+            SourceNode[] newSources = sources.clone();
+            newSources[index] = newChildSource;
+            Node[] newNodes = nodes.clone();
+            newNodes[index] = newChildSource.node;
+            return new LeafChunk ( newStarts, newEnds, newSources, newNodes );
+        }
+    }
+
+    /**
+     * @param offsets the start of each subchunk's first child
+     * @param firstIndexes the index of each subchunk's first child
+     */
+    private record InnerChunk ( ChildChunk[] chunks, int[] offsets, int[] firstIndexes, int size )
+        implements ChildChunk {
+
+        public int start ( int index ) {
+
+            int chunkIndex = chunkIndex ( index );
+            return offsets[chunkIndex] + chunks[chunkIndex].start ( index - firstIndexes[chunkIndex] );
+        }
+
+        public int end ( int index ) {
+
+            int chunkIndex = chunkIndex ( index );
+            return offsets[chunkIndex] + chunks[chunkIndex].end ( index - firstIndexes[chunkIndex] );
+        }
+
+        public SourceNode source ( int index ) {
+
+            int chunkIndex = chunkIndex ( index );
+            return chunks[chunkIndex].source ( index - firstIndexes[chunkIndex] );
+        }
+
+        public Node node ( int index ) {
+
+            int chunkIndex = chunkIndex ( index );
+            return chunks[chunkIndex].node ( index - firstIndexes[chunkIndex] );
+        }
+
+        public int lastStartingBefore ( int relativeOffset ) {
+
+            int chunkIndex = lastBefore ( offsets, relativeOffset );
+            if ( chunkIndex < 0 ) return -1;
+            return firstIndexes[chunkIndex]
+                + chunks[chunkIndex].lastStartingBefore ( relativeOffset - offsets[chunkIndex] );
+        }
+
+        public ChildChunk withChildReplaced ( int index, SourceNode newChildSource, int delta ) {
+
+            int chunkIndex = chunkIndex ( index );
+            ChildChunk[] newChunks = chunks.clone();
+            newChunks[chunkIndex] =
+                chunks[chunkIndex].withChildReplaced ( index - firstIndexes[chunkIndex], newChildSource, delta );
+            int[] newOffsets = offsets.clone();
+            for ( int i = chunkIndex + 1; i < newOffsets.length; i++ ) {
+                newOffsets[i] += delta;
+            }
+            return new InnerChunk ( newChunks, newOffsets, firstIndexes, size );
+        }
+
+        private int chunkIndex ( int index ) {
+
+            // the last subchunk whose first child is at or before 'index'
+            return lastBefore ( firstIndexes, index + 1 );
+        }
+    }
+
+    /**
+     * The read-only child node list of a copied node.
+     */
+    private static final class ChildNodeList extends AbstractList<Node> {
+
+        private final ChildChunk children;
+
+        private ChildNodeList ( ChildChunk children ) { this.children = children; }
+
+        @Override
+        public Node get ( int index ) {
+
+            Objects.checkIndex ( index, children.size() );
+            return children.node ( index );
+        }
+
+        @Override
+        public int size() { return children.size(); }
+    }
+
+    private static final class SourceNodeBuilder {
+
+        private final TaggedNode node;
+        private final int start;
+        private int[] childStarts;
+        private int[] childEnds;
+        private SourceNode[] childSources;
+        private int childCount;
+
+        private SourceNodeBuilder ( TaggedNode node, int start ) {
+
+            this.node = node;
+            this.start = start;
+            this.childStarts = NO_OFFSETS;
+            this.childEnds = NO_OFFSETS;
+            this.childSources = NO_SOURCE_NODES;
+            this.childCount = 0;
+        }
+
+        private void addChild ( int childStart, int childEnd, SourceNode childSource ) {
+
+            if ( childCount == childStarts.length ) {
+                int newLength = Math.max ( 4, childCount * 2 );
+                childStarts = Arrays.copyOf ( childStarts, newLength );
+                childEnds = Arrays.copyOf ( childEnds, newLength );
+                childSources = Arrays.copyOf ( childSources, newLength );
+            }
+            childStarts[childCount] = childStart - start;
+            childEnds[childCount] = childEnd - start;
+            childSources[childCount] = childSource;
+            childCount++;
+        }
+
+        private SourceNode build ( int end ) {
+
+            if ( childCount == 0 ) return new SourceNode ( node, end - start, 0, NO_CHILDREN );
+
+            // the leaf chunks, with offsets relative to their first child
+            int chunkCount = ( childCount + CHUNK_SIZE - 1 ) / CHUNK_SIZE;
+            ChildChunk[] chunks = new ChildChunk[chunkCount];
+            int[] chunkStarts = new int[chunkCount];
+            int[] chunkSizes = new int[chunkCount];
+            Node[] childNodes = node.childNodes().toArray ( new Node[0] );
+            for ( int i = 0; i < chunkCount; i++ ) {
+                int from = i * CHUNK_SIZE;
+                int to = Math.min ( childCount, from + CHUNK_SIZE );
+                int[] starts = Arrays.copyOfRange ( childStarts, from, to );
+                int[] ends = Arrays.copyOfRange ( childEnds, from, to );
+                for ( int j = 0; j < starts.length; j++ ) {
+                    starts[j] -= childStarts[from];
+                    ends[j] -= childStarts[from];
+                }
+                chunks[i] = new LeafChunk (
+                    starts, ends,
+                    Arrays.copyOfRange ( childSources, from, to ), Arrays.copyOfRange ( childNodes, from, to ) );
+                chunkStarts[i] = childStarts[from];
+                chunkSizes[i] = to - from;
+            }
+
+            // the levels of inner chunks
+            while ( chunkCount > 1 ) {
+                int parentCount = ( chunkCount + CHUNK_SIZE - 1 ) / CHUNK_SIZE;
+                for ( int i = 0; i < parentCount; i++ ) {
+                    int from = i * CHUNK_SIZE;
+                    int to = Math.min ( chunkCount, from + CHUNK_SIZE );
+                    int[] offsets = new int[to - from];
+                    int[] firstIndexes = new int[to - from];
+                    int size = 0;
+                    for ( int j = from; j < to; j++ ) {
+                        offsets[j - from] = chunkStarts[j] - chunkStarts[from];
+                        firstIndexes[j - from] = size;
+                        size += chunkSizes[j];
+                    }
+                    chunks[i] = new InnerChunk ( Arrays.copyOfRange ( chunks, from, to ), offsets, firstIndexes, size );
+                    chunkStarts[i] = chunkStarts[from];
+                    chunkSizes[i] = size;
+                }
+                chunkCount = parentCount;
+            }
+
+            return new SourceNode ( node, end - start, chunkStarts[0], chunks[0] );
+        }
+    }
+}
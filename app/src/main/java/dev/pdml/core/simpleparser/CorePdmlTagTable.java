@@ -0,0 +1,278 @@
+package dev.pdml.core.simpleparser;
+
+import java.util.Arrays;
+
+/**
+ * A symbol table that assigns a stable integer ID to each distinct tag, and returns a single {@code String}
+ * instance per tag.
+ * <p>
+ * IDs start at 0 and are assigned in the order tags are added. Tags can be added in advance, so that their IDs
+ * can be used as constants (e.g. in a {@code switch} statement on {@link dev.pdml.core.simpleparser.data.TaggedNode#tagId()}).
+ * <p>
+ * A table can be shared by several parsers and threads. Lookups of existing tags are lock-free and don't allocate
+ * memory; adding a tag is synchronized.
+ * <p>
+ * The number of tags is limited (see {@link #DEFAULT_MAX_SIZE}), so that a table shared by a long-running service
+ * can't grow without bounds, e.g. with documents that contain random tags. Once a table is full, {@link #id(String)}
+ * throws an {@code IllegalStateException} for a new tag, but {@link CorePdmlParser} still parses documents: their
+ * new tags are deduplicated within the document only, and their IDs (from {@link #maxSize()} on) are only
+ * meaningful within the document.
+ */
+public class CorePdmlTagTable {
+
+    public static final int NO_TAG_ID = -1;
+
+    /**
+     * The maximum number of tags of a table created with {@link #CorePdmlTagTable()}.
+     */
+    public static final int DEFAULT_MAX_SIZE = 64 * 1024;
+
+    // tables of this length or larger aren't kept by reset()
+    private static final int MAX_RETAINED_ENTRIES_LENGTH = 1024;
+
+    private record Entry ( String tag, int hash, int id ) {}
+
+    private final int maxSize;
+    // open addressing hash table; its length is a power of 2
+    private volatile Entry[] entries;
+    private volatile String[] tags;
+    private int size;
+
+    // for the table of a single document (see forDocument): the shared table whose tags are used first, and the ID
+    // of the first tag that isn't in the shared table
+    private CorePdmlTagTable sharedTable;
+    private int idOffset;
+
+
+    public CorePdmlTagTable() {
+        this ( DEFAULT_MAX_SIZE );
+    }
+
+    /**
+     * @param maxSize the maximum number of tags
+     */
+    public CorePdmlTagTable ( int maxSize ) {
+
+        if ( maxSize <= 0 ) throw new IllegalArgumentException ( "Maximum size must be greater than 0." );
+        this.maxSize = maxSize;
+        this.entries = new Entry[64];
+        this.tags = new String[32];
+        this.size = 0;
+        this.sharedTable = null;
+        this.idOffset = 0;
+    }
+
+
+    /**
+     * Returns the ID of a tag, adding the tag if it isn't in the table yet.
+     * @throws IllegalStateException if the tag isn't in the table and the table is full
+     */
+    public int id ( String tag ) {
+
+        int hash = tag.hashCode();
+        Entry entry = find ( tag, 0, tag.length(), hash );
+        return entry != null ? entry.id : add ( tag, hash );
+    }
+
+    /**
+     * Returns the ID of a tag, or {@link #NO_TAG_ID} if the tag isn't in the table.
+     */
+    public int existingId ( String tag ) {
+
+        Entry entry = find ( tag, 0, tag.length(), tag.hashCode() );
+        return entry != null ? entry.id : NO_TAG_ID;
+    }
+
+    /**
+     * Returns the tag with the given ID.
+     */
+    public String tag ( int id ) {
+
+        if ( sharedTable != null && id >= 0 && id < idOffset ) return sharedTable.tag ( id );
+
+        int index = id - idOffset;
+        String[] currentTags = tags;
+        if ( index < 0 || index >= currentTags.length || currentTags[index] == null ) {
+            synchronized ( this ) {
+                if ( index < 0 || index >= size ) throw new IndexOutOfBoundsException ( "Tag ID " + id + " doesn't exist." );
+                return tags[index];
+            }
+        }
+        return currentTags[index];
+    }
+
+    public synchronized int size() { return size; }
+
+    public int maxSize() { return maxSize; }
+
+
+    // Package-Private Methods
+
+    /**
+     * Creates a table for the tags of a single document. Tags are looked up in the shared table first (if it isn't
+     * null), and added to it while it isn't full. Tags that don't fit into the shared table are added to the
+     * document table, with IDs from the shared table's maximum size on.
+     */
+    static CorePdmlTagTable forDocument ( CorePdmlTagTable sharedTable ) {
+
+        CorePdmlTagTable documentTable = new CorePdmlTagTable ( Integer.MAX_VALUE );
+        documentTable.reset ( sharedTable );
+        return documentTable;
+    }
+
+    /**
+     * Empties a document table (see {@link #forDocument(CorePdmlTagTable)}), so that it can be used for another
+     * document. A document table must only be used by one thread.
+     */
+    void reset ( CorePdmlTagTable sharedTable ) {
+
+        if ( size > 0 ) {
+            if ( entries.length >= MAX_RETAINED_ENTRIES_LENGTH ) {
+                entries = new Entry[64];
+                tags = new String[32];
+            } else {
+                Arrays.fill ( entries, null );
+                Arrays.fill ( tags, 0, size, null );
+            }
+            size = 0;
+        }
+        this.sharedTable = sharedTable;
+        this.idOffset = sharedTable != null ? sharedTable.maxSize : 0;
+    }
+
+    /**
+     * Returns the ID of the tag stored in {@code chars[start..start+length)}. The chars are compared in place,
+     * and a {@code String} is only created if the tag isn't in the table yet.
+     */
+    int id ( char[] chars, int start, int length ) {
+
+        int hash = 0;
+        for ( int i = start; i < start + length; i++ ) {
+            hash = 31 * hash + chars[i]; // same as String.hashCode()
+        }
+
+        Entry entry = sharedTable != null ? find ( sharedTable.entries, chars, start, length, hash ) : null;
+        if ( entry == null ) entry = find ( entries, chars, start, length, hash );
+        return entry != null ? entry.id : add ( new String ( chars, start, length ), hash );
+    }
+
+    /**
+     * Like {@link #id(char[], int, int)}, for the chars of a {@code CharSequence}.
+     */
+    int id ( CharSequence chars ) {
+
+        int length = chars.length();
+        int hash = 0;
+        for ( int i = 0; i < length; i++ ) {
+            hash = 31 * hash + chars.charAt ( i );
+        }
+
+        Entry entry = find ( chars, 0, length, hash );
+        return entry != null ? entry.id : add ( chars.toString(), hash );
+    }
+
+
+    // Private Methods
+
+    private Entry find ( CharSequence chars, int start, int length, int hash ) {
+
+        Entry entry = sharedTable != null ? find ( sharedTable.entries, chars, start, length, hash ) : null;
+        return entry != null ? entry : find ( entries, chars, start, length, hash );
+    }
+
+    private static Entry find ( Entry[] table, char[] chars, int start, int length, int hash ) {
+
+        int mask = table.length - 1;
+        for ( int index = hash & mask; ; index = ( index + 1 ) & mask ) {
+            Entry entry = table[index];
+            if ( entry == null ) return null;
+            if ( entry.hash == hash && contentEquals ( entry.tag, chars, start, length ) ) return entry;
+        }
+    }
+
+    private static Entry find ( Entry[] table, CharSequence chars, int start, int length, int hash ) {
+
+        int mask = table.length - 1;
+        for ( int index = hash & mask; ; index = ( index + 1 ) & mask ) {
+            Entry entry = table[index];
+            if ( entry == null ) return null;
+            if ( entry.hash == hash && contentEquals ( entry.tag, chars, start, length ) ) return entry;
+        }
+    }
+
+    private static boolean contentEquals ( String tag, char[] chars, int start, int length ) {
+
+        if ( tag.length() != length ) return false;
+        for ( int i = 0; i < length; i++ ) {
+            if ( tag.charAt ( i ) != chars[start + i] ) return false;
+        }
+        return true;
+    }
+
+    private static boolean contentEquals ( String tag, CharSequence chars, int start, int length ) {
+
+        if ( tag.length() != length ) return false;
+        for ( int i = 0; i < length; i++ ) {
+            if ( tag.charAt ( i ) != chars.charAt ( start + i ) ) return false;
+        }
+        return true;
+    }
+
+    private int add ( String tag, int hash ) {
+
+        if ( sharedTable != null ) {
+            int id = sharedTable.addIfNotFull ( tag, hash );
+            if ( id != NO_TAG_ID ) return id;
+        }
+        int id = addIfNotFull ( tag, hash );
+        if ( id == NO_TAG_ID ) throw new IllegalStateException ( "The tag table is full (" + maxSize + " tags)." );
+        return id;
+    }
+
+    /**
+     * Adds a tag and returns its ID, or returns {@link #NO_TAG_ID} if the table is full.
+     */
+    private synchronized int addIfNotFull ( String tag, int hash ) {
+
+        // another thread might have added the tag in the meantime
+        Entry existing = find ( entries, tag, 0, tag.length(), hash );
+        if ( existing != null ) return existing.id;
+        if ( size == maxSize ) return NO_TAG_ID;
+
+        int index = size;
+        if ( index == tags.length ) {
+            tags = Arrays.copyOf ( tags, index * 2 );
+        }
+        tags[index] = tag;
+        int id = idOffset + index;
+
+        Entry[] table = entries;
+        if ( ( size + 1 ) * 2 > table.length ) {
+            table = rehash ( table, table.length * 2 );
+        }
+        insert ( table, new Entry ( tag, hash, id ) );
+        entries = table;
+
+        size++;
+        return id;
+    }
+
+    private static Entry[] rehash ( Entry[] table, int newLength ) {
+
+        Entry[] newTable = new Entry[newLength];
+        for ( Entry entry : table ) {
+            if ( entry != null ) insert ( newTable, entry );
+        }
+        return newTable;
+    }
+
+    private static void insert ( Entry[] table, Entry entry ) {
+
+        int mask = table.length - 1;
+        int index = entry.hash & mask;
+        while ( table[index] != null ) {
+            index = ( index + 1 ) & mask;
+        }
+        table[index] = entry;
+    }
+}
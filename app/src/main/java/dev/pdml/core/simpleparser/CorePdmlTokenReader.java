@@ -0,0 +1,127 @@
+package dev.pdml.core.simpleparser;
+
+import dev.pdml.core.simpleparser.data.TextLeaf;
+import dev.pdml.core.simpleparser.data.TextNode;
+
+/**
+ * The token-level operations used by {@link CorePdmlParser} and {@link CorePdmlEventReader}.
+ * <p>
+ * Implementations: {@link CorePdmlReader} (reads chars) and {@link CorePdmlMappedReader} (reads UTF-8 bytes).
+ */
+public interface CorePdmlTokenReader {
+
+    /**
+     * Returns the offset of the current char or byte in the input. It is a long because a {@code Reader} can supply
+     * more than {@code Integer.MAX_VALUE} chars.
+     */
+    long currentPosition();
+
+    int currentLineNumber();
+
+    int currentColumnNumber();
+
+    boolean isAtEnd();
+
+    boolean readNodeStart();
+
+    boolean readNodeEnd();
+
+    String readTag() throws InvalidPdmlException;
+
+    String readText() throws InvalidPdmlException;
+
+    /**
+     * Sets the maximum lengths of the tags and texts read from now on, in chars after unescaping. A longer tag or
+     * text is rejected as soon as the limit is exceeded, without reading the rest of it. Tags and texts skipped
+     * aren't limited. There are no limits by default.
+     */
+    void setMaxTokenLengths ( int maxTagLength, int maxTextLength );
+
+    /**
+     * Reads a tag and returns its ID in the tag table, or {@link CorePdmlTagTable#NO_TAG_ID} if there is no tag.
+     */
+    default int readTagId ( CorePdmlTagTable tagTable ) throws InvalidPdmlException {
+
+        String tag = readTag();
+        return tag == null ? CorePdmlTagTable.NO_TAG_ID : tagTable.id ( tag );
+    }
+
+    /**
+     * Reads a text and returns it as a text leaf, or returns null if there is no text.
+     * Implementations may return a {@link dev.pdml.core.simpleparser.data.LazyTextLeaf}.
+     */
+    default TextNode readTextNode() throws InvalidPdmlException {
+
+        String text = readText();
+        return text == null ? null : new TextLeaf ( text );
+    }
+
+    /**
+     * Moves past a tag, and returns false if there is no tag. The tag is checked like in {@link #readTag()}, but
+     * implementations don't create a {@code String} or unescape it.
+     */
+    default boolean skipTag() throws InvalidPdmlException { return readTag() != null; }
+
+    /**
+     * Moves past a text, and returns false if there is no text. The text is checked like in {@link #readText()},
+     * but implementations don't create a {@code String} or unescape it.
+     */
+    default boolean skipText() throws InvalidPdmlException { return readText() != null; }
+
+    boolean readSeparator();
+
+    void skipWhitespace();
+
+    /**
+     * Moves to the next '[' or ']' that isn't escaped, or to the end of the input, without checking the chars
+     * skipped. Used to resume parsing after an error.
+     */
+    void skipToNodeStartOrEnd();
+
+    /**
+     * Returns the number of escape sequences read or skipped so far, or 0 if the implementation doesn't count them.
+     */
+    default long escapeSequenceCount() { return 0; }
+
+    /**
+     * Skips the child nodes and the end of the current node, whose separator has been read. Nested nodes are
+     * balanced, and texts and tags are skipped like by {@link #skipText()} and {@link #skipTag()}, so escaped node
+     * start and end chars are ignored. The skipped code is checked with the same rules as in {@link CorePdmlParser}.
+     * Like in the parser, the end of the input ends all open nodes.
+     */
+    default void skipRemainderOfNode() throws InvalidPdmlException {
+
+        int depth = 1;
+        boolean hasChildNode = false;
+
+        while ( depth > 0 ) {
+            if ( isAtEnd() || readNodeEnd() ) {
+                if ( ! hasChildNode ) throw error ( "Child nodes required" );
+                // the parent of the ended node has a child node: the ended node
+                depth--;
+
+            } else if ( skipText() ) {
+                hasChildNode = true;
+
+            } else if ( readNodeStart() ) {
+                if ( ! skipTag() ) throw error ( "Node tag required" );
+                hasChildNode = true;
+                if ( ! readNodeEnd() ) {
+                    if ( ! readSeparator() ) throw error ( "Separator required" );
+                    depth++;
+                    hasChildNode = false;
+                }
+
+            } else {
+                throw error ( "Invalid character" );
+            }
+        }
+    }
+
+
+    // Private Methods
+
+    private InvalidPdmlException error ( String message ) {
+        return new InvalidPdmlException ( message, currentLineNumber(), currentColumnNumber() );
+    }
+}
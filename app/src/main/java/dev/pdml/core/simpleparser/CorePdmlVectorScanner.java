@@ -0,0 +1,66 @@
+package dev.pdml.core.simpleparser;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Finds the end of a text run with the Vector API (SIMD instructions), several chars at a time.
+ * <p>
+ * This class must only be loaded if module {@code jdk.incubator.vector} is available at runtime. Otherwise
+ * {@link CorePdmlReader} uses its scalar loop.
+ */
+class CorePdmlVectorScanner {
+
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_PREFERRED;
+
+    // Below this length (in chars), a vector doesn't pay off
+    private static final int MIN_SPECIES_LENGTH = 8;
+
+
+    static boolean isEfficient() { return SPECIES.length() >= MIN_SPECIES_LENGTH; }
+
+    /**
+     * Returns the index of the first char in {@code chars[fromIndex..endIndex)} that ends a text run, or
+     * {@code endIndex} if there is none. The chars searched for are those with one of the
+     * {@link CorePdmlReader#TEXT_STOP_CHAR_FLAGS}.
+     */
+    static int findTextStopChar ( char[] chars, int fromIndex, int endIndex ) {
+
+        int index = fromIndex;
+        int vectorEndIndex = fromIndex + SPECIES.loopBound ( endIndex - fromIndex );
+
+        for ( ; index < vectorEndIndex; index += SPECIES.length() ) {
+            ShortVector vector = ShortVector.fromCharArray ( SPECIES, chars, index );
+
+            VectorMask<Short> stopChars = vector.compare ( VectorOperators.EQ, (short) CorePdmlConstants.NODE_START_CHAR )
+                .or ( vector.compare ( VectorOperators.EQ, (short) CorePdmlConstants.NODE_END_CHAR ) )
+                .or ( vector.compare ( VectorOperators.EQ, (short) CorePdmlConstants.ESCAPE_CHAR ) )
+                .or ( vector.compare ( VectorOperators.EQ, (short) '^' ) );
+
+            // U+0000 to U+001F, except tab, newline, form feed and carriage return
+            VectorMask<Short> controlChars = vector.compare ( VectorOperators.UNSIGNED_LT, (short) 0X0020 )
+                .andNot ( vector.compare ( VectorOperators.EQ, (short) '\t' ) )
+                .andNot ( vector.compare ( VectorOperators.EQ, (short) '\n' ) )
+                .andNot ( vector.compare ( VectorOperators.EQ, (short) '\f' ) )
+                .andNot ( vector.compare ( VectorOperators.EQ, (short) '\r' ) );
+
+            // U+0080 to U+009F
+            VectorMask<Short> c1ControlChars = vector.sub ( (short) 0X0080 )
+                .compare ( VectorOperators.UNSIGNED_LT, (short) 0X0020 );
+
+            VectorMask<Short> mask = stopChars.or ( controlChars ).or ( c1ControlChars );
+            if ( mask.anyTrue() ) {
+                return index + mask.firstTrue();
+            }
+        }
+
+        // the remaining chars
+        while ( index < endIndex
+            && ( CorePdmlConstants.charFlags ( chars[index] ) & CorePdmlReader.TEXT_STOP_CHAR_FLAGS ) == 0 ) {
+            index++;
+        }
+        return index;
+    }
+}
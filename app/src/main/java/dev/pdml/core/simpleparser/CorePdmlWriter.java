@@ -0,0 +1,280 @@
+package dev.pdml.core.simpleparser;
+
+import dev.pdml.core.simpleparser.data.Node;
+import dev.pdml.core.simpleparser.data.TaggedNode;
+import dev.pdml.core.simpleparser.data.TextNode;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes PDML code, either from a tree of {@link TaggedNode}s or from a sequence of events
+ * ({@link #startNode(String)}, {@link #text(CharSequence)} and {@link #endNode()}).
+ * <p>
+ * Tags and texts are escaped as needed. The output is collected in a buffer that is written to the target when it's
+ * full, and by {@link #flush()} and {@link #close()}.
+ * <p>
+ * In compact mode, parsing the output with {@link CorePdmlParser} returns the same tree, provided that the tree has
+ * no empty text leaves and no consecutive text leaves (they can't be distinguished in PDML code).
+ * In pretty mode, the child nodes of a node are written on separate lines with an indentation, until a text is
+ * written in the node. The line breaks and indentations are whitespace text leaves when the output is parsed.
+ * <p>
+ * Chars that can't be written in PDML (control chars other than tab, line feed, form feed and carriage return)
+ * are rejected with an {@link IllegalArgumentException}.
+ */
+public class CorePdmlWriter implements Closeable, Flushable {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final String INDENT = "    ";
+
+    private static final int TAG_ESCAPE_FLAGS = CorePdmlConstants.INVALID_TAG_CHAR_FLAG |
+        CorePdmlConstants.ESCAPE_CHAR_FLAG | CorePdmlConstants.INVALID_CONTROL_CHAR_FLAG;
+    private static final int TEXT_ESCAPE_FLAGS = CorePdmlConstants.INVALID_TEXT_CHAR_FLAG |
+        CorePdmlConstants.ESCAPE_CHAR_FLAG | CorePdmlConstants.INVALID_CONTROL_CHAR_FLAG;
+
+    private final Writer out;
+    private final boolean pretty;
+    private final char[] buffer;
+    private int bufferLength;
+
+    private int depth;                // number of open nodes
+    private boolean[] containsText;   // open node -> whether a text has been written in it
+    private boolean separatorPending; // the current node has no children yet
+    private boolean rootNodeWritten;
+
+
+    public CorePdmlWriter ( Writer out ) {
+        this ( out, false );
+    }
+
+    public CorePdmlWriter ( Writer out, boolean pretty ) {
+
+        this.out = out;
+        this.pretty = pretty;
+        this.buffer = new char[BUFFER_SIZE];
+        this.bufferLength = 0;
+        this.depth = 0;
+        this.containsText = new boolean[16];
+        this.separatorPending = false;
+        this.rootNodeWritten = false;
+    }
+
+    /**
+     * Writes UTF-8 encoded PDML code to a stream.
+     */
+    public CorePdmlWriter ( OutputStream out, boolean pretty ) {
+        this ( new OutputStreamWriter ( out, StandardCharsets.UTF_8.newEncoder() ), pretty );
+    }
+
+    /**
+     * Writes UTF-8 encoded PDML code to a channel.
+     */
+    public CorePdmlWriter ( WritableByteChannel channel, boolean pretty ) {
+        this ( Channels.newWriter ( channel, StandardCharsets.UTF_8.newEncoder(), -1 ), pretty );
+    }
+
+
+    /**
+     * Returns the PDML code of a tree.
+     */
+    public static String toPdml ( TaggedNode rootNode, boolean pretty ) {
+
+        StringWriter stringWriter = new StringWriter();
+        try ( CorePdmlWriter writer = new CorePdmlWriter ( stringWriter, pretty ) ) {
+            writer.write ( rootNode );
+        } catch ( IOException e ) {
+            throw new UncheckedIOException ( e ); // can't happen with a StringWriter
+        }
+        return stringWriter.toString();
+    }
+
+    /**
+     * Writes a node and all its descendants. The tree is traversed without recursion.
+     */
+    public void write ( TaggedNode taggedNode ) throws IOException {
+
+        TaggedNode[] nodes = new TaggedNode[16];
+        int[] nextChildIndexes = new int[16];
+        int count = 0;
+
+        startNode ( taggedNode.tag() );
+        nodes[count] = taggedNode;
+        nextChildIndexes[count++] = 0;
+
+        while ( count > 0 ) {
+            List<Node> childNodes = nodes[count - 1].childNodes();
+            int index = nextChildIndexes[count - 1];
+            if ( index == childNodes.size() ) {
+                endNode();
+                nodes[--count] = null;
+                continue;
+            }
+            nextChildIndexes[count - 1] = index + 1;
+
+            Node childNode = childNodes.get ( index );
+            if ( childNode instanceof TaggedNode taggedChild ) {
+                startNode ( taggedChild.tag() );
+                if ( count == nodes.length ) {
+                    nodes = Arrays.copyOf ( nodes, count * 2 );
+                    nextChildIndexes = Arrays.copyOf ( nextChildIndexes, count * 2 );
+                }
+                nodes[count] = taggedChild;
+                nextChildIndexes[count++] = 0;
+            } else if ( childNode instanceof TextNode textChild ) {
+                text ( textChild.textView() );
+            } else {
+                throw new IllegalArgumentException ( "Unsupported node type: " + childNode.getClass().getName() );
+            }
+        }
+    }
+
+    public void startNode ( String tag ) throws IOException {
+
+        if ( tag.isEmpty() ) throw new IllegalArgumentException ( "Tag must not be empty." );
+        if ( depth == 0 && rootNodeWritten ) throw new IllegalStateException ( "The root node has already been written." );
+
+        if ( depth > 0 ) {
+            boolean lineBreak = pretty && ! containsText[depth - 1];
+            beforeChild ( lineBreak );
+            if ( lineBreak ) newLine ( depth );
+        }
+
+        append ( CorePdmlConstants.NODE_START_CHAR );
+        appendEscaped ( tag, TAG_ESCAPE_FLAGS );
+
+        if ( depth == containsText.length ) containsText = Arrays.copyOf ( containsText, depth * 2 );
+        containsText[depth++] = false;
+        rootNodeWritten = true;
+        separatorPending = true;
+    }
+
+    /**
+     * Writes a text. An empty text isn't written.
+     */
+    public void text ( CharSequence text ) throws IOException {
+
+        if ( depth == 0 ) throw new IllegalStateException ( "A text must be in a node." );
+        if ( text.length() == 0 ) return;
+
+        beforeChild ( false );
+        appendEscaped ( text, TEXT_ESCAPE_FLAGS );
+        containsText[depth - 1] = true;
+    }
+
+    public void endNode() throws IOException {
+
+        if ( depth == 0 ) throw new IllegalStateException ( "There is no node to end." );
+
+        depth--;
+        if ( pretty && ! separatorPending && ! containsText[depth] ) newLine ( depth );
+        append ( CorePdmlConstants.NODE_END_CHAR );
+        if ( pretty && depth == 0 ) append ( '\n' );
+
+        separatorPending = false;
+    }
+
+    @Override
+    public void flush() throws IOException {
+
+        flushBuffer();
+        out.flush();
+    }
+
+    /**
+     * Flushes the output and closes the target.
+     */
+    @Override
+    public void close() throws IOException {
+
+        flushBuffer();
+        out.close();
+    }
+
+
+    // Private Methods
+
+    private void beforeChild ( boolean lineBreakFollows ) throws IOException {
+
+        if ( separatorPending ) {
+            // a line break before the first child is the separator
+            if ( ! lineBreakFollows ) append ( ' ' );
+            separatorPending = false;
+        }
+    }
+
+    private void newLine ( int indentLevel ) throws IOException {
+
+        append ( '\n' );
+        for ( int i = 0; i < indentLevel; i++ ) {
+            appendRun ( INDENT, 0, INDENT.length() );
+        }
+    }
+
+    private void appendEscaped ( CharSequence chars, int escapeFlags ) throws IOException {
+
+        final int length = chars.length();
+        int runStart = 0;
+        for ( int i = 0; i < length; i++ ) {
+            char c = chars.charAt ( i );
+            if ( ( CorePdmlConstants.charFlags ( c ) & escapeFlags ) != 0 ) {
+                appendRun ( chars, runStart, i );
+                appendEscapeSequence ( c );
+                runStart = i + 1;
+            }
+        }
+        appendRun ( chars, runStart, length );
+    }
+
+    private void appendEscapeSequence ( char c ) throws IOException {
+
+        int escapeSequenceChar = CorePdmlConstants.escapeSequenceChar ( c );
+        if ( escapeSequenceChar < 0 ) {
+            throw new IllegalArgumentException (
+                String.format ( "Character U+%04X can't be written in PDML code.", (int) c ) );
+        }
+        append ( CorePdmlConstants.ESCAPE_CHAR );
+        append ( (char) escapeSequenceChar );
+    }
+
+    private void appendRun ( CharSequence chars, int start, int end ) throws IOException {
+
+        while ( start < end ) {
+            if ( bufferLength == buffer.length ) flushBuffer();
+            int count = Math.min ( end - start, buffer.length - bufferLength );
+            if ( chars instanceof String string ) {
+                string.getChars ( start, start + count, buffer, bufferLength );
+            } else {
+                for ( int i = 0; i < count; i++ ) {
+                    buffer[bufferLength + i] = chars.charAt ( start + i );
+                }
+            }
+            bufferLength += count;
+            start += count;
+        }
+    }
+
+    private void append ( char c ) throws IOException {
+
+        if ( bufferLength == buffer.length ) flushBuffer();
+        buffer[bufferLength++] = c;
+    }
+
+    private void flushBuffer() throws IOException {
+
+        if ( bufferLength > 0 ) {
+            out.write ( buffer, 0, bufferLength );
+            bufferLength = 0;
+        }
+    }
+}
@@ -2,29 +2,44 @@ package dev.pdml.core.simpleparser;
 
 import dev.pdml.core.simpleparser.data.TaggedNode;
 import dev.pdml.core.simpleparser.data.Node;
-import dev.pdml.core.simpleparser.data.TextLeaf;
+import dev.pdml.core.simpleparser.data.TextNode;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class Start {
 
     public static void main ( String[] args ) throws IOException, InvalidPdmlException {
 
-        if ( args.length != 1 ) {
+        if ( args.length == 0 ) {
             System.err.println ( "Expecting a PDML file path as CLI argument." );
+            System.err.println ( "Single file: pdml [--stats] <file>" );
+            System.err.println ( "Batch mode: pdml [--glob=<pattern>] <file or directory>..." );
             System.exit ( 1 );
         }
 
-        Path filePath = Path.of ( args[0] );
-        TaggedNode rootNode = parse ( filePath );
-        traverseTree ( rootNode );
+        if ( args.length == 2 && args[0].equals ( "--stats" ) ) {
+            AtomicReference<CorePdmlParseMetrics> metrics = new AtomicReference<>();
+            TaggedNode rootNode = parse ( Path.of ( args[1] ), new CorePdmlParser().withParseListener ( metrics::set ) );
+            traverseTree ( rootNode );
+            printMetrics ( metrics.get() );
+        } else if ( args.length == 1 && Files.isRegularFile ( Path.of ( args[0] ) ) ) {
+            Path filePath = Path.of ( args[0] );
+            TaggedNode rootNode = parse ( filePath, new CorePdmlParser() );
+            traverseTree ( rootNode );
+        } else {
+            parseBatch ( args );
+        }
     }
 
-    private static TaggedNode parse ( Path filePath ) {
+    private static TaggedNode parse ( Path filePath, CorePdmlParser parser ) {
 
         try {
-            CorePdmlParser parser = new CorePdmlParser();
             return parser.parse ( filePath );
 
         } catch ( IOException ioe ) {
@@ -40,6 +55,52 @@ public class Start {
         return null;
     }
 
+    /**
+     * Parse many files concurrently, and write the errors to STDERR.
+     * Directories are searched recursively for files matching the glob pattern (default: "**.pdml").
+     * @param args the file and directory paths, optionally preceded by "--glob=<pattern>"
+     */
+    private static void parseBatch ( String[] args ) throws IOException {
+
+        String glob = "**.pdml";
+        List<Path> filePaths = new ArrayList<>();
+        for ( String arg : args ) {
+            if ( arg.startsWith ( "--glob=" ) ) {
+                glob = arg.substring ( "--glob=".length() );
+            } else if ( Files.isDirectory ( Path.of ( arg ) ) ) {
+                filePaths.addAll ( CorePdmlBatchParser.findFiles ( Path.of ( arg ), glob ) );
+            } else {
+                filePaths.add ( Path.of ( arg ) );
+            }
+        }
+
+        AtomicInteger errorCount = new AtomicInteger();
+        try ( CorePdmlBatchParser batchParser = new CorePdmlBatchParser() ) {
+            batchParser.parseAll ( filePaths, result -> {
+                if ( ! result.isValid() ) {
+                    errorCount.incrementAndGet();
+                    System.err.println ( result );
+                }
+            } );
+        }
+
+        System.out.println ( filePaths.size() + " files parsed, " + errorCount.get() + " invalid." );
+        if ( errorCount.get() > 0 ) System.exit ( 1 );
+    }
+
+    private static void printMetrics ( CorePdmlParseMetrics metrics ) {
+
+        System.out.println();
+        System.out.println ( "Bytes         : " + metrics.bytesProcessed() );
+        System.out.println ( "Tagged nodes  : " + metrics.taggedNodeCount() );
+        System.out.println ( "Text leaves   : " + metrics.textLeafCount() + " (" + metrics.textLength() + " chars)" );
+        System.out.println ( "Max depth     : " + metrics.maxDepth() );
+        System.out.println ( "Escapes       : " + metrics.escapeSequenceCount() );
+        System.out.printf ( "Time          : %.3f ms (read %.3f ms, build %.3f ms)%n",
+            metrics.totalNanos() / 1e6, metrics.readNanos() / 1e6, metrics.buildNanos() / 1e6 );
+        System.out.println ( "Est. allocated: " + metrics.estimatedAllocatedBytes() + " bytes" );
+    }
+
     /**
      * Traverse a PDML tree and write the node tags and text leaves encountered to STDOUT.
      * @param branchNode the root node
@@ -51,7 +112,7 @@ public class Start {
         for ( Node childNode : branchNode.childNodes() ) {
             if ( childNode instanceof TaggedNode taggedChild ) {
                 traverseTree ( taggedChild );
-            } else if ( childNode instanceof TextLeaf textChild ) {
+            } else if ( childNode instanceof TextNode textChild ) {
                 System.out.println ( "Text: <" + textChild.text() + ">" );
             }
         }
@@ -0,0 +1,55 @@
+package dev.pdml.core.simpleparser.data;
+
+/**
+ * Navigates a {@link CompactDocument} without creating objects. The cursor starts at the root node.
+ * The {@code to...} methods return false and leave the cursor unchanged if the target node doesn't exist.
+ */
+public class CompactCursor {
+
+    private final CompactDocument document;
+    private int node;
+
+
+    public CompactCursor ( CompactDocument document ) {
+
+        this.document = document;
+        this.node = document.rootNode();
+    }
+
+
+    public int node() { return node; }
+
+    public boolean isText() { return document.isText ( node ); }
+
+    public String tag() { return document.tag ( node ); }
+
+    public int tagIndex() { return document.tagIndex ( node ); }
+
+    public String text() { return document.text ( node ); }
+
+    public CharSequence textView() { return document.textView ( node ); }
+
+    public boolean toFirstChild() { return moveTo ( document.firstChild ( node ) ); }
+
+    public boolean toNextSibling() { return moveTo ( document.nextSibling ( node ) ); }
+
+    public boolean toParent() { return moveTo ( document.parent ( node ) ); }
+
+    public void toNode ( int node ) {
+
+        if ( node < 0 || node >= document.nodeCount() ) {
+            throw new IndexOutOfBoundsException ( "Node " + node + " doesn't exist." );
+        }
+        this.node = node;
+    }
+
+
+    // Private Methods
+
+    private boolean moveTo ( int targetNode ) {
+
+        if ( targetNode == CompactDocument.NO_NODE ) return false;
+        node = targetNode;
+        return true;
+    }
+}
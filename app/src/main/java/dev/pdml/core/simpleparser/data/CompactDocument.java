@@ -0,0 +1,171 @@
+package dev.pdml.core.simpleparser.data;
+
+import java.nio.CharBuffer;
+import java.util.AbstractList;
+
+/**
+ * A read-only PDML tree stored in primitive arrays (struct of arrays), instead of one object per node.
+ * <p>
+ * Nodes are identified by their index in document order; the root node is node 0.
+ * All texts are stored in a single shared char buffer.
+ * Use {@link CompactDocumentBuilder} to create a document.
+ * <p>
+ * A document can be used by several threads, including its {@link TaggedNode} views. Threads that access the
+ * same child of a view at the same time may get different, but equal, child node instances.
+ */
+public class CompactDocument {
+
+    public static final int NO_NODE = -1;
+
+    private final String[] tags;          // tag index -> tag
+    private final int[] tagIds;           // tag index -> tag ID in the parser's tag table, or TaggedNode.NO_TAG_ID
+    private final int[] tagIndexes;       // node -> tag index, or NO_NODE for a text leaf
+    private final int[] parents;          // node -> parent node
+    private final int[] firstChildren;    // node -> first child node
+    private final int[] nextSiblings;     // node -> next sibling node
+    private final int[] textOffsets;      // node -> offset of the text in 'texts'
+    private final int[] textLengths;      // node -> length of the text
+    private final char[] texts;
+    private final int nodeCount;
+
+
+    CompactDocument (
+        String[] tags,
+        int[] tagIds,
+        int[] tagIndexes,
+        int[] parents,
+        int[] firstChildren,
+        int[] nextSiblings,
+        int[] textOffsets,
+        int[] textLengths,
+        char[] texts,
+        int nodeCount ) {
+
+        this.tags = tags;
+        this.tagIds = tagIds;
+        this.tagIndexes = tagIndexes;
+        this.parents = parents;
+        this.firstChildren = firstChildren;
+        this.nextSiblings = nextSiblings;
+        this.textOffsets = textOffsets;
+        this.textLengths = textLengths;
+        this.texts = texts;
+        this.nodeCount = nodeCount;
+    }
+
+
+    public int nodeCount() { return nodeCount; }
+
+    public int rootNode() { return 0; }
+
+    public boolean isText ( int node ) { return tagIndexes[node] == NO_NODE; }
+
+    public int tagCount() { return tags.length; }
+
+    /**
+     * Returns the index of the node's tag in this document's tag table, or {@link #NO_NODE} for a text leaf.
+     * Nodes with the same tag have the same tag index.
+     */
+    public int tagIndex ( int node ) { return tagIndexes[node]; }
+
+    public String tagAt ( int tagIndex ) { return tags[tagIndex]; }
+
+    /**
+     * Returns the ID of the node's tag in the tag table of the parser that created the document (like
+     * {@link TaggedNode#tagId()}), or {@link TaggedNode#NO_TAG_ID} for a text leaf, or if the tag has no ID.
+     */
+    public int tagId ( int node ) {
+
+        int tagIndex = tagIndexes[node];
+        return tagIndex == NO_NODE ? TaggedNode.NO_TAG_ID : tagIds[tagIndex];
+    }
+
+    public String tag ( int node ) {
+
+        int tagIndex = tagIndexes[node];
+        return tagIndex == NO_NODE ? null : tags[tagIndex];
+    }
+
+    public String text ( int node ) {
+        return isText ( node ) ? new String ( texts, textOffsets[node], textLengths[node] ) : null;
+    }
+
+    /**
+     * Returns a read-only view of the node's text, without copying it.
+     */
+    public CharSequence textView ( int node ) {
+        return isText ( node ) ? CharBuffer.wrap ( texts, textOffsets[node], textLengths[node] ).asReadOnlyBuffer() : null;
+    }
+
+    public int parent ( int node ) { return parents[node]; }
+
+    public int firstChild ( int node ) { return firstChildren[node]; }
+
+    public int nextSibling ( int node ) { return nextSiblings[node]; }
+
+    public CompactCursor cursor() { return new CompactCursor ( this ); }
+
+    /**
+     * Returns a {@link TaggedNode} view of the root node. Child nodes are created lazily, when they are accessed.
+     * The child lists of the view are read-only, and tag IDs are those of {@link #tagId(int)}.
+     */
+    public TaggedNode toTaggedNode() { return toTaggedNode ( rootNode() ); }
+
+    public TaggedNode toTaggedNode ( int node ) {
+
+        if ( isText ( node ) ) throw new IllegalArgumentException ( "Node " + node + " is a text leaf." );
+        return new TaggedNode ( tag ( node ), new LazyChildList ( node ), tagId ( node ) );
+    }
+
+
+    // the child node indexes of a node, and the child nodes created so far
+    private record Children ( int[] indexes, Node[] nodes ) {}
+
+    private class LazyChildList extends AbstractList<Node> {
+
+        private final int parent;
+        // created on first access; the arrays are filled before they are published through the record's final
+        // fields, so another thread never sees them partially filled
+        private Children children;
+
+        private LazyChildList ( int parent ) {
+            this.parent = parent;
+        }
+
+        @Override
+        public Node get ( int index ) {
+
+            Children currentChildren = children();
+            // the nodes are immutable, so one created by another thread is safely read
+            Node childNode = currentChildren.nodes[index];
+            if ( childNode == null ) {
+                int child = currentChildren.indexes[index];
+                childNode = isText ( child ) ? new TextLeaf ( text ( child ) ) : toTaggedNode ( child );
+                currentChildren.nodes[index] = childNode;
+            }
+            return childNode;
+        }
+
+        @Override
+        public int size() { return children().indexes.length; }
+
+        private Children children() {
+
+            Children currentChildren = children;
+            if ( currentChildren == null ) {
+                int count = 0;
+                for ( int child = firstChildren[parent]; child != NO_NODE; child = nextSiblings[child] ) {
+                    count++;
+                }
+                int[] indexes = new int[count];
+                int i = 0;
+                for ( int child = firstChildren[parent]; child != NO_NODE; child = nextSiblings[child] ) {
+                    indexes[i++] = child;
+                }
+                currentChildren = new Children ( indexes, new Node[count] );
+                children = currentChildren;
+            }
+            return currentChildren;
+        }
+    }
+}
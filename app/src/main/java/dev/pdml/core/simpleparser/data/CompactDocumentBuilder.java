@@ -0,0 +1,183 @@
+package dev.pdml.core.simpleparser.data;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds a {@link CompactDocument} from a sequence of node start, text and node end calls in document order.
+ */
+public class CompactDocumentBuilder {
+
+    private static final int NO_NODE = CompactDocument.NO_NODE;
+
+    private final Map<String, Integer> tagIndexes;
+    private String[] tags;
+    private int[] tagIds;
+    private int tagCount;
+
+    private int[] nodeTagIndexes;
+    private int[] parents;
+    private int[] firstChildren;
+    private int[] nextSiblings;
+    private int[] textOffsets;
+    private int[] textLengths;
+    private int nodeCount;
+
+    private char[] texts;
+    private int textsLength;
+
+    // the open nodes, and the last child appended to each of them
+    private int[] openNodes;
+    private int[] lastChildren;
+    private int depth;
+
+
+    public CompactDocumentBuilder() {
+
+        this.tagIndexes = new HashMap<>();
+        this.tags = new String[16];
+        this.tagIds = new int[16];
+        this.tagCount = 0;
+
+        int capacity = 64;
+        this.nodeTagIndexes = new int[capacity];
+        this.parents = new int[capacity];
+        this.firstChildren = new int[capacity];
+        this.nextSiblings = new int[capacity];
+        this.textOffsets = new int[capacity];
+        this.textLengths = new int[capacity];
+        this.nodeCount = 0;
+
+        this.texts = new char[256];
+        this.textsLength = 0;
+
+        this.openNodes = new int[16];
+        this.lastChildren = new int[16];
+        this.depth = 0;
+    }
+
+
+    public void startNode ( String tag ) {
+
+        startNode ( tag, TaggedNode.NO_TAG_ID );
+    }
+
+    /**
+     * Starts a node whose tag has an ID in a tag table (see {@link CompactDocument#tagId(int)}). The ID of the
+     * first node with a tag is used for all nodes with this tag.
+     */
+    public void startNode ( String tag, int tagId ) {
+
+        int node = appendNode ( tagIndex ( tag, tagId ) );
+
+        if ( depth == openNodes.length ) {
+            openNodes = Arrays.copyOf ( openNodes, depth * 2 );
+            lastChildren = Arrays.copyOf ( lastChildren, depth * 2 );
+        }
+        openNodes[depth] = node;
+        lastChildren[depth] = NO_NODE;
+        depth++;
+    }
+
+    public void appendText ( CharSequence text ) {
+
+        int length = text.length();
+        int node = appendNode ( NO_NODE );
+
+        if ( textsLength + length > texts.length ) {
+            texts = Arrays.copyOf ( texts, Math.max ( textsLength + length, texts.length * 2 ) );
+        }
+        if ( text instanceof String string ) {
+            string.getChars ( 0, length, texts, textsLength );
+        } else {
+            for ( int i = 0; i < length; i++ ) {
+                texts[textsLength + i] = text.charAt ( i );
+            }
+        }
+        textOffsets[node] = textsLength;
+        textLengths[node] = length;
+        textsLength += length;
+    }
+
+    public void endNode() {
+
+        if ( depth == 0 ) throw new IllegalStateException ( "No open node." );
+        depth--;
+    }
+
+    public CompactDocument build() {
+
+        if ( nodeCount == 0 ) throw new IllegalStateException ( "The document has no root node." );
+        if ( depth != 0 ) throw new IllegalStateException ( depth + " node(s) not ended." );
+
+        return new CompactDocument (
+            Arrays.copyOf ( tags, tagCount ),
+            Arrays.copyOf ( tagIds, tagCount ),
+            Arrays.copyOf ( nodeTagIndexes, nodeCount ),
+            Arrays.copyOf ( parents, nodeCount ),
+            Arrays.copyOf ( firstChildren, nodeCount ),
+            Arrays.copyOf ( nextSiblings, nodeCount ),
+            Arrays.copyOf ( textOffsets, nodeCount ),
+            Arrays.copyOf ( textLengths, nodeCount ),
+            Arrays.copyOf ( texts, textsLength ),
+            nodeCount );
+    }
+
+
+    // Private Methods
+
+    private int tagIndex ( String tag, int tagId ) {
+
+        Integer index = tagIndexes.get ( tag );
+        if ( index != null ) return index;
+
+        if ( tagCount == tags.length ) {
+            tags = Arrays.copyOf ( tags, tagCount * 2 );
+            tagIds = Arrays.copyOf ( tagIds, tagCount * 2 );
+        }
+        tags[tagCount] = tag;
+        tagIds[tagCount] = tagId;
+        tagIndexes.put ( tag, tagCount );
+        return tagCount++;
+    }
+
+    private int appendNode ( int tagIndex ) {
+
+        if ( depth == 0 && nodeCount > 0 ) throw new IllegalStateException ( "The document has only one root node." );
+        if ( depth == 0 && tagIndex == NO_NODE ) throw new IllegalStateException ( "The root node must be a tagged node." );
+
+        if ( nodeCount == parents.length ) {
+            int capacity = nodeCount * 2;
+            nodeTagIndexes = Arrays.copyOf ( nodeTagIndexes, capacity );
+            parents = Arrays.copyOf ( parents, capacity );
+            firstChildren = Arrays.copyOf ( firstChildren, capacity );
+            nextSiblings = Arrays.copyOf ( nextSiblings, capacity );
+            textOffsets = Arrays.copyOf ( textOffsets, capacity );
+            textLengths = Arrays.copyOf ( textLengths, capacity );
+        }
+
+        int node = nodeCount++;
+        nodeTagIndexes[node] = tagIndex;
+        firstChildren[node] = NO_NODE;
+        nextSiblings[node] = NO_NODE;
+        textOffsets[node] = 0;
+        textLengths[node] = 0;
+
+        if ( depth == 0 ) {
+            parents[node] = NO_NODE;
+        } else {
+            int parent = openNodes[depth - 1];
+            parents[node] = parent;
+            int previousSibling = lastChildren[depth - 1];
+            if ( previousSibling == NO_NODE ) {
+                firstChildren[parent] = node;
+            } else {
+                nextSiblings[previousSibling] = node;
+            }
+            lastChildren[depth - 1] = node;
+        }
+
+        return node;
+    }
+}
@@ -0,0 +1,236 @@
+package dev.pdml.core.simpleparser.data;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * An immutable tagged node, that can be read by several threads without copying or locking.
+ * <p>
+ * The child nodes are stored in an array of the exact size. They are immutable too: either
+ * {@code ImmutableTaggedNode}s or {@link TextNode}s.
+ * <p>
+ * The {@code with...} methods return a modified copy of the node, which shares the unchanged child nodes with the
+ * original. {@link #withDescendantReplaced(int[], Node)} only copies the nodes on the path to the replaced node.
+ * <p>
+ * Trees are created by {@link ImmutableTreeBuilder}, by {@link #of(String, Node...)}, or from a mutable tree with
+ * {@link #copyOf(TaggedNode)}.
+ */
+public final class ImmutableTaggedNode implements Node {
+
+    private static final Node[] NO_CHILD_NODES = new Node[0];
+
+    private final String tag;
+    private final int tagId;
+    private final Node[] childNodes;
+
+
+    /**
+     * @param childNodes an array that isn't used by anyone else anymore
+     */
+    ImmutableTaggedNode ( String tag, int tagId, Node[] childNodes ) {
+
+        this.tag = Objects.requireNonNull ( tag );
+        this.tagId = tagId;
+        this.childNodes = childNodes;
+    }
+
+    public static ImmutableTaggedNode of ( String tag, Node... childNodes ) {
+
+        Node[] copy = childNodes.length == 0 ? NO_CHILD_NODES : childNodes.clone();
+        for ( Node childNode : copy ) {
+            checkChildNode ( childNode );
+        }
+        return new ImmutableTaggedNode ( tag, TaggedNode.NO_TAG_ID, copy );
+    }
+
+    /**
+     * Returns an immutable copy of a tree. Tag IDs are kept. The tree is traversed iteratively, so that deep trees
+     * don't overflow the stack.
+     */
+    public static ImmutableTaggedNode copyOf ( TaggedNode rootNode ) {
+
+        ImmutableTreeBuilder builder = new ImmutableTreeBuilder();
+        ArrayDeque<TaggedNode> nodes = new ArrayDeque<>();
+        ArrayDeque<Integer> nextChildren = new ArrayDeque<>();
+        builder.startNode ( rootNode.tag(), rootNode.tagId() );
+        nodes.push ( rootNode );
+        nextChildren.push ( 0 );
+
+        while ( ! nodes.isEmpty() ) {
+            List<Node> childNodes = nodes.peek().childNodes();
+            int nextChild = nextChildren.pop();
+            if ( nextChild == childNodes.size() ) {
+                builder.endNode();
+                nodes.pop();
+                continue;
+            }
+            nextChildren.push ( nextChild + 1 );
+
+            Node childNode = childNodes.get ( nextChild );
+            if ( childNode instanceof TaggedNode taggedChildNode ) {
+                builder.startNode ( taggedChildNode.tag(), taggedChildNode.tagId() );
+                nodes.push ( taggedChildNode );
+                nextChildren.push ( 0 );
+            } else {
+                builder.appendChild ( childNode );
+            }
+        }
+        return builder.build();
+    }
+
+
+    public String tag() { return tag; }
+
+    /**
+     * Returns the ID of the tag in the tag table used to create the node, or {@link TaggedNode#NO_TAG_ID}.
+     */
+    public int tagId() { return tagId; }
+
+    public int childCount() { return childNodes.length; }
+
+    public Node child ( int index ) { return childNodes[index]; }
+
+    /**
+     * Returns a read-only view of the child nodes.
+     */
+    public List<Node> childNodes() { return new ChildList ( childNodes ); }
+
+    public boolean isLeaf() { return childNodes.length == 0; }
+
+    public ImmutableTaggedNode withChildReplaced ( int index, Node childNode ) {
+
+        checkChildNode ( childNode );
+        Objects.checkIndex ( index, childNodes.length );
+        Node[] newChildNodes = childNodes.clone();
+        newChildNodes[index] = childNode;
+        return new ImmutableTaggedNode ( tag, tagId, newChildNodes );
+    }
+
+    public ImmutableTaggedNode withChildInserted ( int index, Node childNode ) {
+
+        checkChildNode ( childNode );
+        Objects.checkIndex ( index, childNodes.length + 1 );
+        Node[] newChildNodes = new Node[childNodes.length + 1];
+        System.arraycopy ( childNodes, 0, newChildNodes, 0, index );
+        newChildNodes[index] = childNode;
+        System.arraycopy ( childNodes, index, newChildNodes, index + 1, childNodes.length - index );
+        return new ImmutableTaggedNode ( tag, tagId, newChildNodes );
+    }
+
+    public ImmutableTaggedNode withChildAppended ( Node childNode ) {
+
+        return withChildInserted ( childNodes.length, childNode );
+    }
+
+    public ImmutableTaggedNode withChildRemoved ( int index ) {
+
+        Objects.checkIndex ( index, childNodes.length );
+        Node[] newChildNodes = new Node[childNodes.length - 1];
+        System.arraycopy ( childNodes, 0, newChildNodes, 0, index );
+        System.arraycopy ( childNodes, index + 1, newChildNodes, index, childNodes.length - index - 1 );
+        return new ImmutableTaggedNode ( tag, tagId, newChildNodes );
+    }
+
+    /**
+     * Replaces the node at the end of a path of child indexes, e.g. {@code { 2, 0 }} for the first child of the
+     * third child of this node. Only this node and the tagged nodes on the path are copied.
+     */
+    public ImmutableTaggedNode withDescendantReplaced ( int[] childIndexes, Node newNode ) {
+
+        if ( childIndexes.length == 0 ) throw new IllegalArgumentException ( "The path of child indexes is empty." );
+
+        ImmutableTaggedNode[] pathNodes = new ImmutableTaggedNode[childIndexes.length];
+        ImmutableTaggedNode node = this;
+        for ( int i = 0; i < childIndexes.length; i++ ) {
+            pathNodes[i] = node;
+            if ( i < childIndexes.length - 1 ) {
+                Node childNode = node.child ( childIndexes[i] );
+                if ( ! ( childNode instanceof ImmutableTaggedNode taggedChildNode ) ) {
+                    throw new IllegalArgumentException ( "Child " + childIndexes[i] + " at depth " + i + " is a text leaf." );
+                }
+                node = taggedChildNode;
+            }
+        }
+
+        Node replacement = newNode;
+        for ( int i = childIndexes.length - 1; i >= 0; i-- ) {
+            replacement = pathNodes[i].withChildReplaced ( childIndexes[i], replacement );
+        }
+        return (ImmutableTaggedNode) replacement;
+    }
+
+    /**
+     * Returns a mutable copy of this tree.
+     */
+    public TaggedNode toTaggedNode() {
+
+        TaggedNode rootNode = new TaggedNode ( tag, tagId );
+        ArrayDeque<ImmutableTaggedNode> sources = new ArrayDeque<>();
+        ArrayDeque<TaggedNode> targets = new ArrayDeque<>();
+        sources.push ( this );
+        targets.push ( rootNode );
+
+        while ( ! sources.isEmpty() ) {
+            ImmutableTaggedNode source = sources.pop();
+            TaggedNode target = targets.pop();
+            for ( Node childNode : source.childNodes ) {
+                if ( childNode instanceof ImmutableTaggedNode taggedChildNode ) {
+                    TaggedNode targetChildNode = new TaggedNode ( taggedChildNode.tag, taggedChildNode.tagId );
+                    target.appendChild ( targetChildNode );
+                    sources.push ( taggedChildNode );
+                    targets.push ( targetChildNode );
+                } else {
+                    target.appendChild ( childNode );
+                }
+            }
+        }
+        return rootNode;
+    }
+
+    /**
+     * Two nodes are equal if their tags and child nodes are equal. Tag IDs are ignored, as in {@link TaggedNode}.
+     */
+    @Override
+    public boolean equals ( Object other ) {
+
+        return other instanceof ImmutableTaggedNode otherNode
+            && tag.equals ( otherNode.tag )
+            && Arrays.equals ( childNodes, otherNode.childNodes );
+    }
+
+    @Override
+    public int hashCode() { return 31 * tag.hashCode() + Arrays.hashCode ( childNodes ); }
+
+    @Override
+    public String toString() { return tag; }
+
+
+    // Package-Private Methods
+
+    static void checkChildNode ( Node childNode ) {
+
+        if ( ! ( childNode instanceof ImmutableTaggedNode || childNode instanceof TextNode ) ) {
+            throw new IllegalArgumentException ( "A child node must be an ImmutableTaggedNode or a TextNode." );
+        }
+    }
+
+
+    private static final class ChildList extends AbstractList<Node> implements RandomAccess {
+
+        private final Node[] childNodes;
+
+        private ChildList ( Node[] childNodes ) {
+            this.childNodes = childNodes;
+        }
+
+        @Override
+        public Node get ( int index ) { return childNodes[index]; }
+
+        @Override
+        public int size() { return childNodes.length; }
+    }
+}
@@ -0,0 +1,117 @@
+package dev.pdml.core.simpleparser.data;
+
+import java.util.Arrays;
+
+/**
+ * Builds a tree of {@link ImmutableTaggedNode}s from a sequence of node start, child and node end calls in
+ * document order.
+ * <p>
+ * The child nodes of all open nodes are collected in a single shared array. When a node ends, its child nodes are
+ * copied into an array of the exact size, so that no list or array slack is retained by the tree.
+ */
+public class ImmutableTreeBuilder {
+
+    private static final Node[] NO_CHILD_NODES = new Node[0];
+
+    // the child nodes of the open nodes, the children of the innermost open node last
+    private Node[] pendingChildNodes;
+    private int pendingChildCount;
+
+    // the open nodes: their tags, tag IDs, and the index of their first child in 'pendingChildNodes'
+    private String[] openTags;
+    private int[] openTagIds;
+    private int[] childStarts;
+    private int depth;
+
+    private ImmutableTaggedNode rootNode;
+
+
+    public ImmutableTreeBuilder() {
+
+        this.pendingChildNodes = new Node[64];
+        this.pendingChildCount = 0;
+
+        this.openTags = new String[16];
+        this.openTagIds = new int[16];
+        this.childStarts = new int[16];
+        this.depth = 0;
+
+        this.rootNode = null;
+    }
+
+
+    public void startNode ( String tag ) {
+
+        startNode ( tag, TaggedNode.NO_TAG_ID );
+    }
+
+    public void startNode ( String tag, int tagId ) {
+
+        if ( depth == 0 && rootNode != null ) throw new IllegalStateException ( "The tree has only one root node." );
+
+        if ( depth == openTags.length ) {
+            openTags = Arrays.copyOf ( openTags, depth * 2 );
+            openTagIds = Arrays.copyOf ( openTagIds, depth * 2 );
+            childStarts = Arrays.copyOf ( childStarts, depth * 2 );
+        }
+        openTags[depth] = tag;
+        openTagIds[depth] = tagId;
+        childStarts[depth] = pendingChildCount;
+        depth++;
+    }
+
+    public void appendText ( String text ) {
+
+        appendChild ( new TextLeaf ( text ) );
+    }
+
+    /**
+     * Appends an immutable node (an {@link ImmutableTaggedNode} or a {@link TextNode}) to the innermost open node.
+     */
+    public void appendChild ( Node childNode ) {
+
+        ImmutableTaggedNode.checkChildNode ( childNode );
+        if ( depth == 0 ) throw new IllegalStateException ( "No open node." );
+        pushChildNode ( childNode );
+    }
+
+    public void endNode() {
+
+        if ( depth == 0 ) throw new IllegalStateException ( "No open node." );
+        depth--;
+
+        int childStart = childStarts[depth];
+        Node[] childNodes = pendingChildCount == childStart
+            ? NO_CHILD_NODES
+            : Arrays.copyOfRange ( pendingChildNodes, childStart, pendingChildCount );
+        Arrays.fill ( pendingChildNodes, childStart, pendingChildCount, null );
+        pendingChildCount = childStart;
+
+        ImmutableTaggedNode node = new ImmutableTaggedNode ( openTags[depth], openTagIds[depth], childNodes );
+        openTags[depth] = null;
+
+        if ( depth == 0 ) {
+            rootNode = node;
+        } else {
+            pushChildNode ( node );
+        }
+    }
+
+    public ImmutableTaggedNode build() {
+
+        if ( depth != 0 ) throw new IllegalStateException ( depth + " node(s) not ended." );
+        if ( rootNode == null ) throw new IllegalStateException ( "The tree has no root node." );
+        return rootNode;
+    }
+
+
+    // Private Methods
+
+    private void pushChildNode ( Node childNode ) {
+
+        if ( pendingChildCount == pendingChildNodes.length ) {
+            pendingChildNodes = Arrays.copyOf ( pendingChildNodes, pendingChildCount * 2 );
+        }
+        pendingChildNodes[pendingChildCount++] = childNode;
+    }
+}
@@ -0,0 +1,91 @@
+package dev.pdml.core.simpleparser.data;
+
+import dev.pdml.core.simpleparser.CorePdmlConstants;
+
+import java.nio.CharBuffer;
+
+/**
+ * A text leaf that refers to its text in the PDML code, instead of holding a {@code String}.
+ * <p>
+ * The text is unescaped and stored in a {@code String} on the first call of {@link #text()}.
+ * {@link #textView()} returns a view of the code, without copying it, if the text has no escape sequences.
+ * Note that the node keeps the whole PDML code in memory.
+ */
+public final class LazyTextLeaf implements TextNode {
+
+    private final CharSequence code;
+    private final int offset;
+    private final int length;
+    private final boolean hasEscapes;
+    private String text; // created on first access
+
+
+    /**
+     * @param code the PDML code
+     * @param offset the offset of the text in the code
+     * @param length the length of the text in the code, including escape sequences
+     * @param hasEscapes whether the text contains escape sequences (which must be valid)
+     */
+    public LazyTextLeaf ( CharSequence code, int offset, int length, boolean hasEscapes ) {
+
+        this.code = code;
+        this.offset = offset;
+        this.length = length;
+        this.hasEscapes = hasEscapes;
+    }
+
+
+    public String text() {
+
+        String result = text;
+        if ( result == null ) {
+            result = hasEscapes ? unescape() : code.subSequence ( offset, offset + length ).toString();
+            text = result;
+        }
+        return result;
+    }
+
+    @Override
+    public CharSequence textView() {
+
+        if ( text != null ) return text;
+        if ( hasEscapes ) return text();
+        return CharBuffer.wrap ( code, offset, offset + length );
+    }
+
+    public int offset() { return offset; }
+
+    public int length() { return length; }
+
+    public boolean hasEscapes() { return hasEscapes; }
+
+    @Override
+    public boolean equals ( Object other ) {
+        return other instanceof TextNode otherNode && text().equals ( otherNode.text() );
+    }
+
+    @Override
+    public int hashCode() { return text().hashCode(); }
+
+    @Override
+    public String toString() { return text(); }
+
+
+    // Private Methods
+
+    private String unescape() {
+
+        StringBuilder sb = new StringBuilder ( length );
+        int end = offset + length;
+        for ( int i = offset; i < end; i++ ) {
+            char c = code.charAt ( i );
+            if ( c == CorePdmlConstants.ESCAPE_CHAR ) {
+                i++;
+                sb.append ( (char) CorePdmlConstants.unescapedChar ( code.charAt ( i ) ) );
+            } else {
+                sb.append ( c );
+            }
+        }
+        return sb.toString();
+    }
+}
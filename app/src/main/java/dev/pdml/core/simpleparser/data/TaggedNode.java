@@ -2,16 +2,35 @@ package dev.pdml.core.simpleparser.data;
 
 import java.util.ArrayList;
 import java.util.List;
-
+import java.util.Objects;
+
+/**
+ * A tagged node.
+ * <p>
+ * {@code tagId} identifies the tag in the tag table used to create the node (e.g.
+ * {@code dev.pdml.core.simpleparser.CorePdmlTagTable}), or is {@link #NO_TAG_ID}.
+ * It is ignored by {@link #equals(Object)} and {@link #hashCode()}.
+ */
 public record TaggedNode(
     String tag,
-    List<Node> childNodes ) implements Node {
+    List<Node> childNodes,
+    int tagId ) implements Node {
+
+    public static final int NO_TAG_ID = -1;
 
 
     public TaggedNode ( String tag ) {
         this ( tag, new ArrayList<>() );
     }
 
+    public TaggedNode ( String tag, int tagId ) {
+        this ( tag, new ArrayList<>(), tagId );
+    }
+
+    public TaggedNode ( String tag, List<Node> childNodes ) {
+        this ( tag, childNodes, NO_TAG_ID );
+    }
+
 
     public boolean isLeaf() { return childNodes.isEmpty(); }
 
@@ -23,6 +42,17 @@ public record TaggedNode(
         childNodes.add ( new TextLeaf ( text ) );
     }
 
+    @Override
+    public boolean equals ( Object other ) {
+
+        return other instanceof TaggedNode otherNode
+            && Objects.equals ( tag, otherNode.tag )
+            && childNodes.equals ( otherNode.childNodes );
+    }
+
+    @Override
+    public int hashCode() { return Objects.hash ( tag, childNodes ); }
+
     @Override
     public String toString() { return tag; }
 }
@@ -1,7 +1,15 @@
 package dev.pdml.core.simpleparser.data;
 
 public record TextLeaf (
-    String text) implements Node {
+    String text) implements TextNode {
+
+    @Override
+    public boolean equals ( Object other ) {
+        return other instanceof TextNode otherNode && text.equals ( otherNode.text() );
+    }
+
+    @Override
+    public int hashCode() { return text.hashCode(); }
 
     @Override
     public String toString() { return text; }
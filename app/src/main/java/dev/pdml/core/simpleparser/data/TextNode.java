@@ -0,0 +1,17 @@
+package dev.pdml.core.simpleparser.data;
+
+/**
+ * A text leaf. Implementations: {@link TextLeaf} (holds a {@code String}) and {@link LazyTextLeaf} (refers to
+ * the text in the PDML code).
+ * <p>
+ * Two text nodes are equal if their texts are equal, whatever their implementation.
+ */
+public interface TextNode extends Node {
+
+    String text();
+
+    /**
+     * Returns the text, without copying it if possible.
+     */
+    default CharSequence textView() { return text(); }
+}
@@ -1,5 +1,11 @@
 module dev.pdml.core.simpleparser {
 
+    // Optional: used by CorePdmlVectorScanner if the module is present at runtime
+    requires static jdk.incubator.vector;
+
+    // JFR events of CorePdmlParseEvent
+    requires jdk.jfr;
+
     exports dev.pdml.core.simpleparser;
     exports dev.pdml.core.simpleparser.data;
 }
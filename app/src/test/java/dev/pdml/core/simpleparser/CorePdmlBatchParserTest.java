@@ -0,0 +1,105 @@
+package dev.pdml.core.simpleparser;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CorePdmlBatchParserTest {
+
+    @Test
+    void parseAll ( @TempDir Path tempDir ) throws IOException, InvalidPdmlException {
+
+        List<Path> filePaths = new ArrayList<>();
+        List<String> codes = new ArrayList<>();
+        for ( int i = 0; i < 50; i++ ) {
+            // some files are larger than the initial read buffer, or are mapped
+            String code = "[root [id " + i + "]" + "[item คุณภาพ]".repeat ( i % 5 == 0 ? 1000 * ( i % 4 + 1 ) : 1 ) + "]";
+            if ( i % 10 == 3 ) code = "[root [id " + i + "]\n[invalid ]]";
+            Path file = tempDir.resolve ( "file" + i + ".pdml" );
+            Files.writeString ( file, code, StandardCharsets.UTF_8 );
+            filePaths.add ( file );
+            codes.add ( code );
+        }
+        filePaths.add ( tempDir.resolve ( "missing.pdml" ) );
+
+        List<CorePdmlBatchResult> results;
+        try ( CorePdmlBatchParser batchParser = new CorePdmlBatchParser ( 3 ) ) {
+            results = batchParser.parseAll ( filePaths );
+        }
+
+        assertEquals ( 51, results.size() );
+        for ( int i = 0; i < 50; i++ ) {
+            CorePdmlBatchResult result = results.get ( i );
+            assertEquals ( filePaths.get ( i ), result.path() );
+            if ( i % 10 == 3 ) {
+                InvalidPdmlException error = assertInstanceOf ( InvalidPdmlException.class, result.error() );
+                assertEquals ( 2, error.getLineNumber() );
+                assertEquals ( 11, error.getColumnNumber() );
+            } else {
+                assertTrue ( result.isValid() );
+                assertEquals ( new CorePdmlParser().parse ( codes.get ( i ) ), result.rootNode() );
+            }
+        }
+        assertInstanceOf ( IOException.class, results.get ( 50 ).error() );
+    }
+
+    @Test
+    void handlerFailure ( @TempDir Path tempDir ) throws IOException {
+
+        List<Path> filePaths = new ArrayList<>();
+        for ( int i = 0; i < 10; i++ ) {
+            Path file = tempDir.resolve ( "file" + i + ".pdml" );
+            Files.writeString ( file, "[root " + i + "]" );
+            filePaths.add ( file );
+        }
+
+        // the other files are still parsed, and the failures are thrown by parseAll
+        ConcurrentLinkedQueue<CorePdmlBatchResult> results = new ConcurrentLinkedQueue<>();
+        try ( CorePdmlBatchParser batchParser = new CorePdmlBatchParser ( 3 ) ) {
+            IllegalStateException e = assertThrows ( IllegalStateException.class, () ->
+                batchParser.parseAll ( filePaths, result -> {
+                    results.add ( result );
+                    if ( result.path().getFileName().toString().matches ( "file[27].pdml" ) ) {
+                        throw new IllegalStateException ( "handler failed" );
+                    }
+                } ) );
+            assertEquals ( "handler failed", e.getMessage() );
+            assertEquals ( 1, e.getSuppressed().length );
+            assertEquals ( 10, results.size() );
+
+            assertThrows ( AssertionError.class, () -> batchParser.parseAll ( filePaths, result -> {
+                throw new AssertionError();
+            } ) );
+
+            // the workers are still available
+            assertEquals ( 10, batchParser.parseAll ( filePaths ).size() );
+        }
+    }
+
+    @Test
+    void findFiles ( @TempDir Path tempDir ) throws IOException {
+
+        Files.createDirectories ( tempDir.resolve ( "a/b" ) );
+        Files.writeString ( tempDir.resolve ( "root.pdml" ), "[root]" );
+        Files.writeString ( tempDir.resolve ( "a/b/child.pdml" ), "[child" );
+        Files.writeString ( tempDir.resolve ( "a/notes.txt" ), "text" );
+
+        List<Path> filePaths = CorePdmlBatchParser.findFiles ( tempDir, "**.pdml" );
+        assertEquals ( List.of ( tempDir.resolve ( "a/b/child.pdml" ), tempDir.resolve ( "root.pdml" ) ), filePaths );
+
+        ConcurrentLinkedQueue<CorePdmlBatchResult> results = new ConcurrentLinkedQueue<>();
+        try ( CorePdmlBatchParser batchParser = new CorePdmlBatchParser() ) {
+            batchParser.parseAll ( filePaths, results::add );
+        }
+        assertEquals ( 1, results.stream().filter ( CorePdmlBatchResult::isValid ).count() );
+    }
+}
@@ -0,0 +1,90 @@
+package dev.pdml.core.simpleparser;
+
+import dev.pdml.core.simpleparser.data.TaggedNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CorePdmlBinaryFormatTest {
+
+    private static final CorePdmlParser PARSER = new CorePdmlParser();
+
+    @Test
+    void writeAndRead ( @TempDir Path tempDir ) throws IOException, InvalidPdmlException {
+
+        String code = "[root\n    [item [id 1][name คุณภาพ 😀]]\n    [item [id 2][name \\[x\\]]]\n    [empty]\n" +
+            "    [long " + "text ".repeat ( 1000 ) + "]\n]";
+        TaggedNode rootNode = PARSER.parse ( code );
+
+        Path file = tempDir.resolve ( "test.pdmb" );
+        CorePdmlBinaryFormat.write ( rootNode, file );
+        TaggedNode loadedNode = CorePdmlBinaryFormat.read ( file );
+        assertEquals ( rootNode, loadedNode );
+
+        // tags are shared, and tag IDs are dictionary indexes
+        TaggedNode firstItem = (TaggedNode) loadedNode.childNodes().get ( 1 );
+        TaggedNode secondItem = (TaggedNode) loadedNode.childNodes().get ( 3 );
+        assertSame ( firstItem.tag(), secondItem.tag() );
+        assertEquals ( 0, loadedNode.tagId() );
+        assertEquals ( 1, firstItem.tagId() );
+
+        // deep trees
+        TaggedNode deepNode = PARSER.parse ( "[a ".repeat ( 50_000 ) + "[b]" + "]".repeat ( 50_000 ) );
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CorePdmlBinaryFormat.write ( deepNode, out );
+        TaggedNode node = CorePdmlBinaryFormat.read ( ByteBuffer.wrap ( out.toByteArray() ) );
+        for ( int i = 0; i < 50_000; i++ ) {
+            node = (TaggedNode) node.childNodes().get ( 0 );
+        }
+        assertEquals ( "b", node.tag() );
+    }
+
+    @Test
+    void invalidData() throws IOException, InvalidPdmlException {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CorePdmlBinaryFormat.write ( PARSER.parse ( "[root [a text]]" ), out );
+        byte[] bytes = out.toByteArray();
+
+        assertThrows ( IOException.class, () -> CorePdmlBinaryFormat.read ( ByteBuffer.wrap ( "[root]".getBytes() ) ) );
+        for ( int length = 0; length < bytes.length; length++ ) {
+            byte[] truncated = Arrays.copyOf ( bytes, length );
+            assertThrows ( IOException.class, () -> CorePdmlBinaryFormat.read ( ByteBuffer.wrap ( truncated ) ) );
+        }
+        byte[] extended = Arrays.copyOf ( bytes, bytes.length + 1 );
+        assertThrows ( IOException.class, () -> CorePdmlBinaryFormat.read ( ByteBuffer.wrap ( extended ) ) );
+
+        // a tag count larger than the data
+        byte[] hugeTagCount = { 'P', 'D', 'M', 'B', 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 };
+        IOException e = assertThrows (
+            IOException.class, () -> CorePdmlBinaryFormat.read ( ByteBuffer.wrap ( hugeTagCount ) ) );
+        assertEquals ( "Invalid binary PDML data.", e.getMessage() );
+    }
+
+    @Test
+    void readFromBufferPosition() throws IOException, InvalidPdmlException {
+
+        TaggedNode rootNode = PARSER.parse ( "[root [a text]]" );
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write ( new byte[] { 1, 2, 3 } );
+        CorePdmlBinaryFormat.write ( rootNode, out );
+
+        ByteBuffer buffer = ByteBuffer.wrap ( out.toByteArray() );
+        buffer.position ( 3 );
+        assertEquals ( rootNode, CorePdmlBinaryFormat.read ( buffer ) );
+        assertEquals ( 3, buffer.position() );
+        assertEquals ( rootNode, CorePdmlBinaryFormat.read ( buffer.slice() ) );
+
+        // a direct buffer, like a mapped file
+        ByteBuffer directBuffer = ByteBuffer.allocateDirect ( buffer.limit() );
+        directBuffer.put ( out.toByteArray() ).position ( 3 );
+        assertEquals ( rootNode, CorePdmlBinaryFormat.read ( directBuffer ) );
+    }
+}
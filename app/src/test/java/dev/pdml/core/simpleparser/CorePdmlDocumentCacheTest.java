@@ -0,0 +1,116 @@
+package dev.pdml.core.simpleparser;
+
+import dev.pdml.core.simpleparser.data.TaggedNode;
+import dev.pdml.core.simpleparser.data.TextLeaf;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CorePdmlDocumentCacheTest {
+
+    @Test
+    void reuseUnchangedFiles ( @TempDir Path tempDir ) throws IOException, InvalidPdmlException {
+
+        Path file = tempDir.resolve ( "config.pdml" );
+        writeFile ( file, "[config [port 8080]]", 1000 );
+
+        CorePdmlDocumentCache cache = new CorePdmlDocumentCache();
+        TaggedNode rootNode = cache.get ( file );
+        assertEquals ( "config", rootNode.tag() );
+        assertSame ( rootNode, cache.get ( file ) );
+        assertSame ( rootNode, cache.get ( tempDir.resolve ( "." ).resolve ( "config.pdml" ) ) );
+        assertEquals ( new CorePdmlDocumentCache.Stats ( 2, 1, 0, 1, cache.stats().retainedBytes() ), cache.stats() );
+        assertTrue ( cache.stats().retainedBytes() > 0 );
+
+        // cached trees are immutable
+        assertThrows ( UnsupportedOperationException.class, () -> rootNode.appendText ( "x" ) );
+        TaggedNode portNode = (TaggedNode) rootNode.childNodes().get ( 0 );
+        assertThrows ( UnsupportedOperationException.class, () -> portNode.appendChild ( new TextLeaf ( "x" ) ) );
+
+        // same size, but a different modification time
+        writeFile ( file, "[config [port 9090]]", 2000 );
+        TaggedNode changedRootNode = cache.get ( file );
+        assertNotSame ( rootNode, changedRootNode );
+        assertEquals ( "9090", ( (TaggedNode) changedRootNode.childNodes().get ( 0 ) ).childNodes().get ( 0 ).toString() );
+        assertEquals ( 2, cache.stats().misses() );
+        assertEquals ( 1, cache.stats().entryCount() );
+
+        // invalid files are not cached
+        writeFile ( file, "[config", 3000 );
+        assertThrows ( InvalidPdmlException.class, () -> cache.get ( file ) );
+        assertEquals ( 1, cache.stats().entryCount() );
+
+        cache.invalidate ( file );
+        assertEquals ( new CorePdmlDocumentCache.Stats ( 2, 3, 0, 0, 0 ), cache.stats() );
+    }
+
+    @Test
+    void contentHash ( @TempDir Path tempDir ) throws IOException, InvalidPdmlException {
+
+        Path file = tempDir.resolve ( "config.pdml" );
+        writeFile ( file, "[config [port 8080]]", 1000 );
+
+        CorePdmlDocumentCache cache = new CorePdmlDocumentCache ( new CorePdmlParser(), 10, 1_000_000, true );
+        TaggedNode rootNode = cache.get ( file );
+
+        // touched, but not changed
+        writeFile ( file, "[config [port 8080]]", 2000 );
+        assertSame ( rootNode, cache.get ( file ) );
+        assertSame ( rootNode, cache.get ( file ) );
+        assertEquals ( 2, cache.stats().hits() );
+        assertEquals ( 1, cache.stats().misses() );
+
+        writeFile ( file, "[config [port 9090]]", 3000 );
+        assertNotSame ( rootNode, cache.get ( file ) );
+        assertEquals ( 2, cache.stats().misses() );
+    }
+
+    @Test
+    void evictLeastRecentlyUsed ( @TempDir Path tempDir ) throws IOException, InvalidPdmlException {
+
+        Path[] files = new Path[4];
+        for ( int i = 0; i < files.length; i++ ) {
+            files[i] = tempDir.resolve ( "file" + i + ".pdml" );
+            writeFile ( files[i], "[root [id " + i + "]]", 1000 );
+        }
+
+        CorePdmlDocumentCache cache = new CorePdmlDocumentCache ( 2, 1_000_000 );
+        TaggedNode rootNode0 = cache.get ( files[0] );
+        cache.get ( files[1] );
+        assertSame ( rootNode0, cache.get ( files[0] ) );
+        cache.get ( files[2] ); // evicts file 1
+        assertSame ( rootNode0, cache.get ( files[0] ) );
+        cache.get ( files[1] ); // evicts file 2
+        assertEquals ( new CorePdmlDocumentCache.Stats ( 2, 4, 2, 2, cache.stats().retainedBytes() ), cache.stats() );
+
+        // byte budget: only one tree fits
+        long treeBytes = cache.stats().retainedBytes() / 2;
+        CorePdmlDocumentCache smallCache = new CorePdmlDocumentCache ( 10, treeBytes + treeBytes / 2 );
+        for ( Path file : files ) {
+            smallCache.get ( file );
+        }
+        assertEquals ( 1, smallCache.stats().entryCount() );
+        assertEquals ( 3, smallCache.stats().evictions() );
+        assertTrue ( smallCache.stats().retainedBytes() <= treeBytes + treeBytes / 2 );
+
+        // a tree larger than the budget is not cached
+        CorePdmlDocumentCache tinyCache = new CorePdmlDocumentCache ( 10, 1 );
+        assertEquals ( "root", tinyCache.get ( files[0] ).tag() );
+        assertEquals ( 0, tinyCache.stats().entryCount() );
+    }
+
+
+    private static void writeFile ( Path file, String code, long lastModifiedMillis ) throws IOException {
+
+        Files.writeString ( file, code, StandardCharsets.UTF_8 );
+        Files.setLastModifiedTime ( file, FileTime.from ( Instant.ofEpochMilli ( lastModifiedMillis ) ) );
+    }
+}
@@ -0,0 +1,80 @@
+package dev.pdml.core.simpleparser;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CorePdmlEventReaderTest {
+
+    @Test
+    void pullEvents() throws InvalidPdmlException {
+
+        CorePdmlEventReader reader = new CorePdmlEventReader ( "[root [child foo bar][leaf]]" );
+
+        assertEquals ( CorePdmlEventType.NODE_START, reader.next() );
+        assertEquals ( "root", reader.tag() );
+        assertEquals ( 1, reader.depth() );
+
+        assertEquals ( CorePdmlEventType.NODE_START, reader.next() );
+        assertEquals ( "child", reader.tag() );
+        assertEquals ( 2, reader.depth() );
+
+        assertEquals ( CorePdmlEventType.TEXT, reader.next() );
+        assertEquals ( "foo bar", reader.text() );
+
+        assertEquals ( CorePdmlEventType.NODE_END, reader.next() );
+        assertEquals ( CorePdmlEventType.NODE_START, reader.next() );
+        assertEquals ( "leaf", reader.tag() );
+        assertEquals ( CorePdmlEventType.NODE_END, reader.next() );
+        assertEquals ( CorePdmlEventType.NODE_END, reader.next() );
+        assertEquals ( 0, reader.depth() );
+
+        assertNull ( reader.next() );
+        assertNull ( reader.next() );
+    }
+
+    @Test
+    void pushEvents() throws InvalidPdmlException {
+
+        StringBuilder sb = new StringBuilder();
+        new CorePdmlEventReader ( " [a\\sb [c]\\[text\\n\\]] " ).readAll ( new CorePdmlEventHandler() {
+            @Override
+            public void onNodeStart ( String tag ) { sb.append ( "<" ).append ( tag ).append ( ">" ); }
+            @Override
+            public void onText ( String text ) { sb.append ( text ); }
+            @Override
+            public void onNodeEnd() { sb.append ( "</>" ); }
+        } );
+        assertEquals ( "<a b><c></>[text\n]</>", sb.toString() );
+    }
+
+    @Test
+    void sameErrorsAsParser() {
+
+        expectSameError ( "" );
+        expectSameError ( " a [root]" );
+        expectSameError ( "[root" );
+        expectSameError ( "[ root]" );
+        expectSameError ( "[root ]" );
+        expectSameError ( "[root[child]]" );
+        expectSameError ( "[root\n  [child\n]\n]" );
+        expectSameError ( "[root [child text^]]" );
+        expectSameError ( "[root]\n  x" );
+        expectSameError ( "[root [a\\m]]" );
+    }
+
+
+    // Helpers
+
+    private void expectSameError ( String code ) {
+
+        InvalidPdmlException parserError = assertThrows (
+            InvalidPdmlException.class, () -> new CorePdmlParser().parse ( code ) );
+        InvalidPdmlException eventError = assertThrows (
+            InvalidPdmlException.class, () -> new CorePdmlEventReader ( code ).readAll ( new CorePdmlEventHandler() {} ) );
+
+        assertEquals ( parserError.getMessage(), eventError.getMessage() );
+        assertEquals ( parserError.getLineNumber(), eventError.getLineNumber() );
+        assertEquals ( parserError.getColumnNumber(), eventError.getColumnNumber() );
+    }
+}
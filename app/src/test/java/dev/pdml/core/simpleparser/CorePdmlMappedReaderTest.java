@@ -0,0 +1,137 @@
+package dev.pdml.core.simpleparser;
+
+import dev.pdml.core.simpleparser.data.TaggedNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CorePdmlMappedReaderTest {
+
+    @Test
+    void readTokens() throws InvalidPdmlException {
+
+        CorePdmlMappedReader reader = mappedReader ( "[root [child\nคุณภาพ\\sbar]]" );
+        assertTrue ( reader.readNodeStart() );
+        assertEquals ( "root", reader.readTag() );
+        assertTrue ( reader.readSeparator() );
+        assertTrue ( reader.readNodeStart() );
+        assertEquals ( "child", reader.readTag() );
+        assertTrue ( reader.readSeparator() );
+        assertEquals ( 13, reader.currentPosition() );
+        assertEquals ( 2, reader.currentLineNumber() );
+        assertEquals ( 1, reader.currentColumnNumber() );
+        assertEquals ( "คุณภาพ bar", reader.readText() );
+        assertEquals ( 2, reader.currentLineNumber() );
+        assertEquals ( 12, reader.currentColumnNumber() );
+        assertTrue ( reader.readNodeEnd() );
+        assertTrue ( reader.readNodeEnd() );
+        assertTrue ( reader.isAtEnd() );
+    }
+
+    @Test
+    void sameResultsAsCharReader() throws InvalidPdmlException {
+
+        String code = "[root\r\n    [a\\sb \\[text\\n\\] 😀 é]\n    [leaf]\n]\n";
+        assertEquals (
+            new CorePdmlParser().parse ( code ),
+            new CorePdmlParser().parse ( mappedReader ( code ) ) );
+
+        expectSameError ( "[root\n  [é😀\u0085]]" );
+        expectSameError ( "[root\n  [a é😀\\m]]" );
+        expectSameError ( "[root\n  [a é😀^]]" );
+        expectSameError ( "[root\n  [a é😀\u0001]]" );
+        expectSameError ( "[root\n  [a é😀\\" );
+        expectSameError ( "[root\n  [a]\n]\n x" );
+        expectSameError ( "[root\n  [a\n]]" );
+    }
+
+    @Test
+    void malformedUtf8() {
+
+        CorePdmlMappedReader reader = new CorePdmlMappedReader (
+            ByteBuffer.wrap ( new byte[] { 'a', (byte) 0xC3, (byte) 0x28, ']' } ) );
+        assertThrows ( UncheckedIOException.class, reader::readText );
+    }
+
+    @Test
+    void malformedUtf8OutsideOfTokens ( @TempDir Path dir ) throws IOException {
+
+        // malformed UTF-8 where a PDML error would be reported: after the root node, before it, and after an
+        // escape char
+        byte[][] inputs = {
+            { '[', 'a', ' ', 'b', ']', (byte) 0xFF },
+            { '[', 'a', ' ', 'b', ']', ' ', (byte) 0xC3, (byte) 0x28 },
+            { (byte) 0xFF, '[', 'a', ']' },
+            { '[', 'a', ' ', '\\', (byte) 0xE2, (byte) 0x82, ']' } };
+        CorePdmlParser parser = new CorePdmlParser();
+        Path file = dir.resolve ( "test.pdml" );
+
+        for ( byte[] input : inputs ) {
+            Files.write ( file, input );
+            assertThrows ( MalformedInputException.class, () -> parser.parse ( file ) );
+            assertThrows ( MalformedInputException.class, () -> parser.parse ( new ByteArrayInputStream ( input ) ) );
+            assertThrows ( MalformedInputException.class, () -> parser.validate ( file ) );
+            assertThrows ( MalformedInputException.class, () -> parser.parseRecovering ( file, 10 ) );
+        }
+
+        // the recovering parser skips an invalid node
+        Files.write ( file, new byte[] { '[', 'a', ' ', '[', ' ', (byte) 0xFF, ']', ']' } );
+        assertThrows ( MalformedInputException.class, () -> parser.parseRecovering ( file, 10 ) );
+    }
+
+    @Test
+    void parseFile ( @TempDir Path dir ) throws IOException, InvalidPdmlException {
+
+        String code = "[config\n    [color light green]\n    [size 10]\n]";
+        Path file = dir.resolve ( "test.pdml" );
+        Files.writeString ( file, code );
+        TaggedNode expected = new CorePdmlParser().parse ( code );
+        assertEquals ( expected, new CorePdmlParser().parse ( file ) );
+
+        // small files are read, larger files are mapped
+        String largeCode = "[list" + "\n    [item foo]".repeat ( CorePdmlMappedReader.MAX_READ_FILE_SIZE / 10 ) + "\n]";
+        Files.writeString ( file, largeCode );
+        assertTrue ( Files.size ( file ) > CorePdmlMappedReader.MAX_READ_FILE_SIZE );
+        assertEquals ( new CorePdmlParser().parse ( largeCode ), new CorePdmlParser().parse ( file ) );
+
+        Files.write ( file, new byte[] { '[', 'a', ' ', (byte) 0xFF, ']' } );
+        assertThrows ( IOException.class, () -> new CorePdmlParser().parse ( file ) );
+
+        // a sparse file larger than a mapping can be
+        try ( RandomAccessFile largeFile = new RandomAccessFile ( file.toFile(), "rw" ) ) {
+            largeFile.setLength ( Integer.MAX_VALUE + 1L );
+        }
+        IOException e = assertThrows ( IOException.class, () -> CorePdmlMappedReader.open ( file ) );
+        assertTrue ( e.getMessage().endsWith ( "is too large to be memory-mapped." ) );
+    }
+
+
+    // Helpers
+
+    private CorePdmlMappedReader mappedReader ( String code ) {
+        return new CorePdmlMappedReader ( ByteBuffer.wrap ( code.getBytes ( StandardCharsets.UTF_8 ) ) );
+    }
+
+    private void expectSameError ( String code ) {
+
+        InvalidPdmlException charError = assertThrows (
+            InvalidPdmlException.class, () -> new CorePdmlParser().parse ( code ) );
+        InvalidPdmlException byteError = assertThrows (
+            InvalidPdmlException.class, () -> new CorePdmlParser().parse ( mappedReader ( code ) ) );
+
+        assertEquals ( charError.getMessage(), byteError.getMessage() );
+        assertEquals ( charError.getLineNumber(), byteError.getLineNumber() );
+        assertEquals ( charError.getColumnNumber(), byteError.getColumnNumber() );
+    }
+}
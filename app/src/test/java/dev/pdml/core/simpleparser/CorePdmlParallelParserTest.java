@@ -0,0 +1,121 @@
+package dev.pdml.core.simpleparser;
+
+import dev.pdml.core.simpleparser.data.TaggedNode;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CorePdmlParallelParserTest {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool ( 4 );
+    private static final CorePdmlParallelParser PARSER = new CorePdmlParallelParser ( POOL, 16 );
+
+    @AfterAll
+    static void shutdown() { POOL.shutdown(); }
+
+    @Test
+    void sameResultsAsParser() throws InvalidPdmlException {
+
+        StringBuilder sb = new StringBuilder ( "\n[root\n" );
+        for ( int i = 0; i < 200; i++ ) {
+            sb.append ( "    [item [id " ).append ( i ).append ( "][name \\[คุณภาพ\\] ]]\n" );
+            if ( i % 7 == 0 ) sb.append ( "    text \\\\ " ).append ( i ).append ( '\n' );
+        }
+        sb.append ( "]\n" );
+        String code = sb.toString();
+
+        TaggedNode expected = new CorePdmlParser().parse ( code );
+        TaggedNode rootNode = PARSER.parse ( code );
+        assertEquals ( expected, rootNode );
+
+        // tags are shared by the chunks
+        TaggedNode first = (TaggedNode) rootNode.childNodes().get ( 1 );
+        TaggedNode last = (TaggedNode) rootNode.childNodes().get ( rootNode.childNodes().size() - 2 );
+        assertSame ( first.tag(), last.tag() );
+        assertEquals ( first.tagId(), last.tagId() );
+
+        // small documents are parsed sequentially
+        assertEquals ( new CorePdmlParser().parse ( "[root [a b]]" ), PARSER.parse ( "[root [a b]]" ) );
+    }
+
+    @Test
+    void sameErrorsAsParser() {
+
+        String items = "[item [id 1][name foo]]\n".repeat ( 20 );
+
+        // an error in a chunk
+        expectSameError ( "[root\n" + items + "[item [id\u0001]]\n" + items + "[item ]\n" + items + "]" );
+        expectSameError ( "[root\n" + items + "[item [id \\x]]\n" + items + "]" );
+        // text after the root node
+        expectSameError ( "[root\n" + items + "]\n  text" );
+        // root node not closed, or no root node
+        expectSameError ( "[root\n" + items + "[item" );
+        expectSameError ( "root\n" + items );
+        expectSameError ( "[root]" + items );
+    }
+
+    @Test
+    void parseFile ( @TempDir Path tempDir ) throws IOException, InvalidPdmlException {
+
+        String code = "[root\n" + "[item [name คุณภาพ]]\n".repeat ( 50 ) + "]";
+        Path file = tempDir.resolve ( "test.pdml" );
+        Files.writeString ( file, code, StandardCharsets.UTF_8 );
+        assertEquals ( new CorePdmlParser().parse ( code ), PARSER.parse ( file ) );
+
+        Files.writeString ( file, code.replace ( "[name คุณภาพ]]\n[item", "[name คุณภาพ]]\n[item\u0085" ), StandardCharsets.UTF_8 );
+        InvalidPdmlException error = assertThrows ( InvalidPdmlException.class, () -> PARSER.parse ( file ) );
+        assertEquals ( 3, error.getLineNumber() );
+        assertEquals ( 6, error.getColumnNumber() );
+    }
+
+    @Test
+    void parseFileInRegions ( @TempDir Path tempDir ) throws IOException, InvalidPdmlException {
+
+        // files of 128 bytes or more are mapped in regions of 64 bytes
+        CorePdmlParallelParser parser = new CorePdmlParallelParser ( POOL, 16, 6 );
+        Path file = tempDir.resolve ( "test.pdml" );
+
+        String code = "[root\n" + "[item [name คุณภาพ]]\n".repeat ( 50 ) + "]";
+        Files.writeString ( file, code, StandardCharsets.UTF_8 );
+        assertEquals ( new CorePdmlParser().parse ( code ), parser.parse ( file ) );
+
+        // a child node larger than a buffer is parsed sequentially
+        String largeChild = "[root [item [name คุณภาพ]]\n[text " + "x".repeat ( 200 ) + "]\n[item]]";
+        Files.writeString ( file, largeChild, StandardCharsets.UTF_8 );
+        assertEquals ( new CorePdmlParser().parse ( largeChild ), parser.parse ( file ) );
+
+        // errors in a chunk, or after the root node
+        String items = "[item [name คุณภาพ]]\n".repeat ( 20 );
+        for ( String invalidCode : new String[] {
+            code.replace ( "[name คุณภาพ]]\n[item", "[name คุณภาพ]]\n[item\u0085" ),
+            "[root\n" + items + "[item [name คุณภาพ \\x]]\n" + items + "]",
+            "[root\n" + items + "]\n  text",
+            "[root\n" + items + "[item" } ) {
+
+            Files.writeString ( file, invalidCode, StandardCharsets.UTF_8 );
+            InvalidPdmlException expected = assertThrows (
+                InvalidPdmlException.class, () -> new CorePdmlParser().parse ( invalidCode ) );
+            InvalidPdmlException error = assertThrows ( InvalidPdmlException.class, () -> parser.parse ( file ) );
+            assertEquals ( expected.getMessage(), error.getMessage() );
+            assertEquals ( expected.getLineNumber(), error.getLineNumber() );
+            assertEquals ( expected.getColumnNumber(), error.getColumnNumber() );
+        }
+    }
+
+    private static void expectSameError ( String code ) {
+
+        InvalidPdmlException expected = assertThrows ( InvalidPdmlException.class, () -> new CorePdmlParser().parse ( code ) );
+        InvalidPdmlException error = assertThrows ( InvalidPdmlException.class, () -> PARSER.parse ( code ) );
+        assertEquals ( expected.getMessage(), error.getMessage() );
+        assertEquals ( expected.getLineNumber(), error.getLineNumber() );
+        assertEquals ( expected.getColumnNumber(), error.getColumnNumber() );
+    }
+}
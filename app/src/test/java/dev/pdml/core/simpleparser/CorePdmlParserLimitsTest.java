@@ -0,0 +1,177 @@
+package dev.pdml.core.simpleparser;
+
+import dev.pdml.core.simpleparser.data.TaggedNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CorePdmlParserLimitsTest {
+
+    @Test
+    void deepNesting() throws InvalidPdmlException {
+
+        int depth = 100_000;
+        String code = "[a ".repeat ( depth - 1 ) + "[b]" + "]".repeat ( depth - 1 );
+
+        TaggedNode node = new CorePdmlParser().parse ( code );
+        for ( int i = 1; i < depth; i++ ) {
+            assertEquals ( "a", node.tag() );
+            node = (TaggedNode) node.childNodes().get ( 0 );
+        }
+        assertEquals ( "b", node.tag() );
+
+        CorePdmlParser parser = new CorePdmlParser ( CorePdmlParserLimits.NONE.withMaxDepth ( 100 ) );
+        assertEquals ( "a", parser.parse ( "[a ".repeat ( 99 ) + "[b]" + "]".repeat ( 99 ) ).tag() );
+        InvalidPdmlException error = assertThrows ( InvalidPdmlException.class, () -> parser.parse ( code ) );
+        assertEquals ( "Maximum depth (100) exceeded", error.getMessage() );
+        assertEquals ( 1, error.getLineNumber() );
+        assertEquals ( 302, error.getColumnNumber() );
+    }
+
+    @Test
+    void nodesAndTexts() throws InvalidPdmlException {
+
+        CorePdmlParser parser = new CorePdmlParser ( CorePdmlParserLimits.NONE.withMaxNodes ( 4 ).withMaxTextLength ( 5 ) );
+        parser.parse ( "[root [a 12345][b]]" );
+        parser.parseLazy ( "[root [a 1234\\]][b]]" );
+
+        expectError ( parser, "[root [a 1][b][c]]", "Maximum number of nodes (4) exceeded" );
+        expectError ( parser, "[root [a 123456]]", "Maximum text length (5) exceeded" );
+        InvalidPdmlException error = assertThrows (
+            InvalidPdmlException.class, () -> parser.parseLazy ( "[root [a 1234\\]\\]]]" ) );
+        assertEquals ( "Maximum text length (5) exceeded", error.getMessage() );
+    }
+
+    @Test
+    void inputSize() throws IOException, InvalidPdmlException {
+
+        CorePdmlParser parser = new CorePdmlParser ( CorePdmlParserLimits.NONE.withMaxInputSize ( 20 ) );
+        String code = "[root [a 1]\n [b 2]]";
+        assertEquals ( new CorePdmlParser().parse ( code ), parser.parse ( code ) );
+        assertEquals ( new CorePdmlParser().parse ( code ), parser.parse ( new StringReader ( code ) ) );
+
+        expectError ( parser, code + "   ", "Maximum input size (20) exceeded" );
+
+        // a stream is not read beyond the limit
+        Reader endlessText = new Reader() {
+            private int count = 0;
+
+            @Override
+            public int read ( char[] buffer, int offset, int length ) {
+
+                for ( int i = 0; i < length; i++ ) {
+                    buffer[offset + i] = count++ < 6 ? "[root ".charAt ( count - 1 ) : 'x';
+                }
+                return length;
+            }
+
+            @Override
+            public void close() {}
+        };
+        InvalidPdmlException error = assertThrows ( InvalidPdmlException.class, () -> parser.parse ( endlessText ) );
+        assertEquals ( "Maximum input size (20) exceeded", error.getMessage() );
+        assertEquals ( 22, error.getColumnNumber() );
+
+        // the input is cut inside a text
+        error = assertThrows (
+            InvalidPdmlException.class, () -> parser.parse ( new StringReader ( "[root [a 1]\n [b 22222]]" ) ) );
+        assertEquals ( "Maximum input size (20) exceeded", error.getMessage() );
+
+        // an error before the limit is reported as is
+        error = assertThrows ( InvalidPdmlException.class, () -> parser.parse ( new StringReader ( code + "\n[x" ) ) );
+        assertEquals ( "No more text expected", error.getMessage() );
+    }
+
+    @Test
+    void allParseMethods() {
+
+        CorePdmlParser parser = new CorePdmlParser ( CorePdmlParserLimits.NONE
+            .withMaxDepth ( 2 ).withMaxNodes ( 4 ).withMaxTagLength ( 4 ).withMaxTextLength ( 5 ).withMaxInputSize ( 30 ) );
+        String[][] codesAndMessages = {
+            { "[root [a [b]]]", "Maximum depth (2) exceeded" },
+            { "[root [abcde]]", "Maximum tag length (4) exceeded" },
+            { "[root [a 1][b][c]]", "Maximum number of nodes (4) exceeded" },
+            { "[root [a 123456]]", "Maximum text length (5) exceeded" },
+            { "[root [a 12345]]" + " ".repeat ( 20 ), "Maximum input size (30) exceeded" } };
+
+        for ( String[] codeAndMessage : codesAndMessages ) {
+            String code = codeAndMessage[0];
+            List<Executable> parseCalls = List.of (
+                () -> parser.parse ( code ),
+                () -> parser.parseLazy ( code ),
+                () -> parser.parse ( new StringReader ( code ) ),
+                () -> parser.parse ( new CorePdmlMappedReader ( ByteBuffer.wrap ( code.getBytes ( StandardCharsets.UTF_8 ) ) ) ),
+                () -> parser.parseImmutable ( code ),
+                () -> parser.parseWithPositions ( code ),
+                () -> parser.parseCompact ( code ),
+                // limits are not recovered from
+                () -> parser.parseRecovering ( code, 10 ) );
+            for ( Executable parseCall : parseCalls ) {
+                InvalidPdmlException error = assertThrows ( InvalidPdmlException.class, parseCall );
+                assertEquals ( codeAndMessage[1], error.getMessage() );
+            }
+        }
+    }
+
+    @Test
+    void tokenLengths() throws InvalidPdmlException {
+
+        CorePdmlParser parser = new CorePdmlParser ( CorePdmlParserLimits.NONE.withMaxTagLength ( 4 ).withMaxTextLength ( 4 ) );
+        // the lengths are in chars after unescaping, also when UTF-8 bytes are read ("\uD83D\uDE00" is 4 bytes)
+        String code = "[a\\]bc [c \uD83D\uDE00\\]é]]";
+        TaggedNode expected = new CorePdmlParser().parse ( code );
+        assertEquals ( expected, parser.parse ( code ) );
+        assertEquals ( expected, parser.parse ( new CorePdmlMappedReader ( ByteBuffer.wrap ( code.getBytes ( StandardCharsets.UTF_8 ) ) ) ) );
+
+        // the error is reported at the first char beyond the limit
+        for ( String tooLong : new String[] { "[root [abcde]]", "[root [a 12345]]", "[root [a 12\\]45]]", "[root [a 123\uD83D\uDE00]]" } ) {
+            InvalidPdmlException error = assertThrows ( InvalidPdmlException.class, () -> parser.parse ( tooLong ) );
+            InvalidPdmlException mappedError = assertThrows ( InvalidPdmlException.class,
+                () -> parser.parse ( new CorePdmlMappedReader ( ByteBuffer.wrap ( tooLong.getBytes ( StandardCharsets.UTF_8 ) ) ) ) );
+            assertEquals ( error.getMessage(), mappedError.getMessage() );
+            assertEquals ( error.getColumnNumber(), mappedError.getColumnNumber() );
+        }
+        InvalidPdmlException error = assertThrows ( InvalidPdmlException.class, () -> parser.parse ( "[root [abcde]]" ) );
+        assertEquals ( "Maximum tag length (4) exceeded", error.getMessage() );
+        assertEquals ( 12, error.getColumnNumber() );
+        error = assertThrows ( InvalidPdmlException.class, () -> parser.parse ( "[root [a 12\\]45]]" ) );
+        assertEquals ( "Maximum text length (4) exceeded", error.getMessage() );
+        assertEquals ( 15, error.getColumnNumber() );
+
+        // an endless text is rejected without reading it
+        int[] readCount = { 0 };
+        Reader endlessText = new Reader() {
+            @Override
+            public int read ( char[] buffer, int offset, int length ) {
+
+                for ( int i = 0; i < length; i++ ) {
+                    buffer[offset + i] = readCount[0] < 3 ? "[a ".charAt ( readCount[0] ) : 'x';
+                    readCount[0]++;
+                }
+                return length;
+            }
+
+            @Override
+            public void close() {}
+        };
+        error = assertThrows ( InvalidPdmlException.class,
+            () -> new CorePdmlParser ( CorePdmlParserLimits.NONE.withMaxTextLength ( 100_000 ) ).parse ( endlessText ) );
+        assertEquals ( "Maximum text length (100000) exceeded", error.getMessage() );
+        assertEquals ( 100_004, error.getColumnNumber() );
+        assertTrue ( readCount[0] < 100_000 + 2 * CorePdmlReader.DEFAULT_WINDOW_SIZE );
+    }
+
+    private static void expectError ( CorePdmlParser parser, String code, String message ) {
+
+        InvalidPdmlException error = assertThrows ( InvalidPdmlException.class, () -> parser.parse ( code ) );
+        assertEquals ( message, error.getMessage() );
+    }
+}
@@ -1,9 +1,21 @@
 package dev.pdml.core.simpleparser;
 
 import dev.pdml.core.simpleparser.data.TaggedNode;
+import dev.pdml.core.simpleparser.data.LazyTextLeaf;
 import dev.pdml.core.simpleparser.data.TextLeaf;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class CorePdmlParserTest {
@@ -47,6 +59,35 @@ class CorePdmlParserTest {
         assertThrows ( InvalidPdmlException.class, () -> PARSER.parse ( "[root[child]]" ) );
     }
 
+    @Test
+    public void testValidate() throws IOException, InvalidPdmlException {
+
+        PARSER.validate ( "[root]" );
+        PARSER.validate ( " [root [child foo bar][a\\sb \\[text\\n\\]]\n[c [d [e x]]] y\r\n] " );
+        PARSER.validate ( "[root [a [b x]" );
+        PARSER.validate ( new StringReader ( "[root [a \\[x]]" ) );
+
+        String[] invalidCodes = {
+            "", " a [root]", "[root", "[ root]", "[root ]", "[root[child]]", "[root] x", "[root [a ]]",
+            "[root [a [b\\q]]]", "[root [a [b x]\u0001]]", "[root [a [b x\\", "[root [a [b x]]]]", "[root [a b]\n[c]]x]",
+        };
+        for ( String code : invalidCodes ) {
+            InvalidPdmlException parseError = assertThrows ( InvalidPdmlException.class, () -> PARSER.parse ( code ), code );
+            InvalidPdmlException validateError = assertThrows ( InvalidPdmlException.class, () -> PARSER.validate ( code ), code );
+            assertEquals ( parseError.toString(), validateError.toString(), code );
+            validateError = assertThrows (
+                InvalidPdmlException.class,
+                () -> PARSER.validate ( new CorePdmlMappedReader ( ByteBuffer.wrap ( code.getBytes ( StandardCharsets.UTF_8 ) ) ) ),
+                code );
+            assertEquals ( parseError.toString(), validateError.toString(), code );
+        }
+
+        CorePdmlParser limitedParser = new CorePdmlParser ( CorePdmlParserLimits.NONE.withMaxInputSize ( 10 ) );
+        InvalidPdmlException e = assertThrows (
+            InvalidPdmlException.class, () -> limitedParser.validate ( new StringReader ( "[root [child]]" ) ) );
+        assertEquals ( "Maximum input size (10) exceeded", e.getMessage() );
+    }
+
     @Test
     public void testSeparator() throws InvalidPdmlException {
 
@@ -66,6 +107,144 @@ class CorePdmlParserTest {
         assertThrows ( InvalidPdmlException.class, () -> new CorePdmlParser().parse ( "[b[i huge]]" ) );
     }
 
+    @Test
+    public void testStreams() throws IOException, InvalidPdmlException {
+
+        String code = "[root\n    [child foo bar]\n    [text \\[\\] คุณภาพ]\n]";
+        TaggedNode expected = PARSER.parse ( code );
+        byte[] bytes = code.getBytes ( StandardCharsets.UTF_8 );
+
+        assertEquals ( expected, PARSER.parse ( new StringReader ( code ) ) );
+        assertEquals ( expected, PARSER.parse ( new ByteArrayInputStream ( bytes ) ) );
+        assertEquals ( expected, PARSER.parse ( Channels.newChannel ( new ByteArrayInputStream ( bytes ) ) ) );
+
+        InvalidPdmlException error = assertThrows (
+            InvalidPdmlException.class, () -> PARSER.parse ( new StringReader ( "[root\n  [child\n]\n]" ) ) );
+        assertEquals ( 3, error.getLineNumber() );
+        assertEquals ( 2, error.getColumnNumber() );
+
+        // Invalid UTF-8
+        assertThrows ( IOException.class, () -> PARSER.parse (
+            new ByteArrayInputStream ( new byte[] { '[', 'a', ' ', (byte) 0xC3, (byte) 0x28, ']' } ) ) );
+    }
+
+    @Test
+    public void testLazyText() throws InvalidPdmlException {
+
+        String code = "[root\n    [child foo bar]\n    [text \\[\\] คุณภาพ]\n]";
+        TaggedNode rootNode = PARSER.parseLazy ( code );
+        assertEquals ( PARSER.parse ( code ), rootNode );
+
+        LazyTextLeaf textLeaf = (LazyTextLeaf) ( (TaggedNode) rootNode.childNodes().get ( 1 ) ).childNodes().get ( 0 );
+        assertFalse ( textLeaf.hasEscapes() );
+        assertEquals ( "foo bar", textLeaf.textView().toString() );
+        assertEquals ( "foo bar", textLeaf.text() );
+
+        textLeaf = (LazyTextLeaf) ( (TaggedNode) rootNode.childNodes().get ( 3 ) ).childNodes().get ( 0 );
+        assertTrue ( textLeaf.hasEscapes() );
+        assertEquals ( "[] คุณภาพ", textLeaf.text() );
+        assertEquals ( new TextLeaf ( "[] คุณภาพ" ), textLeaf );
+
+        // a text longer than the reader's window
+        String longText = "abc\\\\".repeat ( 5000 );
+        rootNode = PARSER.parseLazy ( "[root " + longText + "]" );
+        assertEquals ( "abc\\".repeat ( 5000 ), ( (LazyTextLeaf) rootNode.childNodes().get ( 0 ) ).text() );
+
+        assertThrows ( InvalidPdmlException.class, () -> PARSER.parseLazy ( "[root \\x]" ) );
+    }
+
+    @Test
+    public void testParseListener() throws InvalidPdmlException {
+
+        List<CorePdmlParseMetrics> reported = new ArrayList<>();
+        CorePdmlParser parser = new CorePdmlParser().withParseListener ( reported::add );
+
+        String code = "[root [a foo][b \\[x\\]][c [d]]]";
+        assertEquals ( PARSER.parse ( code ), parser.parse ( code ) );
+        CorePdmlParseMetrics metrics = reported.get ( 0 );
+        assertTrue ( metrics.isValid() );
+        assertEquals ( -1, metrics.bytesProcessed() );
+        assertEquals ( code.length(), metrics.charsProcessed() );
+        assertEquals ( 5, metrics.taggedNodeCount() );
+        assertEquals ( 2, metrics.textLeafCount() );
+        assertEquals ( 6, metrics.textLength() );
+        assertEquals ( 3, metrics.maxDepth() );
+        assertEquals ( 2, metrics.escapeSequenceCount() );
+        assertTrue ( metrics.readNanos() >= 0 && metrics.readNanos() <= metrics.totalNanos() );
+        assertTrue ( metrics.estimatedAllocatedBytes() > 0 );
+
+        // invalid documents are reported too
+        assertThrows ( InvalidPdmlException.class, () -> parser.parse ( "[root [a foo][b \\q]]" ) );
+        assertEquals ( 2, reported.size() );
+        assertFalse ( reported.get ( 1 ).isValid() );
+        assertEquals ( 3, reported.get ( 1 ).taggedNodeCount() );
+
+        // the listener is not inherited by parsers created without it
+        parser.withParseListener ( null ).parse ( code );
+        assertEquals ( 2, reported.size() );
+    }
+
+    @Test
+    public void testParseRecovering() throws IOException, InvalidPdmlException {
+
+        String code = "[root\n  [a \\x text]\n  [ bad]\n  [b ok]\n  [c\u0001 more]\n  [d ]\n]";
+        CorePdmlRecoveryResult result = PARSER.parseRecovering ( code, 10 );
+        assertFalse ( result.isValid() );
+        assertTrue ( result.isComplete() );
+        assertEquals ( 4, result.errors().size() );
+        assertEquals ( "Error at line 2, column 7: Invalid character escape sequence \"\\x\"", result.errors().get ( 0 ).toString() );
+        assertEquals ( "Error at line 3, column 4: Node tag required", result.errors().get ( 1 ).toString() );
+        assertTrue ( result.errors().get ( 2 ).toString().startsWith ( "Error at line 5, column 5: Unicode code points below U+001F" ) );
+        assertEquals ( "Error at line 6, column 7: Child nodes required", result.errors().get ( 3 ).toString() );
+
+        // the first error is the one reported by parse()
+        InvalidPdmlException e = assertThrows ( InvalidPdmlException.class, () -> PARSER.parse ( code ) );
+        assertEquals ( e.toString(), result.errors().get ( 0 ).toString() );
+
+        // the valid nodes are kept
+        List<String> tags = result.rootNode().childNodes().stream()
+            .filter ( node -> node instanceof TaggedNode )
+            .map ( node -> ( (TaggedNode) node ).tag() )
+            .toList();
+        assertEquals ( List.of ( "a", "b", "d" ), tags );
+        assertEquals ( PARSER.parse ( "[b ok]" ), result.rootNode().childNodes().stream()
+            .filter ( node -> node instanceof TaggedNode taggedNode && taggedNode.tag().equals ( "b" ) )
+            .findFirst().orElseThrow() );
+
+        // the same errors are found in a file
+        Path file = Files.createTempFile ( "recovering", ".pdml" );
+        try {
+            Files.writeString ( file, code );
+            assertEquals ( result.toString(), PARSER.parseRecovering ( file, 10 ).toString() );
+        } finally {
+            Files.delete ( file );
+        }
+
+        // parsing stops at the maximum number of errors
+        result = PARSER.parseRecovering ( code, 2 );
+        assertEquals ( 2, result.errors().size() );
+        assertFalse ( result.isComplete() );
+
+        result = PARSER.parseRecovering ( "[root [a 1][b 2]]", 1 );
+        assertTrue ( result.isValid() );
+        assertEquals ( PARSER.parse ( "[root [a 1][b 2]]" ), result.rootNode() );
+
+        result = PARSER.parseRecovering ( "text [ ] [root x] more", 10 );
+        assertEquals ( "root", result.rootNode().tag() );
+        assertEquals ( 3, result.errors().size() );
+        assertEquals ( "No more text expected", result.errors().get ( 2 ).getMessage() );
+
+        result = PARSER.parseRecovering ( "no root", 10 );
+        assertNull ( result.rootNode() );
+        assertEquals ( "Root node expected (e.g. \"[root\")", result.errors().get ( 0 ).getMessage() );
+
+        // limits are not recovered from
+        e = assertThrows ( InvalidPdmlException.class,
+            () -> new CorePdmlParser ( CorePdmlParserLimits.NONE.withMaxDepth ( 1 ) ).parseRecovering ( "[a [b]]", 10 ) );
+        assertEquals ( "Maximum depth (1) exceeded", e.getMessage() );
+        assertThrows ( IllegalArgumentException.class, () -> PARSER.parseRecovering ( code, 0 ) );
+    }
+
     public void testKeyValue ( String code, String expectedTag, String expectedText ) throws InvalidPdmlException {
 
         TaggedNode rootNode = PARSER.parse ( code );
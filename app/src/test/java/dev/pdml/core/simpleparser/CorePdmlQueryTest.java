@@ -0,0 +1,149 @@
+package dev.pdml.core.simpleparser;
+
+import dev.pdml.core.simpleparser.data.TaggedNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CorePdmlQueryTest {
+
+    private static final String CODE = """
+        [shop
+            [name Corner \\[shop\\]]
+            [items
+                [item [name apple][price 1.20]]
+                [item [name pear][price 0.90][tags [tag fruit][tag green]]]
+                [item [name box [item [name inner][price 0.10]]][price 2.00]]
+            ]
+            [price total]
+        ]
+        """;
+
+    @Test
+    void select() throws InvalidPdmlException {
+
+        assertSelected ( "/shop", "shop" );
+        assertSelected ( "/shop/name", "name:Corner [shop]" );
+        assertSelected ( "/shop/items/item/name", "name:apple", "name:pear", "name" );
+        assertSelected ( "//price", "price:1.20", "price:0.90", "price:0.10", "price:2.00", "price:total" );
+        assertSelected ( "/shop/items//price", "price:1.20", "price:0.90", "price:0.10", "price:2.00" );
+        assertSelected ( "/shop/items/item[2]/name", "name:pear" );
+        assertSelected ( "//item[1]/name", "name:apple", "name:inner" );
+        assertSelected ( "/shop/items/item/*[3]", "tags" );
+        assertSelected ( "//tags/tag[2]", "tag:green" );
+        assertSelected ( "/*/*[2]/item[3]//item", "item" );
+        assertSelected ( "/items" );
+        assertSelected ( "/shop/items/item[4]" );
+        assertSelected ( "//tag/tag" );
+
+        // nested selected nodes are selected too, in document order
+        assertSelected ( "//item", "item", "item", "item", "item" );
+        List<TaggedNode> items = CorePdmlQuery.compile ( "//item" ).evaluate ( CODE );
+        assertSame ( items.get ( 3 ), ( (TaggedNode) items.get ( 2 ).childNodes().get ( 0 ) ).childNodes().get ( 1 ) );
+
+        TaggedNode rootNode = new CorePdmlParser().parse ( CODE );
+        assertEquals ( "[name pear]", toCode ( CorePdmlQuery.compile ( "//item/name[1]" ).select ( rootNode ).get ( 1 ) ) );
+        assertEquals ( "pear", text ( CorePdmlQuery.compile ( "//name" ).select ( rootNode ).get ( 2 ) ) );
+        assertNull ( CorePdmlQuery.compile ( "//missing" ).selectFirst ( rootNode ) );
+        assertEquals ( "1.20", text ( CorePdmlQuery.compile ( "//price" ).selectFirst ( rootNode ) ) );
+    }
+
+    @Test
+    void evaluateFile ( @TempDir Path tempDir ) throws IOException, InvalidPdmlException {
+
+        Path file = tempDir.resolve ( "shop.pdml" );
+        Files.writeString ( file, CODE, StandardCharsets.UTF_8 );
+        assertEquals ( "pear", text ( CorePdmlQuery.compile ( "//item[2]/name" ).evaluate ( file ).get ( 0 ) ) );
+
+        // reading stops after the first selected node
+        Files.writeString ( file, "[root [a 1][b [c \\q]]", StandardCharsets.UTF_8 );
+        assertEquals ( "1", text ( CorePdmlQuery.compile ( "//a" ).evaluateFirst ( file ) ) );
+        InvalidPdmlException e = assertThrows ( InvalidPdmlException.class,
+            () -> CorePdmlQuery.compile ( "//a" ).evaluate ( file ) );
+        assertEquals ( "Invalid character escape sequence \"\\q\"", e.getMessage() );
+    }
+
+    @Test
+    void errorsInSkippedNodes() {
+
+        // errors are reported like by the parser, also in skipped subtrees
+        String[] invalidCodes = {
+            "[root [a [b ]]]",
+            "[root [a [b x]]] x",
+            "[root [a [ x]]]",
+            "[root [a [b\\x]]]",
+            "[root [a [b x]\u0001]]",
+            "[root [a [b x\\",
+            "root",
+            "[root [a [b[c]]]]",
+        };
+        CorePdmlQuery query = CorePdmlQuery.compile ( "/root/z" );
+        for ( String code : invalidCodes ) {
+            InvalidPdmlException parserError =
+                assertThrows ( InvalidPdmlException.class, () -> new CorePdmlParser().parse ( code ), code );
+            InvalidPdmlException queryError = assertThrows ( InvalidPdmlException.class, () -> query.evaluate ( code ), code );
+            assertEquals ( parserError.getMessage(), queryError.getMessage(), code );
+            assertEquals ( parserError.getLineNumber(), queryError.getLineNumber(), code );
+            assertEquals ( parserError.getColumnNumber(), queryError.getColumnNumber(), code );
+        }
+    }
+
+    @Test
+    void invalidPaths() {
+
+        for ( String path : new String[] { "", "root", "/", "//", "/a/", "/a[", "/a[]", "/a[0]", "/a[x]", "/a]", "///a" } ) {
+            assertThrows ( IllegalArgumentException.class, () -> CorePdmlQuery.compile ( path ), path );
+        }
+        assertThrows ( IllegalArgumentException.class, () -> CorePdmlQuery.compile ( "/a".repeat ( 64 ) ) );
+    }
+
+    @Test
+    void maximumStepCount() throws InvalidPdmlException {
+
+        CorePdmlQuery query = CorePdmlQuery.compile ( "/a".repeat ( 63 ) );
+        String code62 = "[a ".repeat ( 61 ) + "[a x]" + "]".repeat ( 61 );
+        assertEquals ( List.of(), query.select ( new CorePdmlParser().parse ( code62 ) ) );
+        assertEquals ( List.of(), query.evaluate ( code62 ) );
+
+        String code63 = "[a ".repeat ( 62 ) + "[a x]" + "]".repeat ( 62 );
+        assertEquals ( List.of ( "a:x" ), describe ( query.select ( new CorePdmlParser().parse ( code63 ) ) ) );
+        assertEquals ( List.of ( "a:x" ), describe ( query.evaluate ( code63 ) ) );
+    }
+
+
+    private static void assertSelected ( String path, String... expected ) throws InvalidPdmlException {
+
+        CorePdmlQuery query = CorePdmlQuery.compile ( path );
+        List<String> selectedInTree = describe ( query.select ( new CorePdmlParser().parse ( CODE ) ) );
+        assertEquals ( List.of ( expected ), selectedInTree, path );
+        List<TaggedNode> streamed = new ArrayList<>();
+        query.evaluate ( new CorePdmlReader ( CODE ), streamed::add );
+        assertEquals ( selectedInTree, describe ( streamed ), path );
+    }
+
+    private static List<String> describe ( List<TaggedNode> nodes ) {
+
+        List<String> result = new ArrayList<>();
+        for ( TaggedNode node : nodes ) {
+            boolean hasText = node.childNodes().size() == 1 && ! ( node.childNodes().get ( 0 ) instanceof TaggedNode );
+            result.add ( hasText ? node.tag() + ":" + text ( node ) : node.tag() );
+        }
+        return result;
+    }
+
+    private static String text ( TaggedNode node ) {
+        return node.childNodes().get ( 0 ).toString();
+    }
+
+    private static String toCode ( TaggedNode node ) {
+        return CorePdmlWriter.toPdml ( node, false ).strip();
+    }
+}
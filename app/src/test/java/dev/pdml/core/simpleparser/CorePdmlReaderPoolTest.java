@@ -0,0 +1,66 @@
+package dev.pdml.core.simpleparser;
+
+import dev.pdml.core.simpleparser.data.TaggedNode;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CorePdmlReaderPoolTest {
+
+    @Test
+    void reuseReaders() throws InvalidPdmlException {
+
+        CorePdmlReaderPool pool = new CorePdmlReaderPool ( 2 );
+        CorePdmlReader reader = pool.acquire ( "[root\n[a b]]" );
+        assertTrue ( reader.readNodeStart() );
+        assertEquals ( "root", reader.readTag() );
+        pool.release ( reader );
+        assertEquals ( 1, pool.idleReaderCount() );
+
+        CorePdmlReader reusedReader = pool.acquire ( new StringReader ( "[x\\sy]" ) );
+        assertSame ( reader, reusedReader );
+        assertEquals ( 0, reusedReader.currentPosition() );
+        assertEquals ( 1, reusedReader.currentLineNumber() );
+        assertTrue ( reusedReader.readNodeStart() );
+        assertEquals ( "x y", reusedReader.readTag() );
+        pool.release ( reusedReader );
+
+        // at most 2 readers are kept
+        List<CorePdmlReader> readers = List.of ( pool.acquire ( "[a]" ), pool.acquire ( "[b]" ), pool.acquire ( "[c]" ) );
+        readers.forEach ( pool::release );
+        assertEquals ( 2, pool.idleReaderCount() );
+    }
+
+    @Test
+    void shareParser() throws Exception {
+
+        CorePdmlParser parser = new CorePdmlParser ( new CorePdmlTagTable(), new CorePdmlReaderPool ( 4 ) );
+        ExecutorService executor = Executors.newFixedThreadPool ( 4 );
+        try {
+            List<Future<TaggedNode>> results = new ArrayList<>();
+            for ( int i = 0; i < 200; i++ ) {
+                String code = "[root [id " + i + "]" + ( "[item \\[" + i + "\\]]" ).repeat ( i % 20 ) + "]";
+                results.add ( executor.submit ( () -> parser.parse ( code ) ) );
+            }
+            for ( int i = 0; i < 200; i++ ) {
+                TaggedNode rootNode = results.get ( i ).get();
+                assertEquals ( 1 + i % 20, rootNode.childNodes().size() );
+                TaggedNode idNode = (TaggedNode) rootNode.childNodes().get ( 0 );
+                assertEquals ( String.valueOf ( i ), idNode.childNodes().get ( 0 ).toString() );
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // errors don't break the pooled readers
+        assertThrows ( InvalidPdmlException.class, () -> parser.parse ( "[root [a" ) );
+        assertEquals ( "b", parser.parse ( "[b]" ).tag() );
+    }
+}
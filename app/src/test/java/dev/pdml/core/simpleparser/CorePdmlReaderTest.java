@@ -2,6 +2,12 @@ package dev.pdml.core.simpleparser;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class CorePdmlReaderTest {
@@ -34,6 +40,52 @@ class CorePdmlReaderTest {
         assertEquals ( 10, reader.currentColumnNumber() );
     }
 
+    @Test
+    void smallWindows() throws InvalidPdmlException {
+
+        for ( int windowSize = 1; windowSize <= 5; windowSize++ ) {
+            CorePdmlReader reader = new CorePdmlReader ( new StringReader ( "[root [child\nfoo\\sbar]]" ), windowSize );
+            assertTrue ( reader.readNodeStart() );
+            assertEquals ( "root", reader.readTag() );
+            assertTrue ( reader.readSeparator() );
+            assertTrue ( reader.readNodeStart() );
+            assertEquals ( "child", reader.readTag() );
+            assertTrue ( reader.readSeparator() );
+            assertEquals ( 13, reader.currentPosition() );
+            assertEquals ( 2, reader.currentLineNumber() );
+            assertEquals ( 1, reader.currentColumnNumber() );
+            assertEquals ( "foo bar", reader.readText() );
+            assertTrue ( reader.readNodeEnd() );
+            assertTrue ( reader.readNodeEnd() );
+            assertTrue ( reader.isAtEnd() );
+            assertEquals ( 23, reader.currentPosition() );
+            assertEquals ( 2, reader.currentLineNumber() );
+            assertEquals ( 11, reader.currentColumnNumber() );
+        }
+    }
+
+    @Test
+    void longTokens() throws InvalidPdmlException {
+
+        StringBuilder code = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for ( int i = 0; i < 1000; i++ ) {
+            code.append ( "line " ).append ( i ).append ( " \\[x\\]\n" );
+            expected.append ( "line " ).append ( i ).append ( " [x]\n" );
+        }
+        code.append ( "]" );
+
+        for ( CorePdmlReader reader : new CorePdmlReader[] {
+            new CorePdmlReader ( code.toString() ),
+            new CorePdmlReader ( new StringReader ( code.toString() ), 7 ) } ) {
+
+            assertEquals ( expected.toString(), reader.readText() );
+            assertEquals ( 1001, reader.currentLineNumber() );
+            assertEquals ( 1, reader.currentColumnNumber() );
+            assertTrue ( reader.readNodeEnd() );
+        }
+    }
+
     @Test
     void readTag() throws InvalidPdmlException {
 
@@ -108,6 +160,106 @@ class CorePdmlReaderTest {
         expectInvalidText ( "text\u009F]" );
     }
 
+    @Test
+    void skipRemainderOfNode() throws InvalidPdmlException {
+
+        CorePdmlReader reader = new CorePdmlReader ( "[root [a x \\] [b [c]\\[]\n[d] y] [e]]" );
+        assertTrue ( reader.readNodeStart() );
+        assertEquals ( "root", reader.readTag() );
+        assertTrue ( reader.readSeparator() );
+        assertTrue ( reader.readNodeStart() );
+        assertEquals ( "a", reader.readTag() );
+        assertTrue ( reader.readSeparator() );
+        reader.skipRemainderOfNode();
+        assertEquals ( " ", reader.readText() );
+        assertTrue ( reader.readNodeStart() );
+        assertEquals ( "e", reader.readTag() );
+        assertTrue ( reader.readNodeEnd() );
+        assertTrue ( reader.readNodeEnd() );
+        assertTrue ( reader.isAtEnd() );
+
+        // the end of the input ends the node
+        reader = new CorePdmlReader ( "[a [b x" );
+        reader.readNodeStart();
+        reader.readTag();
+        reader.readSeparator();
+        reader.skipRemainderOfNode();
+        assertTrue ( reader.isAtEnd() );
+
+        expectInvalidRemainder ( "[b ]]", "Child nodes required", 5 );
+        expectInvalidRemainder ( "[ x]]", "Node tag required", 2 );
+        expectInvalidRemainder ( "[b", "Separator required", 3 );
+        expectInvalidRemainder ( "x \\q]", "Invalid character escape sequence \"\\q\"", 4 );
+        expectInvalidRemainder ( "x \u0001]", "Unicode code points below U+001F (control characters) are not allowed, except U+0009 (Character Tabulation), U+000A (End of Line), U+000C (Form Feed), and U+000D (Carriage Return).", 3 );
+    }
+
+    @Test
+    void skipToNodeStartOrEnd() throws InvalidPdmlException {
+
+        String code = "\\q \u0001 \\] x]\\[\\[[a]\\";
+        byte[] bytes = code.getBytes ( StandardCharsets.UTF_8 );
+        for ( CorePdmlTokenReader reader : new CorePdmlTokenReader[] {
+            new CorePdmlReader ( code ), new CorePdmlReader ( new StringReader ( code ), 2 ),
+            new CorePdmlMappedReader ( ByteBuffer.wrap ( bytes ) ) } ) {
+
+            reader.skipToNodeStartOrEnd();
+            assertEquals ( 9, reader.currentPosition() );
+            assertTrue ( reader.readNodeEnd() );
+            reader.skipToNodeStartOrEnd();
+            assertTrue ( reader.readNodeStart() );
+            assertEquals ( "a", reader.readTag() );
+            reader.skipToNodeStartOrEnd();
+            assertTrue ( reader.readNodeEnd() );
+            // an escape char at the end
+            reader.skipToNodeStartOrEnd();
+            assertTrue ( reader.isAtEnd() );
+        }
+    }
+
+    @Test
+    void positionsBeyondIntRange() throws InvalidPdmlException {
+
+        // a newline, then 2^31 'x' chars and a node end char
+        long textLength = 1L << 31;
+        Reader source = new Reader() {
+            private long position = 0;
+
+            @Override
+            public int read ( char[] buffer, int offset, int length ) {
+
+                if ( position > textLength + 1 ) return -1;
+                int count = 0;
+                while ( count < length && position <= textLength + 1 ) {
+                    int n = (int) Math.min ( length - count, textLength + 1 - position );
+                    if ( position == 0 ) {
+                        buffer[offset + count++] = '\n';
+                        position++;
+                    } else if ( n > 0 ) {
+                        Arrays.fill ( buffer, offset + count, offset + count + n, 'x' );
+                        count += n;
+                        position += n;
+                    } else {
+                        buffer[offset + count++] = ']';
+                        position++;
+                    }
+                }
+                return count;
+            }
+
+            @Override
+            public void close() {}
+        };
+
+        CorePdmlReader reader = new CorePdmlReader ( source, 1 << 20 );
+        reader.skipToNodeStartOrEnd();
+        assertEquals ( textLength + 1, reader.currentPosition() );
+        assertEquals ( 2, reader.currentLineNumber() );
+        // the column number doesn't fit into an int
+        assertEquals ( Integer.MAX_VALUE, reader.currentColumnNumber() );
+        assertTrue ( reader.readNodeEnd() );
+        assertTrue ( reader.isAtEnd() );
+    }
+
 
     // Helpers
 
@@ -135,6 +287,19 @@ class CorePdmlReaderTest {
         assertThrows ( InvalidPdmlException.class, reader::readTag );
     }
 
+    private void expectInvalidRemainder ( String remainder, String expectedMessage, int expectedColumn )
+        throws InvalidPdmlException {
+
+        // the remainder is preceded by "[a " (3 chars)
+        CorePdmlReader reader = new CorePdmlReader ( "[a " + remainder );
+        assertTrue ( reader.readNodeStart() );
+        assertTrue ( reader.skipTag() );
+        assertTrue ( reader.readSeparator() );
+        InvalidPdmlException e = assertThrows ( InvalidPdmlException.class, reader::skipRemainderOfNode, remainder );
+        assertEquals ( expectedMessage, e.getMessage(), remainder );
+        assertEquals ( 3 + expectedColumn, e.getColumnNumber(), remainder );
+    }
+
     private void expectInvalidText ( String code ) {
 
         CorePdmlReader reader = new CorePdmlReader ( code );
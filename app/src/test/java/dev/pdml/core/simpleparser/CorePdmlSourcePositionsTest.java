@@ -0,0 +1,106 @@
+package dev.pdml.core.simpleparser;
+
+import dev.pdml.core.simpleparser.data.Node;
+import dev.pdml.core.simpleparser.data.TaggedNode;
+import dev.pdml.core.simpleparser.data.TextLeaf;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CorePdmlSourcePositionsTest {
+
+    private static final String CODE = "[config\r\n    [name PDML \\[core\\]]\n    [size [width 200][height 100]]\n]\n";
+
+    @Test
+    void nodePositions() throws InvalidPdmlException {
+
+        CorePdmlSourcePositions positions = new CorePdmlParser().parseWithPositions ( CODE );
+        TaggedNode rootNode = positions.rootNode();
+        assertEquals ( new CorePdmlParser().parse ( CODE ), rootNode );
+        assertEquals ( 11, positions.nodeCount() );
+
+        assertEquals ( 0, positions.startOffset ( rootNode ) );
+        assertEquals ( CODE.length() - 1, positions.endOffset ( rootNode ) );
+        TaggedNode nameNode = (TaggedNode) rootNode.childNodes().get ( 1 );
+        assertEquals ( "[name PDML \\[core\\]]", source ( CODE, positions, nameNode ) );
+        assertEquals ( "PDML \\[core\\]", source ( CODE, positions, nameNode.childNodes().get ( 0 ) ) );
+        assertEquals ( 2, positions.startLineNumber ( nameNode ) );
+        assertEquals ( 5, positions.startColumnNumber ( nameNode ) );
+
+        TaggedNode heightNode = (TaggedNode) ( (TaggedNode) rootNode.childNodes().get ( 3 ) ).childNodes().get ( 1 );
+        assertEquals ( "[height 100]", source ( CODE, positions, heightNode ) );
+        assertEquals ( 3, positions.startLineNumber ( heightNode ) );
+        assertEquals ( 22, positions.startColumnNumber ( heightNode ) );
+
+        // nodes are indexed in document order, and looked up by identity
+        assertEquals ( 0, positions.nodeIndex ( rootNode ) );
+        assertEquals ( 2, positions.nodeIndex ( nameNode ) );
+        assertEquals ( CorePdmlSourcePositions.NO_NODE, positions.nodeIndex ( new TextLeaf ( "PDML [core]" ) ) );
+        assertThrows ( IllegalArgumentException.class, () -> positions.startOffset ( new TaggedNode ( "name" ) ) );
+
+        // nodes ended by the end of the code
+        CorePdmlSourcePositions unclosed = new CorePdmlParser().parseWithPositions ( "  [a [b x" );
+        assertEquals ( 2, unclosed.startOffset ( 0 ) );
+        assertEquals ( 9, unclosed.endOffset ( 0 ) );
+        assertEquals ( "[b x", source ( "  [a [b x", unclosed, unclosed.rootNode().childNodes().get ( 0 ) ) );
+    }
+
+    @Test
+    void lineIndex() throws IOException, InvalidPdmlException {
+
+        CorePdmlLineIndex lineIndex = CorePdmlLineIndex.of ( CODE );
+        assertEquals ( 5, lineIndex.lineCount() );
+        assertEquals ( 9, lineIndex.lineStart ( 2 ) );
+        assertEquals ( 1, lineIndex.lineNumber ( 0 ) );
+        assertEquals ( 1, lineIndex.lineNumber ( 8 ) );
+        assertEquals ( 2, lineIndex.lineNumber ( 9 ) );
+        assertEquals ( 1, lineIndex.columnNumber ( 9 ) );
+        assertEquals ( 5, lineIndex.lineNumber ( CODE.length() ) );
+        assertThrows ( IndexOutOfBoundsException.class, () -> lineIndex.lineStart ( 6 ) );
+        assertThrows ( IndexOutOfBoundsException.class, () -> lineIndex.lineNumber ( -1 ) );
+
+        // read from a Reader with a window smaller than the lines
+        CorePdmlReader reader = new CorePdmlReader ( new StringReader ( CODE ), 4 );
+        reader.recordLineStarts();
+        while ( reader.readText() != null || reader.readNodeStart() || reader.readNodeEnd() || reader.readTag() != null ) {
+            reader.skipWhitespace();
+        }
+        assertTrue ( reader.isAtEnd() );
+        CorePdmlLineIndex readLineIndex = reader.lineIndex();
+        assertEquals ( lineIndex.lineCount(), readLineIndex.lineCount() );
+        for ( int line = 1; line <= lineIndex.lineCount(); line++ ) {
+            assertEquals ( lineIndex.lineStart ( line ), readLineIndex.lineStart ( line ) );
+        }
+        assertThrows ( IllegalStateException.class, reader::recordLineStarts );
+        assertThrows ( IllegalStateException.class, () -> new CorePdmlReader ( CODE ).lineIndex() );
+
+        CorePdmlSourcePositions positions = new CorePdmlParser().parseWithPositions ( new StringReader ( CODE ) );
+        assertEquals ( new CorePdmlParser().parse ( CODE ), positions.rootNode() );
+        assertEquals ( lineIndex.lineCount(), positions.lineIndex().lineCount() );
+        assertEquals ( CODE.length() - 1, positions.endOffset ( 0 ) );
+    }
+
+    @Test
+    void errorsAndLimits() {
+
+        InvalidPdmlException e = assertThrows ( InvalidPdmlException.class,
+            () -> new CorePdmlParser().parseWithPositions ( "[a\n  [b \\x]]" ) );
+        assertEquals ( "Error at line 2, column 7: Invalid character escape sequence \"\\x\"", e.toString() );
+
+        CorePdmlParser limitedParser = new CorePdmlParser ( CorePdmlParserLimits.NONE.withMaxDepth ( 2 ) );
+        e = assertThrows ( InvalidPdmlException.class, () -> limitedParser.parseWithPositions ( "[a [b [c]]]" ) );
+        assertEquals ( "Maximum depth (2) exceeded", e.getMessage() );
+        CorePdmlParser sizeLimitedParser = new CorePdmlParser ( CorePdmlParserLimits.NONE.withMaxInputSize ( 8 ) );
+        e = assertThrows ( InvalidPdmlException.class,
+            () -> sizeLimitedParser.parseWithPositions ( new StringReader ( "[a [b c][d e]]" ) ) );
+        assertEquals ( "Maximum input size (8) exceeded", e.getMessage() );
+    }
+
+
+    private static String source ( String code, CorePdmlSourcePositions positions, Node node ) {
+        return code.substring ( positions.startOffset ( node ), positions.endOffset ( node ) );
+    }
+}
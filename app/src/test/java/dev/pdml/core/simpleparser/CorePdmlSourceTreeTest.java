@@ -0,0 +1,178 @@
+package dev.pdml.core.simpleparser;
+
+import dev.pdml.core.simpleparser.data.Node;
+import dev.pdml.core.simpleparser.data.TaggedNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CorePdmlSourceTreeTest {
+
+    private static final String CODE = """
+        [doc
+            [title Incremental \\[parsing\\]]
+            [section
+                [p first]
+                [p second [b bold] text]
+            ]
+            [section [p third]]
+        ]
+        """;
+
+    @Test
+    void sourceRanges() throws InvalidPdmlException {
+
+        CorePdmlSourceTree tree = CorePdmlSourceTree.parse ( CODE );
+        assertEquals ( new CorePdmlParser().parse ( CODE ), tree.rootNode() );
+        assertEquals ( CODE.length(), tree.reparsedLength() );
+
+        assertEquals ( 0, tree.nodeStart() );
+        assertEquals ( CODE.length() - 1, tree.nodeEnd() );
+        assertEquals ( "[title Incremental \\[parsing\\]]", range ( tree, 1 ) );
+        assertEquals ( "Incremental \\[parsing\\]", range ( tree, 1, 0 ) );
+        assertEquals ( "[p second [b bold] text]", range ( tree, 3, 3 ) );
+        assertEquals ( "[b bold]", range ( tree, 3, 3, 1 ) );
+        assertEquals ( " text", range ( tree, 3, 3, 2 ) );
+
+        int offset = CODE.indexOf ( "bold" );
+        assertArrayEquals ( new int[] { 3, 3, 1, 0 }, tree.pathAt ( offset ) );
+        assertArrayEquals ( new int[] { 3, 3, 1 }, tree.pathAt ( offset - 1 ) );
+        assertArrayEquals ( new int[] {}, tree.pathAt ( 1 ) );
+        assertNull ( tree.pathAt ( CODE.length() - 1 ) );
+
+        assertThrows ( IllegalArgumentException.class, () -> tree.nodeStart ( 1, 0, 0 ) );
+        assertThrows ( IndexOutOfBoundsException.class, () -> tree.nodeStart ( 9 ) );
+
+        // nodes ended by the end of the code
+        CorePdmlSourceTree unclosedTree = CorePdmlSourceTree.parse ( "  [a [b x" );
+        assertEquals ( "[a [b x", unclosedTree.code().substring ( unclosedTree.nodeStart(), unclosedTree.nodeEnd() ) );
+        assertEquals ( "[b x", range ( unclosedTree, 0 ) );
+    }
+
+    @Test
+    void reparseOnlyEditedNode() throws InvalidPdmlException {
+
+        CorePdmlSourceTree tree = CorePdmlSourceTree.parse ( CODE );
+        int offset = CODE.indexOf ( "bold" );
+        CorePdmlSourceTree newTree = tree.withEdit ( offset, 4, "strong" );
+
+        assertEquals ( CODE.replace ( "bold", "strong" ), newTree.code() );
+        assertEquals ( new CorePdmlParser().parse ( newTree.code() ), newTree.rootNode() );
+        assertEquals ( "[b strong]".length(), newTree.reparsedLength() );
+        assertEquals ( "[section [p third]]", range ( newTree, 5 ) );
+
+        // untouched subtrees are reused, and the previous tree is unchanged
+        assertSame ( child ( tree.rootNode(), 1 ), child ( newTree.rootNode(), 1 ) );
+        assertSame ( child ( tree.rootNode(), 5 ), child ( newTree.rootNode(), 5 ) );
+        assertSame ( child ( child ( tree.rootNode(), 3 ), 1 ), child ( child ( newTree.rootNode(), 3 ), 1 ) );
+        assertEquals ( new CorePdmlParser().parse ( CODE ), tree.rootNode() );
+
+        // an edit that changes the structure outside of the innermost node reparses the whole code
+        offset = CODE.indexOf ( "[p third]" );
+        newTree = tree.withEdit ( offset + 8, 1, "" );
+        assertEquals ( newTree.code().length(), newTree.reparsedLength() );
+        assertEquals ( new CorePdmlParser().parse ( newTree.code() ), newTree.rootNode() );
+
+        InvalidPdmlException e = assertThrows ( InvalidPdmlException.class, () -> tree.withEdit ( 1, 3, "" ) );
+        assertEquals ( "Node tag required", e.getMessage() );
+        assertThrows ( IndexOutOfBoundsException.class, () -> tree.withEdit ( CODE.length(), 1, "" ) );
+    }
+
+    @Test
+    void randomEditsGiveTheSameTreeAsTheParser() throws InvalidPdmlException {
+
+        Random random = new Random ( 42 );
+        String[] insertions = { "", "x", " ", "\n", "[", "]", "\\", "\\[", "[a ", "[b]", "[c d]", "y z" };
+        CorePdmlParser parser = new CorePdmlParser();
+        CorePdmlSourceTree tree = CorePdmlSourceTree.parse ( CODE );
+
+        for ( int i = 0; i < 2000; i++ ) {
+            CorePdmlSourceTree currentTree = tree;
+            String code = tree.code();
+            int offset = random.nextInt ( code.length() + 1 );
+            int deletedLength = Math.min ( random.nextInt ( 3 ), code.length() - offset );
+            String insertedText = insertions[random.nextInt ( insertions.length )];
+            String newCode = code.substring ( 0, offset ) + insertedText + code.substring ( offset + deletedLength );
+
+            TaggedNode expected;
+            try {
+                expected = parser.parse ( newCode );
+            } catch ( InvalidPdmlException expectedError ) {
+                InvalidPdmlException error = assertThrows ( InvalidPdmlException.class,
+                    () -> currentTree.withEdit ( offset, deletedLength, insertedText ) );
+                assertEquals ( expectedError.toString(), error.toString(), newCode );
+                continue;
+            }
+
+            CorePdmlSourceTree newTree = tree.withEdit ( offset, deletedLength, insertedText );
+            assertEquals ( expected, newTree.rootNode(), newCode );
+            assertSameRanges ( CorePdmlSourceTree.parse ( newCode ), newTree, newTree.rootNode(), new int[0] );
+            // keep the document small and valid
+            tree = newTree.code().length() > 2 * CODE.length() ? CorePdmlSourceTree.parse ( CODE ) : newTree;
+        }
+    }
+
+    @Test
+    void editsInAWideNode() throws InvalidPdmlException {
+
+        // enough children for two levels of chunks
+        StringBuilder sb = new StringBuilder ( "[root\n" );
+        for ( int i = 0; i < 1500; i++ ) {
+            sb.append ( i % 3 == 0 ? "[item [id " + i + "]]" : "text " + i ).append ( '\n' );
+        }
+        String code = sb.append ( ']' ).toString();
+
+        Random random = new Random ( 42 );
+        CorePdmlParser parser = new CorePdmlParser();
+        CorePdmlSourceTree tree = CorePdmlSourceTree.parse ( code );
+        for ( int i = 0; i < 200; i++ ) {
+            // insert or delete a char in the text of an 'id' node
+            int offset = tree.code().indexOf ( "[id ", random.nextInt ( tree.code().length() - 20 ) ) + 4;
+            boolean isInsertion = random.nextBoolean() || tree.code().charAt ( offset + 1 ) == ']';
+            CorePdmlSourceTree newTree = isInsertion
+                ? tree.withEdit ( offset, 0, "x" )
+                : tree.withEdit ( offset, 1, "" );
+
+            CorePdmlSourceTree expected = CorePdmlSourceTree.parse ( newTree.code() );
+            assertEquals ( parser.parse ( newTree.code() ), newTree.rootNode() );
+            assertTrue ( newTree.reparsedLength() < 20 );
+            assertSameRanges ( expected, newTree, newTree.rootNode(), new int[0] );
+            for ( int j = 0; j < 20; j++ ) {
+                int pathOffset = random.nextInt ( newTree.code().length() );
+                assertArrayEquals ( expected.pathAt ( pathOffset ), newTree.pathAt ( pathOffset ) );
+            }
+            // the previous tree isn't changed
+            assertEquals ( parser.parse ( tree.code() ), tree.rootNode() );
+            tree = newTree;
+        }
+    }
+
+
+    private static String range ( CorePdmlSourceTree tree, int... childIndexes ) {
+        return tree.code().substring ( tree.nodeStart ( childIndexes ), tree.nodeEnd ( childIndexes ) );
+    }
+
+    private static Node child ( Node node, int index ) {
+        return ( (TaggedNode) node ).childNodes().get ( index );
+    }
+
+    private static void assertSameRanges (
+        CorePdmlSourceTree expected, CorePdmlSourceTree actual, TaggedNode node, int[] childIndexes ) {
+
+        String message = actual.code() + " " + Arrays.toString ( childIndexes );
+        assertEquals ( expected.nodeStart ( childIndexes ), actual.nodeStart ( childIndexes ), message );
+        assertEquals ( expected.nodeEnd ( childIndexes ), actual.nodeEnd ( childIndexes ), message );
+        for ( int i = 0; i < node.childNodes().size(); i++ ) {
+            int[] childPath = Arrays.copyOf ( childIndexes, childIndexes.length + 1 );
+            childPath[childIndexes.length] = i;
+            if ( node.childNodes().get ( i ) instanceof TaggedNode taggedChild ) {
+                assertSameRanges ( expected, actual, taggedChild, childPath );
+            } else {
+                assertEquals ( expected.nodeEnd ( childPath ), actual.nodeEnd ( childPath ), message );
+            }
+        }
+    }
+}
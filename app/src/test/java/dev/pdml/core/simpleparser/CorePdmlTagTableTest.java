@@ -0,0 +1,131 @@
+package dev.pdml.core.simpleparser;
+
+import dev.pdml.core.simpleparser.data.TaggedNode;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CorePdmlTagTableTest {
+
+    @Test
+    void ids() {
+
+        CorePdmlTagTable table = new CorePdmlTagTable();
+        assertEquals ( 0, table.id ( "item" ) );
+        assertEquals ( 1, table.id ( "price" ) );
+        assertEquals ( 0, table.id ( new String ( "item" ) ) );
+        assertEquals ( 1, table.existingId ( "price" ) );
+        assertEquals ( CorePdmlTagTable.NO_TAG_ID, table.existingId ( "name" ) );
+        assertEquals ( 2, table.size() );
+        assertEquals ( "price", table.tag ( 1 ) );
+        assertThrows ( IndexOutOfBoundsException.class, () -> table.tag ( 2 ) );
+
+        char[] chars = "xxpricexx".toCharArray();
+        assertEquals ( 1, table.id ( chars, 2, 5 ) );
+
+        for ( int i = 0; i < 1000; i++ ) {
+            assertEquals ( i + 2, table.id ( "tag_" + i ) );
+        }
+        assertEquals ( "tag_999", table.tag ( 1001 ) );
+        assertEquals ( 0, table.id ( "item" ) );
+    }
+
+    @Test
+    void readTagId() throws InvalidPdmlException {
+
+        String code = "[item][a\\sb][คุณภาพ]";
+        CorePdmlTagTable table = new CorePdmlTagTable();
+        table.id ( "item" );
+
+        for ( CorePdmlTokenReader reader : new CorePdmlTokenReader[] {
+            new CorePdmlReader ( code ),
+            new CorePdmlReader ( new StringReader ( code ), 3 ),
+            new CorePdmlMappedReader ( ByteBuffer.wrap ( code.getBytes ( StandardCharsets.UTF_8 ) ) ) } ) {
+
+            assertTrue ( reader.readNodeStart() );
+            assertEquals ( 0, reader.readTagId ( table ) );
+            assertTrue ( reader.readNodeEnd() );
+            assertTrue ( reader.readNodeStart() );
+            assertEquals ( "a b", table.tag ( reader.readTagId ( table ) ) );
+            assertTrue ( reader.readNodeEnd() );
+            assertTrue ( reader.readNodeStart() );
+            assertEquals ( "คุณภาพ", table.tag ( reader.readTagId ( table ) ) );
+            assertTrue ( reader.readNodeEnd() );
+            assertEquals ( CorePdmlTagTable.NO_TAG_ID, reader.readTagId ( table ) );
+        }
+        assertEquals ( 3, table.size() );
+    }
+
+    @Test
+    void sharedTable() throws InvalidPdmlException {
+
+        CorePdmlTagTable table = new CorePdmlTagTable();
+        int itemId = table.id ( "item" );
+        CorePdmlParser parser = new CorePdmlParser ( table );
+
+        TaggedNode first = parser.parse ( "[list [item a][item b]]" );
+        TaggedNode second = parser.parse ( "[item c]" );
+
+        TaggedNode firstItem = (TaggedNode) first.childNodes().get ( 0 );
+        TaggedNode secondItem = (TaggedNode) first.childNodes().get ( 1 );
+        assertEquals ( itemId, firstItem.tagId() );
+        assertEquals ( itemId, second.tagId() );
+        assertSame ( firstItem.tag(), secondItem.tag() );
+        assertSame ( firstItem.tag(), second.tag() );
+    }
+
+    @Test
+    void fullSharedTable() throws InvalidPdmlException {
+
+        CorePdmlTagTable table = new CorePdmlTagTable ( 2 );
+        assertEquals ( 2, table.maxSize() );
+        table.id ( "list" );
+        table.id ( "item" );
+        assertThrows ( IllegalStateException.class, () -> table.id ( "price" ) );
+
+        // the new tags of a document are kept with the document
+        CorePdmlParser parser = new CorePdmlParser ( table );
+        for ( int i = 0; i < 2; i++ ) {
+            TaggedNode list = parser.parse ( "[list [item [price 1]][price 2][name n]]" );
+            TaggedNode item = (TaggedNode) list.childNodes().get ( 0 );
+            TaggedNode price1 = (TaggedNode) item.childNodes().get ( 0 );
+            TaggedNode price2 = (TaggedNode) list.childNodes().get ( 1 );
+            TaggedNode name = (TaggedNode) list.childNodes().get ( 2 );
+            assertEquals ( 0, list.tagId() );
+            assertEquals ( 1, item.tagId() );
+            assertEquals ( 2, price1.tagId() );
+            assertEquals ( "price", price2.tag() );
+            assertSame ( price1.tag(), price2.tag() );
+            assertEquals ( 3, name.tagId() );
+        }
+        assertEquals ( 2, table.size() );
+        assertEquals ( CorePdmlTagTable.NO_TAG_ID, table.existingId ( "price" ) );
+    }
+
+    @Test
+    void documentTable() {
+
+        CorePdmlTagTable sharedTable = new CorePdmlTagTable ( 1 );
+        CorePdmlTagTable documentTable = CorePdmlTagTable.forDocument ( sharedTable );
+        assertEquals ( 0, documentTable.id ( "a" ) );
+        assertEquals ( 1, documentTable.id ( "b" ) );
+        assertEquals ( "a", documentTable.tag ( 0 ) );
+        assertEquals ( "b", documentTable.tag ( 1 ) );
+        assertEquals ( 1, documentTable.existingId ( "b" ) );
+
+        // a reset table is empty, and can be layered on another shared table
+        documentTable.reset ( null );
+        assertEquals ( CorePdmlTagTable.NO_TAG_ID, documentTable.existingId ( "b" ) );
+        assertEquals ( 0, documentTable.id ( "b" ) );
+        assertThrows ( IndexOutOfBoundsException.class, () -> documentTable.tag ( 1 ) );
+        for ( int i = 0; i < 2000; i++ ) documentTable.id ( "tag_" + i );
+        documentTable.reset ( sharedTable );
+        assertEquals ( 0, documentTable.size() );
+        assertEquals ( 0, documentTable.id ( "a" ) );
+        assertEquals ( 1, documentTable.id ( "tag_1" ) );
+    }
+}
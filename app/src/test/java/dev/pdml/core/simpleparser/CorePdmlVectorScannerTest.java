@@ -0,0 +1,45 @@
+package dev.pdml.core.simpleparser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// Run with './gradlew test -PvectorApi' to enable these tests
+class CorePdmlVectorScannerTest {
+
+    @Test
+    void findTextStopChar() {
+
+        assumeTrue ( ModuleLayer.boot().findModule ( "jdk.incubator.vector" ).isPresent() );
+
+        char[] specialChars = { '[', ']', '\\', '^', '\t', '\n', '\r', '\f', ' ', 0, 0x1F, 0x20, 0x7F, 0x80, 0x9F, 0xA0, 0xFFFF };
+        Random random = new Random ( 1 );
+
+        for ( int i = 0; i < 2000; i++ ) {
+            char[] chars = new char[random.nextInt ( 200 )];
+            for ( int j = 0; j < chars.length; j++ ) {
+                chars[j] = random.nextInt ( 40 ) == 0
+                    ? specialChars[random.nextInt ( specialChars.length )]
+                    : (char) ( 'a' + random.nextInt ( 26 ) );
+            }
+            int fromIndex = chars.length == 0 ? 0 : random.nextInt ( chars.length );
+
+            assertEquals (
+                findTextStopCharScalar ( chars, fromIndex ),
+                CorePdmlVectorScanner.findTextStopChar ( chars, fromIndex, chars.length ) );
+        }
+    }
+
+    private int findTextStopCharScalar ( char[] chars, int fromIndex ) {
+
+        int index = fromIndex;
+        while ( index < chars.length
+            && ( CorePdmlConstants.charFlags ( chars[index] ) & CorePdmlReader.TEXT_STOP_CHAR_FLAGS ) == 0 ) {
+            index++;
+        }
+        return index;
+    }
+}
@@ -0,0 +1,101 @@
+package dev.pdml.core.simpleparser;
+
+import dev.pdml.core.simpleparser.data.TaggedNode;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CorePdmlWriterTest {
+
+    private static final CorePdmlParser PARSER = new CorePdmlParser();
+
+    @Test
+    void roundTrip() throws InvalidPdmlException {
+
+        String[] codes = {
+            "[root]",
+            "[root [child foo bar]]",
+            "[a\\sb \\[text\\n\\]]",
+            "[root\n    [child\ttext\r\n  with whitespace\f]\n    [text \\[\\] \\\\ \\^ คุณภาพ 😀]\n]",
+            "[t\\(\\)\\=\\\"\\~\\|\\:\\,\\`\\!\\$\\^\\t\\n\\r\\f [empty] mixed [b bold] text]",
+            "[a " + "[b ".repeat ( 10_000 ) + "x" + "]".repeat ( 10_001 ) };
+
+        for ( String code : codes ) {
+            TaggedNode rootNode = PARSER.parse ( code );
+            String written = CorePdmlWriter.toPdml ( rootNode, false );
+            assertEquals ( written, CorePdmlWriter.toPdml ( PARSER.parse ( written ), false ) );
+            if ( code.length() < 1000 ) {
+                // equals() is recursive
+                assertEquals ( rootNode, PARSER.parse ( written ) );
+            }
+        }
+
+        assertEquals ( "[a\\sb \\[text\n\\]]", CorePdmlWriter.toPdml ( PARSER.parse ( "[a\\sb \\[text\\n\\]]" ), false ) );
+    }
+
+    @Test
+    void pretty() throws IOException, InvalidPdmlException {
+
+        TaggedNode rootNode = PARSER.parse ( "[list [item [id 1][name foo]][item [id 2]] text [b bold]]" );
+        assertEquals ( """
+            [list
+                [item
+                    [id 1]
+                    [name foo]
+                ]
+                [item
+                    [id 2]
+                ] text [b bold]]
+            """, CorePdmlWriter.toPdml ( rootNode, true ) );
+
+        StringWriter out = new StringWriter();
+        try ( CorePdmlWriter writer = new CorePdmlWriter ( out, true ) ) {
+            writer.startNode ( "a" );
+            writer.startNode ( "b" );
+            writer.endNode();
+            writer.text ( "" );
+            writer.endNode();
+            assertThrows ( IllegalStateException.class, () -> writer.startNode ( "c" ) );
+        }
+        assertEquals ( "[a\n    [b]\n]\n", out.toString() );
+    }
+
+    @Test
+    void targets() throws IOException, InvalidPdmlException {
+
+        TaggedNode rootNode = PARSER.parse ( "[root [text คุณภาพ 😀]]" );
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        try ( CorePdmlWriter writer = new CorePdmlWriter ( stream, false ) ) {
+            writer.write ( rootNode );
+        }
+        assertEquals ( "[root [text คุณภาพ 😀]]", stream.toString ( StandardCharsets.UTF_8 ) );
+
+        ByteArrayOutputStream channelStream = new ByteArrayOutputStream();
+        try ( CorePdmlWriter writer = new CorePdmlWriter ( Channels.newChannel ( channelStream ), false ) ) {
+            writer.write ( rootNode );
+        }
+        assertArrayEquals ( stream.toByteArray(), channelStream.toByteArray() );
+
+        // long texts
+        String text = "abc[]\\^".repeat ( 10_000 );
+        TaggedNode longNode = new TaggedNode ( "t" );
+        longNode.appendText ( text );
+        assertEquals ( text, PARSER.parse ( CorePdmlWriter.toPdml ( longNode, false ) ).childNodes().get ( 0 ).toString() );
+    }
+
+    @Test
+    void invalidChars() {
+
+        TaggedNode node = new TaggedNode ( "t" );
+        node.appendText ( "a\u0001b" );
+        assertThrows ( IllegalArgumentException.class, () -> CorePdmlWriter.toPdml ( node, false ) );
+        assertThrows ( IllegalArgumentException.class, () -> CorePdmlWriter.toPdml ( new TaggedNode ( "" ), false ) );
+    }
+}
@@ -0,0 +1,110 @@
+package dev.pdml.core.simpleparser.data;
+
+import dev.pdml.core.simpleparser.CorePdmlParser;
+import dev.pdml.core.simpleparser.CorePdmlTagTable;
+import dev.pdml.core.simpleparser.InvalidPdmlException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactDocumentTest {
+
+    private static final String CODE = "[config\n[color light green][size [width 200][height 100]][color red]]";
+
+    @Test
+    void cursor() throws InvalidPdmlException {
+
+        CompactDocument document = new CorePdmlParser().parseCompact ( CODE );
+        assertEquals ( 10, document.nodeCount() );
+        assertEquals ( 5, document.tagCount() );
+
+        CompactCursor cursor = document.cursor();
+        assertEquals ( "config", cursor.tag() );
+        assertFalse ( cursor.toNextSibling() );
+
+        assertTrue ( cursor.toFirstChild() );
+        assertEquals ( "color", cursor.tag() );
+        int colorTagIndex = cursor.tagIndex();
+
+        assertTrue ( cursor.toFirstChild() );
+        assertTrue ( cursor.isText() );
+        assertEquals ( "light green", cursor.text() );
+        assertEquals ( "light green", cursor.textView().toString() );
+        assertFalse ( cursor.toFirstChild() );
+
+        assertTrue ( cursor.toParent() );
+        assertTrue ( cursor.toNextSibling() );
+        assertEquals ( "size", cursor.tag() );
+        assertTrue ( cursor.toNextSibling() );
+        assertEquals ( "color", cursor.tag() );
+        assertEquals ( colorTagIndex, cursor.tagIndex() );
+        assertFalse ( cursor.toNextSibling() );
+
+        assertTrue ( cursor.toParent() );
+        assertEquals ( document.rootNode(), cursor.node() );
+        assertFalse ( cursor.toParent() );
+    }
+
+    @Test
+    void taggedNodeView() throws InvalidPdmlException {
+
+        CorePdmlParser parser = new CorePdmlParser();
+        TaggedNode view = parser.parseCompact ( CODE ).toTaggedNode();
+        assertEquals ( parser.parse ( CODE ), view );
+        assertSame ( view.childNodes().get ( 1 ), view.childNodes().get ( 1 ) );
+        assertThrows ( UnsupportedOperationException.class, () -> view.appendText ( "text" ) );
+    }
+
+    @Test
+    void viewsSharedByThreads() throws Exception {
+
+        CorePdmlParser parser = new CorePdmlParser();
+        String code = "[root " + CODE.repeat ( 100 ) + "]";
+        TaggedNode expected = parser.parse ( code );
+
+        ExecutorService executor = Executors.newFixedThreadPool ( 4 );
+        try {
+            for ( int i = 0; i < 20; i++ ) {
+                TaggedNode view = parser.parseCompact ( code ).toTaggedNode();
+                List<Future<Boolean>> results = new ArrayList<>();
+                for ( int j = 0; j < 4; j++ ) {
+                    results.add ( executor.submit ( () -> expected.equals ( view ) ) );
+                }
+                for ( Future<Boolean> result : results ) assertTrue ( result.get() );
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void tagIds() throws InvalidPdmlException {
+
+        CorePdmlTagTable table = new CorePdmlTagTable();
+        table.id ( "width" );
+        table.id ( "height" );
+        CorePdmlParser parser = new CorePdmlParser ( table );
+        CompactDocument document = parser.parseCompact ( CODE );
+
+        // the IDs are those of the parser's tag table, not the document's tag indexes
+        assertEquals ( 0, document.tagIndex ( document.rootNode() ) );
+        assertEquals ( table.existingId ( "config" ), document.tagId ( document.rootNode() ) );
+        TaggedNode view = document.toTaggedNode();
+        assertEquals ( parser.parse ( CODE ).tagId(), view.tagId() );
+        TaggedNode size = (TaggedNode) view.childNodes().get ( 1 );
+        assertEquals ( 0, ( (TaggedNode) size.childNodes().get ( 0 ) ).tagId() );
+        assertEquals ( 1, ( (TaggedNode) size.childNodes().get ( 1 ) ).tagId() );
+
+        // a document built without a tag table has no tag IDs
+        CompactDocumentBuilder builder = new CompactDocumentBuilder();
+        builder.startNode ( "root" );
+        builder.endNode();
+        assertEquals ( TaggedNode.NO_TAG_ID, builder.build().toTaggedNode().tagId() );
+    }
+}
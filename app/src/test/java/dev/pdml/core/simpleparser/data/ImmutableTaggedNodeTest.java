@@ -0,0 +1,117 @@
+package dev.pdml.core.simpleparser.data;
+
+import dev.pdml.core.simpleparser.CorePdmlParser;
+import dev.pdml.core.simpleparser.CorePdmlParserLimits;
+import dev.pdml.core.simpleparser.InvalidPdmlException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImmutableTaggedNodeTest {
+
+    private static final String CODE = "[config [color light green][size [width 200][height 100]][empty]]";
+
+    @Test
+    void parseImmutable() throws InvalidPdmlException {
+
+        CorePdmlParser parser = new CorePdmlParser();
+        ImmutableTaggedNode rootNode = parser.parseImmutable ( CODE );
+        assertEquals ( "config", rootNode.tag() );
+        assertEquals ( 3, rootNode.childCount() );
+
+        ImmutableTaggedNode sizeNode = (ImmutableTaggedNode) rootNode.child ( 1 );
+        assertEquals ( "size", sizeNode.tag() );
+        assertEquals ( "200", ( (ImmutableTaggedNode) sizeNode.child ( 0 ) ).child ( 0 ).toString() );
+        assertTrue ( ( (ImmutableTaggedNode) rootNode.child ( 2 ) ).isLeaf() );
+
+        // tags are deduplicated and have IDs
+        ImmutableTaggedNode other = parser.parseImmutable ( "[a [b][b]]" );
+        assertSame ( ( (ImmutableTaggedNode) other.child ( 0 ) ).tag(), ( (ImmutableTaggedNode) other.child ( 1 ) ).tag() );
+        assertEquals ( 1, ( (ImmutableTaggedNode) other.child ( 1 ) ).tagId() );
+
+        assertThrows ( UnsupportedOperationException.class, () -> rootNode.childNodes().add ( new TextLeaf ( "x" ) ) );
+        assertThrows ( UnsupportedOperationException.class, () -> rootNode.childNodes().set ( 0, new TextLeaf ( "x" ) ) );
+
+        // same tree as the mutable one
+        TaggedNode taggedNode = parser.parse ( CODE );
+        assertEquals ( taggedNode, rootNode.toTaggedNode() );
+        assertEquals ( rootNode, ImmutableTaggedNode.copyOf ( taggedNode ) );
+        assertEquals ( rootNode.hashCode(), ImmutableTaggedNode.copyOf ( taggedNode ).hashCode() );
+
+        // deep trees don't overflow the stack
+        int depth = 100_000;
+        String deepCode = "[a ".repeat ( depth ) + "x" + "]".repeat ( depth );
+        ImmutableTaggedNode deepNode = new CorePdmlParser ( CorePdmlParserLimits.NONE ).parseImmutable ( deepCode );
+        assertEquals ( deepNode.tag(), ImmutableTaggedNode.copyOf ( deepNode.toTaggedNode() ).tag() );
+
+        InvalidPdmlException e = assertThrows ( InvalidPdmlException.class, () -> parser.parseImmutable ( "[a ]" ) );
+        assertEquals ( "Child nodes required", e.getMessage() );
+        e = assertThrows ( InvalidPdmlException.class,
+            () -> new CorePdmlParser ( CorePdmlParserLimits.NONE.withMaxDepth ( 2 ) ).parseImmutable ( "[a [b [c]]]" ) );
+        assertEquals ( "Maximum depth (2) exceeded", e.getMessage() );
+    }
+
+    @Test
+    void persistentUpdates() throws InvalidPdmlException {
+
+        ImmutableTaggedNode rootNode = new CorePdmlParser().parseImmutable ( CODE );
+        ImmutableTaggedNode sizeNode = (ImmutableTaggedNode) rootNode.child ( 1 );
+
+        ImmutableTaggedNode newRootNode = rootNode.withDescendantReplaced (
+            new int[] { 1, 1, 0 }, new TextLeaf ( "150" ) );
+        assertEquals ( "[config [color light green][size [width 200][height 150]][empty]]", toCode ( newRootNode ) );
+        assertEquals ( CODE, toCode ( rootNode ) );
+
+        // unchanged subtrees are shared
+        ImmutableTaggedNode newSizeNode = (ImmutableTaggedNode) newRootNode.child ( 1 );
+        assertNotSame ( sizeNode, newSizeNode );
+        assertSame ( rootNode.child ( 0 ), newRootNode.child ( 0 ) );
+        assertSame ( sizeNode.child ( 0 ), newSizeNode.child ( 0 ) );
+
+        ImmutableTaggedNode edited = rootNode
+            .withChildRemoved ( 0 )
+            .withChildAppended ( ImmutableTaggedNode.of ( "new", new TextLeaf ( "node" ) ) )
+            .withChildInserted ( 0, new TextLeaf ( "text" ) )
+            .withChildReplaced ( 1, ImmutableTaggedNode.of ( "size" ) );
+        assertEquals ( "[config text[size][empty][new node]]", toCode ( edited ) );
+
+        assertThrows ( IllegalArgumentException.class, () -> rootNode.withChildAppended ( new TaggedNode ( "mutable" ) ) );
+        assertThrows ( IllegalArgumentException.class,
+            () -> rootNode.withDescendantReplaced ( new int[] { 1, 0, 0, 0 }, new TextLeaf ( "x" ) ) );
+        assertThrows ( IndexOutOfBoundsException.class, () -> rootNode.withChildReplaced ( 3, new TextLeaf ( "x" ) ) );
+    }
+
+    @Test
+    void builder() {
+
+        ImmutableTreeBuilder builder = new ImmutableTreeBuilder();
+        builder.startNode ( "root" );
+        builder.startNode ( "a" );
+        builder.appendText ( "text" );
+        builder.endNode();
+        builder.appendChild ( ImmutableTaggedNode.of ( "b" ) );
+        builder.endNode();
+        assertEquals ( "[root [a text][b]]", toCode ( builder.build() ) );
+
+        assertThrows ( IllegalStateException.class, () -> builder.startNode ( "second" ) );
+        assertThrows ( IllegalStateException.class, () -> new ImmutableTreeBuilder().appendText ( "x" ) );
+        assertThrows ( IllegalStateException.class, () -> new ImmutableTreeBuilder().build() );
+    }
+
+
+    private static String toCode ( ImmutableTaggedNode node ) {
+
+        StringBuilder sb = new StringBuilder();
+        sb.append ( '[' ).append ( node.tag() );
+        for ( int i = 0; i < node.childCount(); i++ ) {
+            Node childNode = node.child ( i );
+            if ( i == 0 ) sb.append ( ' ' );
+            if ( childNode instanceof ImmutableTaggedNode taggedChildNode ) {
+                sb.append ( toCode ( taggedChildNode ) );
+            } else {
+                sb.append ( ( (TextNode) childNode ).text() );
+            }
+        }
+        return sb.append ( ']' ).toString();
+    }
+}
@@ -0,0 +1,54 @@
+package dev.pdml.core.simpleparser.jmh;
+
+import dev.pdml.core.simpleparser.CorePdmlBinaryFormat;
+import dev.pdml.core.simpleparser.CorePdmlParser;
+import dev.pdml.core.simpleparser.InvalidPdmlException;
+import dev.pdml.core.simpleparser.data.TaggedNode;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@State ( Scope.Benchmark )
+@BenchmarkMode ( Mode.Throughput )
+@OutputTimeUnit ( TimeUnit.SECONDS )
+@Warmup ( iterations = 3, time = 2 )
+@Measurement ( iterations = 5, time = 2 )
+@Fork ( 1 )
+public class CorePdmlBinaryFormatBenchmark {
+
+    @Param ( { "DEEP_NESTING", "WIDE_FAN_OUT", "ESCAPE_HEAVY_TEXT", "HUGE_LEAVES" } )
+    public SyntheticPdmlGenerator.Shape shape;
+
+    @Param ( { "1048576" } )
+    public int size;
+
+    private CorePdmlParser parser;
+    private Path pdmlFile;
+    private Path binaryFile;
+
+
+    @Setup
+    public void setup() throws IOException, InvalidPdmlException {
+
+        String code = SyntheticPdmlGenerator.generate ( shape, size );
+        parser = new CorePdmlParser();
+        pdmlFile = SyntheticPdmlGenerator.writeTempFile ( code );
+
+        binaryFile = Files.createTempFile ( "synthetic-", ".pdmb" );
+        binaryFile.toFile().deleteOnExit();
+        CorePdmlBinaryFormat.write ( parser.parse ( code ), binaryFile );
+    }
+
+    @Benchmark
+    public TaggedNode parsePdmlFile() throws IOException, InvalidPdmlException {
+        return parser.parse ( pdmlFile );
+    }
+
+    @Benchmark
+    public TaggedNode readBinaryFile() throws IOException {
+        return CorePdmlBinaryFormat.read ( binaryFile );
+    }
+}
@@ -0,0 +1,92 @@
+package dev.pdml.core.simpleparser.jmh;
+
+import dev.pdml.core.simpleparser.CorePdmlParallelParser;
+import dev.pdml.core.simpleparser.CorePdmlParser;
+import dev.pdml.core.simpleparser.CorePdmlSourceTree;
+import dev.pdml.core.simpleparser.InvalidPdmlException;
+import dev.pdml.core.simpleparser.data.ImmutableTaggedNode;
+import dev.pdml.core.simpleparser.data.TaggedNode;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+@State ( Scope.Benchmark )
+@BenchmarkMode ( Mode.Throughput )
+@OutputTimeUnit ( TimeUnit.SECONDS )
+@Warmup ( iterations = 3, time = 2 )
+@Measurement ( iterations = 5, time = 2 )
+@Fork ( 1 )
+public class CorePdmlParserBenchmark {
+
+    @Param ( { "DEEP_NESTING", "WIDE_FAN_OUT", "ESCAPE_HEAVY_TEXT", "HUGE_LEAVES" } )
+    public SyntheticPdmlGenerator.Shape shape;
+
+    @Param ( { "1048576" } )
+    public int size;
+
+    private String code;
+    private Path file;
+    private CorePdmlParser parser;
+    private CorePdmlParallelParser parallelParser;
+    private CorePdmlSourceTree sourceTree;
+    private int editOffset;
+
+
+    @Setup
+    public void setup() throws IOException, InvalidPdmlException {
+
+        code = SyntheticPdmlGenerator.generate ( shape, size );
+        file = SyntheticPdmlGenerator.writeTempFile ( code );
+        parser = new CorePdmlParser();
+        parallelParser = new CorePdmlParallelParser();
+
+        // insert a char before a ']' in the middle of the document
+        sourceTree = CorePdmlSourceTree.parse ( code );
+        editOffset = code.indexOf ( ']', code.length() / 2 );
+        while ( code.charAt ( editOffset - 1 ) == '\\' ) {
+            editOffset = code.indexOf ( ']', editOffset + 1 );
+        }
+    }
+
+    @Benchmark
+    public TaggedNode parseString() throws InvalidPdmlException {
+        return parser.parse ( code );
+    }
+
+    @Benchmark
+    public TaggedNode parseStringLazy() throws InvalidPdmlException {
+        return parser.parseLazy ( code );
+    }
+
+    @Benchmark
+    public ImmutableTaggedNode parseStringImmutable() throws InvalidPdmlException {
+        return parser.parseImmutable ( code );
+    }
+
+    @Benchmark
+    public TaggedNode parseStringParallel() throws InvalidPdmlException {
+        return parallelParser.parse ( code );
+    }
+
+    @Benchmark
+    public TaggedNode parsePath() throws IOException, InvalidPdmlException {
+        return parser.parse ( file );
+    }
+
+    @Benchmark
+    public void validateString() throws InvalidPdmlException {
+        parser.validate ( code );
+    }
+
+    @Benchmark
+    public void validatePath() throws IOException, InvalidPdmlException {
+        parser.validate ( file );
+    }
+
+    @Benchmark
+    public CorePdmlSourceTree reparseAfterEdit() throws InvalidPdmlException {
+        return sourceTree.withEdit ( editOffset, 0, "x" );
+    }
+}
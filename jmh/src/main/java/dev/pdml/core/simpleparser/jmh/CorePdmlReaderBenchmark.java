@@ -0,0 +1,52 @@
+package dev.pdml.core.simpleparser.jmh;
+
+import dev.pdml.core.simpleparser.CorePdmlReader;
+import dev.pdml.core.simpleparser.InvalidPdmlException;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link CorePdmlReader#readText()} and {@link CorePdmlReader#readTag()} on their own.
+ */
+@State ( Scope.Benchmark )
+@BenchmarkMode ( Mode.Throughput )
+@OutputTimeUnit ( TimeUnit.SECONDS )
+@Warmup ( iterations = 3, time = 2 )
+@Measurement ( iterations = 5, time = 2 )
+@Fork ( 1 )
+public class CorePdmlReaderBenchmark {
+
+    @Param ( { "false", "true" } )
+    public boolean escapes;
+
+    private String text;
+    private String tags;
+
+
+    @Setup
+    public void setup() {
+
+        String word = escapes ? "text\\swith\\[escapes\\] " : "plain text without escapes ";
+        text = word.repeat ( 1024 * 1024 / word.length() ) + "]";
+
+        String tag = escapes ? "[tag\\s1]" : "[tag_1]";
+        tags = tag.repeat ( 1024 * 1024 / tag.length() );
+    }
+
+    @Benchmark
+    public String readText() throws InvalidPdmlException {
+        return new CorePdmlReader ( text ).readText();
+    }
+
+    @Benchmark
+    public void readTag ( Blackhole blackhole ) throws InvalidPdmlException {
+
+        CorePdmlReader reader = new CorePdmlReader ( tags );
+        while ( reader.readNodeStart() ) {
+            blackhole.consume ( reader.readTag() );
+            reader.readNodeEnd();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package dev.pdml.core.simpleparser.jmh;
+
+import dev.pdml.core.simpleparser.CorePdmlSourceTree;
+import dev.pdml.core.simpleparser.InvalidPdmlException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reparses a document with a wide root node after an edit in one of the root's children. The edited code is a new
+ * string, so each edit copies the code: {@link #editCode()} measures this copy alone. The remaining time and
+ * allocations of an edit grow with the logarithm of the number of children, not linearly.
+ */
+@State ( Scope.Benchmark )
+@BenchmarkMode ( Mode.AverageTime )
+@OutputTimeUnit ( TimeUnit.NANOSECONDS )
+@Warmup ( iterations = 3, time = 2 )
+@Measurement ( iterations = 5, time = 2 )
+@Fork ( 1 )
+public class CorePdmlSourceTreeBenchmark {
+
+    @Param ( { "1000", "10000", "100000" } )
+    public int rootChildCount;
+
+    private String code;
+    private CorePdmlSourceTree sourceTree;
+    private int editOffset;
+
+
+    @Setup
+    public void setup() throws InvalidPdmlException {
+
+        StringBuilder sb = new StringBuilder ( "[document\n" );
+        for ( int i = 0; i < rootChildCount; i++ ) {
+            sb.append ( "[item [id " ).append ( i ).append ( "]]\n" );
+        }
+        code = sb.append ( "]\n" ).toString();
+
+        // insert a char into the 'id' of the middle child
+        sourceTree = CorePdmlSourceTree.parse ( code );
+        editOffset = code.indexOf ( "[id ", code.length() / 2 ) + 4;
+    }
+
+    @Benchmark
+    public CorePdmlSourceTree reparseAfterEditInWideRoot() throws InvalidPdmlException {
+        return sourceTree.withEdit ( editOffset, 0, "x" );
+    }
+
+    @Benchmark
+    public String editCode() {
+        return code.substring ( 0, editOffset ) + "x" + code.substring ( editOffset );
+    }
+}
@@ -0,0 +1,42 @@
+package dev.pdml.core.simpleparser.jmh;
+
+import dev.pdml.core.simpleparser.CorePdmlParser;
+import dev.pdml.core.simpleparser.CorePdmlWriter;
+import dev.pdml.core.simpleparser.InvalidPdmlException;
+import dev.pdml.core.simpleparser.data.TaggedNode;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+@State ( Scope.Benchmark )
+@BenchmarkMode ( Mode.Throughput )
+@OutputTimeUnit ( TimeUnit.SECONDS )
+@Warmup ( iterations = 3, time = 2 )
+@Measurement ( iterations = 5, time = 2 )
+@Fork ( 1 )
+public class CorePdmlWriterBenchmark {
+
+    @Param ( { "DEEP_NESTING", "WIDE_FAN_OUT", "ESCAPE_HEAVY_TEXT", "HUGE_LEAVES" } )
+    public SyntheticPdmlGenerator.Shape shape;
+
+    @Param ( { "1048576" } )
+    public int size;
+
+    private TaggedNode rootNode;
+
+
+    @Setup
+    public void setup() throws InvalidPdmlException {
+        rootNode = new CorePdmlParser().parse ( SyntheticPdmlGenerator.generate ( shape, size ) );
+    }
+
+    @Benchmark
+    public void writeCompact() throws IOException {
+
+        try ( CorePdmlWriter writer = new CorePdmlWriter ( OutputStream.nullOutputStream(), false ) ) {
+            writer.write ( rootNode );
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package dev.pdml.core.simpleparser.jmh;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generates synthetic PDML documents of a given shape and approximate size.
+ */
+public class SyntheticPdmlGenerator {
+
+    public enum Shape {
+        // nodes nested 200 levels deep, repeated
+        DEEP_NESTING,
+        // a root node with many small children
+        WIDE_FAN_OUT,
+        // text leaves where about one char out of five is escaped
+        ESCAPE_HEAVY_TEXT,
+        // a few text leaves of several hundred KB each
+        HUGE_LEAVES
+    }
+
+    private static final int NESTING_DEPTH = 200;
+    private static final int HUGE_LEAF_SIZE = 512 * 1024;
+
+    private static final String WORDS =
+        "lorem ipsum dolor sit amet consectetur adipiscing elit sed do eiusmod tempor incididunt ut labore";
+    private static final String[] ESCAPE_SEQUENCES = { "\\[", "\\]", "\\\\", "\\^", "\\s", "\\t", "\\n" };
+
+
+    public static String generate ( Shape shape, int size ) {
+
+        StringBuilder sb = new StringBuilder ( size + 1024 );
+        Random random = new Random ( 42 );
+
+        sb.append ( "[document\n" );
+        while ( sb.length() < size ) {
+            switch ( shape ) {
+                case DEEP_NESTING -> appendDeepNesting ( sb );
+                case WIDE_FAN_OUT -> appendSmallChild ( sb, random );
+                case ESCAPE_HEAVY_TEXT -> appendEscapedText ( sb, random );
+                case HUGE_LEAVES -> appendHugeLeaf ( sb, random );
+            }
+            sb.append ( '\n' );
+        }
+        sb.append ( "]\n" );
+
+        return sb.toString();
+    }
+
+    public static Path writeTempFile ( String code ) throws IOException {
+
+        Path file = Files.createTempFile ( "synthetic-", ".pdml" );
+        file.toFile().deleteOnExit();
+        Files.writeString ( file, code, StandardCharsets.UTF_8 );
+        return file;
+    }
+
+
+    // Private Methods
+
+    private static void appendDeepNesting ( StringBuilder sb ) {
+
+        for ( int i = 0; i < NESTING_DEPTH; i++ ) {
+            sb.append ( "[level_" ).append ( i ).append ( ' ' );
+        }
+        sb.append ( "[leaf]" );
+        sb.append ( "]".repeat ( NESTING_DEPTH ) );
+    }
+
+    private static void appendSmallChild ( StringBuilder sb, Random random ) {
+
+        sb.append ( "[item [id " ).append ( random.nextInt ( 1_000_000 ) ).append ( "][name " );
+        appendWords ( sb, random, 3 );
+        sb.append ( "][price " ).append ( random.nextInt ( 10_000 ) / 100.0 ).append ( "]]" );
+    }
+
+    private static void appendEscapedText ( StringBuilder sb, Random random ) {
+
+        sb.append ( "[text " );
+        for ( int i = 0; i < 200; i++ ) {
+            if ( random.nextInt ( 5 ) == 0 ) {
+                sb.append ( ESCAPE_SEQUENCES[random.nextInt ( ESCAPE_SEQUENCES.length )] );
+            } else {
+                sb.append ( WORDS.charAt ( random.nextInt ( WORDS.length() ) ) );
+            }
+        }
+        sb.append ( ']' );
+    }
+
+    private static void appendHugeLeaf ( StringBuilder sb, Random random ) {
+
+        sb.append ( "[leaf " );
+        int end = sb.length() + HUGE_LEAF_SIZE;
+        while ( sb.length() < end ) {
+            appendWords ( sb, random, 12 );
+            sb.append ( '\n' );
+        }
+        sb.append ( ']' );
+    }
+
+    private static void appendWords ( StringBuilder sb, Random random, int count ) {
+
+        for ( int i = 0; i < count; i++ ) {
+            if ( i > 0 ) sb.append ( ' ' );
+            int start = random.nextInt ( WORDS.length() - 10 );
+            int end = WORDS.indexOf ( ' ', start );
+            sb.append ( WORDS, start, end < 0 ? WORDS.length() : end );
+        }
+    }
+}
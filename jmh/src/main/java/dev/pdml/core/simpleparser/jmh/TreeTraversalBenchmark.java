@@ -0,0 +1,56 @@
+package dev.pdml.core.simpleparser.jmh;
+
+import dev.pdml.core.simpleparser.CorePdmlParser;
+import dev.pdml.core.simpleparser.InvalidPdmlException;
+import dev.pdml.core.simpleparser.data.Node;
+import dev.pdml.core.simpleparser.data.TaggedNode;
+import dev.pdml.core.simpleparser.data.TextNode;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Walks a parsed tree the way {@code Start.traverseTree} does, without writing to STDOUT.
+ */
+@State ( Scope.Benchmark )
+@BenchmarkMode ( Mode.Throughput )
+@OutputTimeUnit ( TimeUnit.SECONDS )
+@Warmup ( iterations = 3, time = 2 )
+@Measurement ( iterations = 5, time = 2 )
+@Fork ( 1 )
+public class TreeTraversalBenchmark {
+
+    @Param ( { "DEEP_NESTING", "WIDE_FAN_OUT" } )
+    public SyntheticPdmlGenerator.Shape shape;
+
+    @Param ( { "1048576" } )
+    public int size;
+
+    private TaggedNode rootNode;
+
+
+    @Setup
+    public void setup() throws InvalidPdmlException {
+        rootNode = new CorePdmlParser().parse ( SyntheticPdmlGenerator.generate ( shape, size ) );
+    }
+
+    @Benchmark
+    public long traverseTree() {
+        return traverseTree ( rootNode );
+    }
+
+    private static long traverseTree ( TaggedNode branchNode ) {
+
+        long result = branchNode.tag().length();
+
+        for ( Node childNode : branchNode.childNodes() ) {
+            if ( childNode instanceof TaggedNode taggedChild ) {
+                result += traverseTree ( taggedChild );
+            } else if ( childNode instanceof TextNode textChild ) {
+                result += textChild.text().length();
+            }
+        }
+
+        return result;
+    }
+}